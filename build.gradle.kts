@@ -6,6 +6,7 @@ plugins {
     pmd
     id("de.aaschmid.cpd")
     id("com.github.spotbugs")
+    id("me.champeau.jmh") apply false
     `build-dashboard`
 }
 
@@ -74,6 +75,7 @@ project(":desktop") {
 
 project(":core") {
     apply(plugin = "java-library")
+    apply(plugin = "me.champeau.jmh")
 
     dependencies {
         implementation("com.badlogicgames.gdx:gdx:$gdxVersion")
@@ -0,0 +1,96 @@
+package it.dukemania.audioengine;
+
+import it.dukemania.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old per-sample stream mixing with the block rendering of the Engine,
+ * serial and in parallel on a fork-join pool.
+ * Run with ./gradlew :core:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    private static final int[] CHORD = {60, 64, 67, 71};
+    private static final long NOTE_MICROS = 2_000_000L;
+
+    @Param({"1", "4", "10"})
+    private int tracks;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private final List<KeyboardSynth> synths = new ArrayList<>();
+    private final float[] buffer = new float[Settings.BUFFER_LENGHT];
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 100L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw, WaveTable.Square});
+        builder.setOffsets(new double[]{1, 2});
+        final List<Pair<Integer, Long>> notes = new ArrayList<>();
+        for (final int note : CHORD) {
+            notes.add(new Pair<>(note, NOTE_MICROS / 1000));
+        }
+        engine = new Engine(parallel);
+        for (int t = 0; t < tracks; t++) {
+            synths.add(engine.addSynth(builder.build(notes)));
+        }
+    }
+
+    private void keepPlaying() {
+        for (final KeyboardSynth synth : synths) {
+            if (synth.checkKeys() == 0) {
+                for (final int note : CHORD) {
+                    synth.noteOn(note, NOTE_MICROS);
+                }
+            }
+        }
+    }
+
+    /**
+     * The mixing loop as it was before block rendering: a stream over the synthesizers for every sample.
+     * @return the calculated buffer
+     */
+    @Benchmark
+    public float[] streamPerSample() {
+        keepPlaying();
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (float) synths.stream().mapToDouble(Synth::getSample).sum();
+        }
+        return buffer;
+    }
+
+    /**
+     * The block rendering of the Engine.
+     * @return the calculated buffer
+     */
+    @Benchmark
+    public float[] blockRender() {
+        keepPlaying();
+        engine.renderBuffer();
+        return engine.getBuffer();
+    }
+}
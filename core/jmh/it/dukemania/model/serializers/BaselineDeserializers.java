@@ -0,0 +1,206 @@
+package it.dukemania.model.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import it.dukemania.audioengine.Enveloper;
+import it.dukemania.audioengine.LFOFactory;
+import it.dukemania.audioengine.SynthBuilderImpl;
+import it.dukemania.audioengine.WaveTable;
+import it.dukemania.controller.logic.DifficultyLevel;
+import it.dukemania.midi.InstrumentType;
+import it.dukemania.model.serializers.song.SongInfo;
+import it.dukemania.model.serializers.song.TrackInfo;
+import it.dukemania.model.serializers.synthesizer.SynthInfo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The deserializers of the configurations as they were before they were streamed, copied from the first version of
+ * the game so that ConfigurationsBenchmark measures the code path that has been replaced.
+ * They read every object as a tree and create a new mapper for every song, track and synthesizer, as they did.
+ * The mappers they create ignore the deserializers of the annotations, so that nested values are read by these
+ * copies instead of by the streaming deserializers.
+ */
+final class BaselineDeserializers {
+
+    private BaselineDeserializers() {
+    }
+
+    /**
+     * Creates a mapper that reads the configurations with the baseline deserializers, the baseline code created
+     * a new ObjectMapper where this method is called.
+     * @return the mapper
+     */
+    static ObjectMapper newMapper() {
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.setAnnotationIntrospector(new JacksonAnnotationIntrospector() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Object findDeserializer(final Annotated a) {
+                return null;
+            }
+        });
+        mapper.registerModule(new SimpleModule()
+                .addDeserializer(SongInfo.class, new SongDeserializer())
+                .addDeserializer(TrackInfo.class, new TrackDeserializer())
+                .addDeserializer(SynthInfo.class, new SynthesizerInfoDeserializer())
+                .addDeserializer(SynthBuilderImpl.class, new SynthBuilderDeserializer())
+                .addDeserializer(Enveloper.class, new EnveloperDeserializer()));
+        return mapper;
+    }
+
+    private static final class SongDeserializer extends StdDeserializer<SongInfo> {
+
+        private static final long serialVersionUID = 1L;
+
+        SongDeserializer() {
+            super(SongInfo.class);
+        }
+
+        @Override
+        public SongInfo deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            ObjectCodec codec = p.getCodec();
+            JsonNode node = codec.readTree(p);
+
+            ObjectMapper mapper = newMapper();
+
+            JsonNode trackNode = node.get("tracks");
+
+            JavaType listTrackType = mapper.constructType(new TypeReference<List<TrackInfo>>() {
+            });
+
+            List<TrackInfo> tracks = mapper.readValue(mapper.treeAsTokens(trackNode), listTrackType);
+
+            return new SongInfo(node.get("songName").asText(), node.get("fileHash").asText(),
+                    node.get("duration").asDouble(), tracks, node.get("BPM").asDouble());
+        }
+    }
+
+    private static final class TrackDeserializer extends StdDeserializer<TrackInfo> {
+
+        private static final long serialVersionUID = 1L;
+
+        TrackDeserializer() {
+            super(TrackInfo.class);
+        }
+
+        @Override
+        public TrackInfo deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            ObjectCodec codec = p.getCodec();
+            JsonNode node = codec.readTree(p);
+
+            InstrumentType instrument = newMapper()
+                                            .treeAsTokens(node.get("instrument"))
+                                            .readValueAs(InstrumentType.class);
+
+            return new TrackInfo(node.get("channel").asInt(),
+                                    node.get("trackName").asText(),
+                                    instrument,
+                                    DifficultyLevel.valueOf(node.get("difficultyLevel").asText()));
+        }
+    }
+
+    private static final class SynthesizerInfoDeserializer extends StdDeserializer<SynthInfo> {
+
+        private static final long serialVersionUID = 1L;
+
+        SynthesizerInfoDeserializer() {
+            super(SynthInfo.class);
+        }
+
+        @Override
+        public SynthInfo deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            ObjectCodec codec = p.getCodec();
+            JsonNode node = codec.readTree(p);
+            ObjectMapper mapper = newMapper();
+
+            SynthBuilderImpl synth = mapper
+                                    .treeAsTokens(node.get("values"))
+                                    .readValueAs(SynthBuilderImpl.class);
+
+            JavaType listTrackType = mapper.constructType(new TypeReference<List<InstrumentType>>() {
+            });
+
+            List<InstrumentType> associatedInstruments = mapper.readValue(mapper
+                                                    .treeAsTokens(node.get("associatedInstruments")), listTrackType);
+
+            return new SynthInfo(node.get("presetName").asText(), synth, associatedInstruments);
+        }
+    }
+
+    private static final class SynthBuilderDeserializer extends StdDeserializer<SynthBuilderImpl> {
+
+        private static final long serialVersionUID = 1L;
+
+        SynthBuilderDeserializer() {
+            super(SynthBuilderImpl.class);
+        }
+
+        @Override
+        public SynthBuilderImpl deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            SynthBuilderImpl synth = new SynthBuilderImpl();
+
+            ObjectCodec codec = p.getCodec();
+            JsonNode node = codec.readTree(p);
+            ObjectMapper mapper = newMapper();
+
+            Enveloper env = mapper
+                                .treeAsTokens(node.get("enveloper"))
+                                .readValueAs(Enveloper.class);
+
+            WaveTable[] wavetables = mapper.treeAsTokens(node.get("wavetables")).readValueAs(WaveTable[].class);
+            double[] offsets = mapper.treeAsTokens(node.get("offsets")).readValueAs(double[].class);
+
+            JsonNode noteLfoNode = node.get("noteLFO");
+            JsonNode volumeLfoNode = node.get("volumeLFO");
+            synth.setEnveloper(env);
+            synth.setOffsets(offsets);
+            synth.setWavetables(wavetables);
+            synth.setNoteLFO(getLfoFunction(noteLfoNode, mapper));
+            synth.setVolumeLFO(getLfoFunction(volumeLfoNode, mapper));
+
+            return synth;
+        }
+
+        private Function<Long, Float> getLfoFunction(final JsonNode lfoNode, final ObjectMapper mapper)
+                throws IOException {
+            if (lfoNode != null) {
+                LFOFactory.Types lfoType = mapper.treeAsTokens(lfoNode.get("type")).readValueAs(LFOFactory.Types.class);
+                float[] lfoArgs = mapper.treeAsTokens(lfoNode.get("arguments")).readValueAs(float[].class);
+                int duration = lfoNode.get("duration").asInt();
+                return LFOFactory.general(lfoType, lfoArgs, duration);
+            }
+            return null;
+        }
+    }
+
+    private static final class EnveloperDeserializer extends StdDeserializer<Enveloper> {
+
+        private static final long serialVersionUID = 1L;
+
+        EnveloperDeserializer() {
+            super(Enveloper.class);
+        }
+
+        @Override
+        public Enveloper deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            ObjectCodec codec = p.getCodec();
+            JsonNode node = codec.readTree(p);
+
+            return new Enveloper(node.get("attackMS").asLong(), node.get("attackVolume").asLong(),
+                    node.get("releaseMS").asLong());
+        }
+    }
+}
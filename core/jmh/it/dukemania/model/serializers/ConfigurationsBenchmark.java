@@ -0,0 +1,115 @@
+package it.dukemania.model.serializers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import it.dukemania.controller.logic.DifficultyLevel;
+import it.dukemania.midi.InstrumentType;
+import it.dukemania.model.serializers.song.SongInfo;
+import it.dukemania.model.serializers.song.TrackInfo;
+import it.dukemania.model.serializers.synthesizer.SynthInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the loading of a songs configuration and of a synthesizers configuration through the baseline
+ * deserializers, which read JSON trees with a new ObjectMapper for every object, with the streaming deserializers
+ * and the shared mapper.
+ * Run with ./gradlew :core:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigurationsBenchmark {
+
+    private static final int TRACKS = 6;
+    private static final int PERCUSSION_CHANNEL = 10;
+    private static final TypeReference<List<SongInfo>> SONG_LIST_TYPE = new TypeReference<List<SongInfo>>() {
+    };
+    private static final TypeReference<List<SynthInfo>> SYNTH_LIST_TYPE = new TypeReference<List<SynthInfo>>() {
+    };
+    private static final JavaType SONG_LIST = SharedMapper.getInstance().constructType(SONG_LIST_TYPE);
+    private static final JavaType SYNTH_LIST = SharedMapper.getInstance().constructType(SYNTH_LIST_TYPE);
+    private static final int INSTRUMENTS_PER_SYNTHESIZER = 8;
+    // a preset of the bundled configuration, with both the LFOs
+    private static final String SYNTHESIZER = "{\"presetName\":\"gameboy_lead_%d\",\"associatedInstruments\":[%s],"
+            + "\"values\":{\"enveloper\":{\"attackMS\":10,\"attackVolume\":1.0,\"releaseMS\":100},"
+            + "\"wavetables\":[\"Square\",\"Saw\"],\"offsets\":[1.0,1.005],"
+            + "\"noteLFO\":{\"type\":\"SQUARE\",\"arguments\":[2.0,1.0],\"duration\":50},"
+            + "\"volumeLFO\":{\"type\":\"INTERVALS\",\"arguments\":[0.3],\"duration\":100}}}";
+
+    @Param({"10000"})
+    private int songs;
+
+    @Param({"1000"})
+    private int synthesizers;
+
+    private byte[] json;
+    private byte[] synthesizersJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Random random = new Random(1);
+        final List<SongInfo> configuration = new ArrayList<>();
+        for (int i = 0; i < songs; i++) {
+            final List<TrackInfo> tracks = new ArrayList<>();
+            for (int channel = 1; channel <= TRACKS; channel++) {
+                final boolean percussion = channel == TRACKS;
+                tracks.add(new TrackInfo(percussion ? PERCUSSION_CHANNEL : channel, "Track " + channel,
+                        percussion ? null : InstrumentType.values()[random.nextInt(InstrumentType.values().length)],
+                        DifficultyLevel.values()[random.nextInt(DifficultyLevel.values().length)]));
+            }
+            configuration.add(new SongInfo("song " + i + ".mid", String.format("%064x", i), random.nextDouble() * 1e8,
+                    tracks, 60 + random.nextInt(120)));
+        }
+        json = SharedMapper.getPrettyWriter().writeValueAsBytes(configuration);
+        final List<String> presets = new ArrayList<>();
+        for (int i = 0; i < synthesizers; i++) {
+            final List<String> instruments = new ArrayList<>();
+            for (int j = 0; j < INSTRUMENTS_PER_SYNTHESIZER; j++) {
+                instruments.add("\"" + InstrumentType.values()[random.nextInt(InstrumentType.values().length)] + "\"");
+            }
+            presets.add(String.format(SYNTHESIZER, i, String.join(",", instruments)));
+        }
+        synthesizersJson = ("[" + String.join(",", presets) + "]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<SongInfo> baselineSongs() throws IOException {
+        return BaselineDeserializers.newMapper().readValue(json, SONG_LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<SongInfo> streamingSongs() throws IOException {
+        return SharedMapper.getInstance().readValue(json, SONG_LIST);
+    }
+
+    @Benchmark
+    public List<SynthInfo> baselineSynthesizers() throws IOException {
+        return BaselineDeserializers.newMapper().readValue(synthesizersJson, SYNTH_LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<SynthInfo> streamingSynthesizers() throws IOException {
+        return SharedMapper.getInstance().readValue(synthesizersJson, SYNTH_LIST);
+    }
+}
@@ -3,6 +3,7 @@ package it.dukemania;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import it.dukemania.controller.songselection.SongFolder;
 import it.dukemania.model.GameModel;
 import it.dukemania.view.PlayScreen;
 import it.dukemania.view.menu.LeaderboardWindow;
@@ -20,10 +21,23 @@ public class DukeMania extends ApplicationAdapter {
 
     private final WindowManager wdm = new WindowManager();
     private static final String MENU_BACKGROUND_IMAGE_PATH = "DukeMania.png";
+    private static final String LOG_TAG = "DukeMania";
     private final GameModel data = new GameModel();
 
     @Override
     public final void create() {
+        final SongFolder songFolder = SongFolder.getInstance();
+        songFolder.syncBundledSongs((checked, total) ->
+                Gdx.app.log(LOG_TAG, "Bundled songs checked: " + checked + "/" + total))
+            .whenComplete((copied, error) -> {
+                if (error != null) {
+                    Gdx.app.error(LOG_TAG, "Cannot copy the bundled songs", error);
+                } else {
+                    Gdx.app.log(LOG_TAG, "Bundled songs copied: " + copied);
+                }
+                //the library is indexed in background, so that it is ready when the song selection window is opened
+                songFolder.getLibrary().start();
+            });
         final Skin skin = AssetsManager.getInstance().getSkin("skin_menu");
         Window songSelectionScreen = null;
         final Window titleScreen = new TitleWindow(MENU_BACKGROUND_IMAGE_PATH, skin);
@@ -0,0 +1,150 @@
+package it.dukemania.audioengine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Owns the render thread of an Engine, which is the only thread that touches the state of the synthesizers.
+ * Other threads can only send note events to it, each one with the exact sample at which it has to be played,
+ * and they are told by a future when it has stopped.
+ */
+public class AudioScheduler {
+
+    private static final double MICROS_PER_SECOND = 1_000_000d;
+
+    private final Engine engine;
+    private final Thread renderThread;
+    private final Supplier<AudioSink> sinkFactory;
+    private volatile AudioSink sink;
+    private volatile boolean running;
+    private volatile int playing;
+    private volatile long frame;
+    private volatile long lastFrame = Long.MAX_VALUE;
+    private final CompletableFuture<Long> stopped = new CompletableFuture<>();
+
+    /**
+     * Create the scheduler of an engine that plays on the LibGDX audio device,
+     * the engine must not be used by other threads after the scheduler has started.
+     * @param engine the engine
+     */
+    public AudioScheduler(final Engine engine) {
+        this(engine, () -> new BufferedAudioSink(new GdxAudioSink(), Settings.SINK_BLOCKS));
+    }
+
+    /**
+     * Create the scheduler of an engine,
+     * the engine must not be used by other threads after the scheduler has started.
+     * @param engine the engine
+     * @param sinkFactory creates the sink that receives the buffers when the scheduler is started
+     */
+    public AudioScheduler(final Engine engine, final Supplier<AudioSink> sinkFactory) {
+        this.engine = engine;
+        this.sinkFactory = sinkFactory;
+        this.renderThread = new Thread(this::render, "DukeMania audio render");
+        this.renderThread.setPriority(Thread.MAX_PRIORITY);
+        this.renderThread.setDaemon(true);
+    }
+
+    /**
+     * Converts a time in microseconds to the sample that is played at that time.
+     * @param micros the time in microseconds
+     * @return the sample
+     */
+    public static long toFrame(final long micros) {
+        return (long) (micros * Settings.SAMPLE_RATE / MICROS_PER_SECOND);
+    }
+
+    private void render() {
+        try {
+            while (running) {
+                engine.renderBuffer();
+                sink.write(engine.getBuffer(), 0, engine.getBuffer().length);
+                playing = engine.checkKeys();
+                frame = engine.getFrame();
+                if (isSilentAfter(lastFrame)) {
+                    running = false;
+                }
+            }
+            sink.close();
+            stopped.complete(frame);
+        } catch (RuntimeException e) {
+            stopped.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Open the sink and start the render thread.
+     */
+    public void start() {
+        sink = sinkFactory.get();
+        running = true;
+        renderThread.start();
+    }
+
+    /**
+     * Stop the render thread after the buffer it is calculating, then close the sink.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Make the render thread stop by itself as soon as the engine is silent after a certain sample.
+     * @param lastFrame the sample of the last scheduled event
+     * @return the future that the render thread completes with the number of samples it has calculated,
+     * after it has closed the sink
+     */
+    public CompletableFuture<Long> stopWhenSilentAfter(final long lastFrame) {
+        this.lastFrame = lastFrame;
+        return stopped;
+    }
+
+    /**
+     * Schedule a note, only one thread can schedule notes.
+     * @param frame the sample at which the note starts
+     * @param synth the synthesizer that plays the note
+     * @param identifier the MIDI number of the note
+     * @param micros the duration of the note in microseconds
+     * @return true if the note was scheduled, false if there are too many events waiting to be played
+     */
+    public boolean noteOn(final long frame, final Synth synth, final int identifier, final long micros) {
+        return engine.getEvents().offer(frame, synth, NoteEventQueue.NOTE_ON, identifier, micros);
+    }
+
+    /**
+     * Schedule the release of a note, only one thread can schedule notes.
+     * @param frame the sample at which the note is released
+     * @param synth the synthesizer that plays the note
+     * @param identifier the MIDI number of the note
+     * @return true if the release was scheduled, false if there are too many events waiting to be played
+     */
+    public boolean noteOff(final long frame, final Synth synth, final int identifier) {
+        return engine.getEvents().offer(frame, synth, NoteEventQueue.NOTE_OFF, identifier, 0);
+    }
+
+    /**
+     * Returns how many times the sink had nothing to play since the scheduler was started.
+     * @return the number of underruns
+     */
+    public long getUnderruns() {
+        return sink == null ? 0 : sink.getUnderruns();
+    }
+
+    /**
+     * Returns the number of samples that have been calculated, this value is updated after every buffer.
+     * @return the number of samples
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Checks if every scheduled event up to a certain sample has been played and no note is playing anymore.
+     * @param lastFrame the sample of the last scheduled event
+     * @return true if the engine is silent
+     */
+    public boolean isSilentAfter(final long lastFrame) {
+        return frame > lastFrame && engine.getEvents().isDrained() && playing == 0;
+    }
+}
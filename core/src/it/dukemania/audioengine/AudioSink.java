@@ -0,0 +1,20 @@
+package it.dukemania.audioengine;
+
+public interface AudioSink {
+    /**
+     * Write some samples to the sink, the samples are copied or written before this method returns.
+     * @param samples the samples, between -1 and 1
+     * @param offset the index of the first sample to write
+     * @param length how many samples have to be written
+     */
+    void write(float[] samples, int offset, int length);
+    /**
+     * Returns how many times the sink had nothing to play because the samples were not calculated in time.
+     * @return the number of underruns
+     */
+    long getUnderruns();
+    /**
+     * Write every sample that is still pending, then release the resources of the sink.
+     */
+    void close();
+}
@@ -0,0 +1,153 @@
+package it.dukemania.audioengine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts a ring of blocks in front of another sink, the samples are copied in the ring and written to the other sink
+ * by a dedicated writer thread, so that the synthesis can run ahead of the device by the number of blocks of the ring.
+ * The ring has a single producer, the thread that calls write, and a single consumer, the writer thread.
+ */
+public class BufferedAudioSink implements AudioSink {
+
+    private final AudioSink sink;
+    private final int blockLength;
+    private final float[][] blocks;
+    private final int[] lengths;
+    private final Thread writer;
+    // index of the next block to write to the sink, written only by the writer thread
+    private final AtomicLong head = new AtomicLong();
+    // index of the next block to fill, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Thread producer;
+    private volatile boolean closed;
+    private volatile long underruns;
+    private volatile RuntimeException failure;
+
+    /**
+     * Create a buffered sink and start its writer thread.
+     * @param sink the sink that receives the samples
+     * @param blocks how many blocks the ring can hold, at least 2
+     * @param blockLength how many samples compose a block
+     */
+    public BufferedAudioSink(final AudioSink sink, final int blocks, final int blockLength) {
+        if (blocks < 2) {
+            throw new IllegalArgumentException("A ring needs at least 2 blocks");
+        }
+        this.sink = sink;
+        this.blockLength = blockLength;
+        this.blocks = new float[blocks][blockLength];
+        this.lengths = new int[blocks];
+        this.writer = new Thread(this::drain, "DukeMania audio writer");
+        this.writer.setPriority(Thread.MAX_PRIORITY);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Create a buffered sink whose blocks are as long as the buffers of the engine.
+     * @param sink the sink that receives the samples
+     * @param blocks how many blocks the ring can hold, at least 2
+     */
+    public BufferedAudioSink(final AudioSink sink, final int blocks) {
+        this(sink, blocks, Settings.BUFFER_LENGHT);
+    }
+
+    // the writer thread, it waits for the blocks to be filled and writes them to the sink
+    private void drain() {
+        try {
+            boolean started = false;
+            boolean starving = false;
+            while (true) {
+                final long h = head.get();
+                if (h == tail.get()) {
+                    if (closed) {
+                        break;
+                    }
+                    // the sink is going to finish its samples before the next block arrives
+                    if (started && !starving) {
+                        underruns++;
+                        starving = true;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                final int index = (int) (h % blocks.length);
+                sink.write(blocks[index], 0, lengths[index]);
+                head.lazySet(h + 1);
+                LockSupport.unpark(producer);
+                started = true;
+                starving = false;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            LockSupport.unpark(producer);
+        } finally {
+            sink.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The samples are split in blocks, the method waits only if the ring is full.
+     */
+    @Override
+    public void write(final float[] samples, final int offset, final int length) {
+        producer = Thread.currentThread();
+        int written = 0;
+        while (written < length) {
+            checkFailure();
+            final long t = tail.get();
+            if (t - head.get() >= blocks.length) {
+                LockSupport.park(this);
+                continue;
+            }
+            final int index = (int) (t % blocks.length);
+            lengths[index] = Math.min(blockLength, length - written);
+            System.arraycopy(samples, offset + written, blocks[index], 0, lengths[index]);
+            written += lengths[index];
+            tail.lazySet(t + 1);
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns how many blocks have been filled and are still waiting to be written.
+     * @return the number of blocks
+     */
+    public int getPendingBlocks() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     * An underrun is counted every time the writer thread finds the ring empty after the first block,
+     * so the sink behind it is going to run out of samples.
+     */
+    @Override
+    public long getUnderruns() {
+        return underruns + sink.getUnderruns();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits until the writer thread has written every block and closed the other sink.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+}
@@ -4,27 +4,137 @@ import java.util.Arrays;
 
 public class DrumSynth implements Synth {
 
+    private static final long HIT_TIME = 10;
+
+    private final PercussionBank bank;
+    // for every percussion of the bank, the hits that are playing are the first ones, the others are free
+    private final FloatBufferManager[][] hits = new FloatBufferManager[PercussionBank.SIZE][];
+    private final int[] playing = new int[PercussionBank.SIZE];
+
+    /**
+     * Create a drum synthesizer that plays the percussions of the shared bank.
+     * A percussion can be hit again while its previous hits are still playing.
+     */
+    public DrumSynth() {
+        this(PercussionBank.getInstance());
+    }
+
+    /**
+     * Create a drum synthesizer.
+     * @param bank the bank of the percussions
+     */
+    DrumSynth(final PercussionBank bank) {
+        this.bank = bank;
+    }
+
+    /**
+     * Get a percussion ready to be played, with Settings.DRUM_HITS hits, so that it is not loaded while the song plays.
+     * More hits are created when they are all playing.
+     * @param identifier the MIDI number of the percussion, the ones that are not in the bank are ignored
+     */
+    public void prepare(final int identifier) {
+        if (PercussionBank.contains(identifier) && hits[identifier - PercussionBank.FIRST] == null) {
+            hits[identifier - PercussionBank.FIRST] = new FloatBufferManager[0];
+            addHits(identifier, Math.max(1, Settings.DRUM_HITS));
+        }
+    }
+
+    private void addHits(final int identifier, final int count) {
+        final int p = identifier - PercussionBank.FIRST;
+        final int size = hits[p].length;
+        hits[p] = Arrays.copyOf(hits[p], size + count);
+        for (int k = size; k < size + count; k++) {
+            hits[p][k] = bank.createHit(identifier);
+        }
+    }
+
+    // move a hit that has stopped playing after the ones that are playing, the last playing hit takes its place
+    private void stop(final int drum, final int index) {
+        final FloatBufferManager[] drumHits = hits[drum];
+        final FloatBufferManager hit = drumHits[index];
+        drumHits[index] = drumHits[--playing[drum]];
+        drumHits[playing[drum]] = hit;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int checkKeys() {
-        return (int) Arrays.stream(DrumSamples.values()).filter(DrumSamples::hasNext).count();
+        int sounding = 0;
+        for (int d = 0; d < hits.length; d++) {
+            for (int k = 0; k < playing[d]; k++) {
+                if (hits[d][k].hasNext()) {
+                    sounding++;
+                }
+            }
+        }
+        return sounding;
     }
     /**
      * {@inheritDoc}
      */
     @Override
     public float getSample() {
-        return (float) Arrays.stream(DrumSamples.values()).filter(DrumSamples::hasNext).mapToDouble(DrumSamples::next).sum();
+        float sample = 0;
+        for (int d = 0; d < hits.length; d++) {
+            for (int k = 0; k < playing[d]; k++) {
+                final FloatBufferManager hit = hits[d][k];
+                if (hit.hasNext()) {
+                    sample += hit.nextSample();
+                } else {
+                    stop(d, k--);
+                }
+            }
+        }
+        return sample;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fillBlock(final float[] block, final int offset, final int length) {
+        Arrays.fill(block, offset, offset + length, 0f);
+        for (int d = 0; d < hits.length; d++) {
+            for (int k = 0; k < playing[d]; k++) {
+                final FloatBufferManager hit = hits[d][k];
+                hit.render(block, offset, length);
+                if (!hit.hasNext()) {
+                    stop(d, k--);
+                }
+            }
+        }
     }
     /**
-     * Start playing or restart playing a percussion.
-     * @param drum the percussion
+     * {@inheritDoc}
+     */
+    @Override
+    public void noteOn(final int identifier, final long micros) {
+        play(identifier);
+    }
+    /**
+     * Percussions are always played until their sample is over.
+     */
+    @Override
+    public void noteOff(final int identifier) {
+    }
+    /**
+     * Start playing a drum, the hits of the same drum that are still playing go on.
+     * @param drum the drum
      */
     public void playPercussion(final DrumSamples drum) {
-        if (drum != DrumSamples.Empty) {
-            drum.refresh();
+        play(drum.getIdentifier());
+    }
+
+    // the percussions that are not in the bank play nothing
+    private void play(final int identifier) {
+        if (PercussionBank.contains(identifier)) {
+            prepare(identifier);
+            final int p = identifier - PercussionBank.FIRST;
+            if (playing[p] == hits[p].length) {
+                addHits(identifier, hits[p].length);
+            }
+            hits[p][playing[p]++].refresh(HIT_TIME);
         }
     }
 
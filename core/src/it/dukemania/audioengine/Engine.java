@@ -1,34 +1,70 @@
 package it.dukemania.audioengine;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.audio.AudioDevice;
 import it.dukemania.midi.Instrument;
 import it.dukemania.midi.InstrumentType;
 import it.dukemania.midi.ParsedTrack;
 import it.dukemania.midi.KeyboardTrack;
+import it.dukemania.midi.NoteColumns;
+import it.dukemania.midi.Song;
 import it.dukemania.util.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class Engine {
 
+    private static final int EVENT_QUEUE_SIZE = 1024;
     private final List<Synth> synthetizers = new ArrayList<>();
-    private static final AudioDevice AD = Gdx.audio.newAudioDevice((int) Settings.SAMPLE_RATE, true);
+    private final List<SynthChannel> channels = new ArrayList<>();
+    private final Map<Synth, SynthChannel> channelOf = new IdentityHashMap<>();
+    private final NoteEventQueue events = new NoteEventQueue(EVENT_QUEUE_SIZE);
     private final float [] buffer = new float[Settings.BUFFER_LENGHT];
+    private final boolean parallel;
+    private Sequencer sequencer = new Sequencer();
 
     private float step;
     private float vol;
     private int old;
     private int att;
+    private long frame;
 
+    /**
+     * The pool that renders the synthesizers in parallel, created the first time it is needed.
+     */
+    private static final class Workers {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create an engine that renders its synthesizers in parallel if Settings.PARALLEL_RENDERING is true.
+     */
+    public Engine() {
+        this(Settings.PARALLEL_RENDERING);
+    }
 
     /**
-     * Calculates and plays a buffer to the LibGDX audio device.
+     * Create an engine.
+     * @param parallel true if the synthesizers are rendered in parallel on a fork-join pool,
+     * false if they are rendered one after the other on the thread that calculates the buffer
      */
-    public int playBuffer() {
+    public Engine(final boolean parallel) {
+        this.parallel = parallel;
+    }
 
-        final int num = synthetizers.stream().mapToInt(Synth::checkKeys).sum();
+    /**
+     * Calculates the next buffer, every synthesizer fills its own block, possibly on its own thread,
+     * then the blocks are summed in the output buffer always in the same order, so the result doesn't
+     * depend on the number of threads.
+     * The notes of the sequencer and the scheduled note events are played at their exact sample inside the buffer.
+     * @return the number of notes that were playing
+     */
+    public int renderBuffer() {
+        applyEvents(frame);
+        final int num = checkKeys();
         if (old > 0 && old != num) {
             att = 100;
             step = (regulateVolume(num) - vol) / att;
@@ -36,15 +72,147 @@ public class Engine {
             vol = regulateVolume(num);
         }
 
-        for (int i = 0; i < Settings.BUFFER_LENGHT; i++) {
+        collectEvents(frame + buffer.length);
+        if (parallel && channels.size() > 1) {
+            renderParallel();
+        } else {
+            for (int c = 0; c < channels.size(); c++) {
+                channels.get(c).render();
+            }
+        }
+        Arrays.fill(buffer, 0f);
+        for (int c = 0; c < channels.size(); c++) {
+            final float[] block = channels.get(c).getBlock();
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] += block[i];
+            }
+        }
+        for (int i = 0; i < buffer.length; i++) {
             vol += --att > 0 ? step : 0;
-            buffer[i] = (float) (synthetizers.stream().mapToDouble(Synth::getSample).sum()) * vol;
+            buffer[i] *= vol;
         }
 
-        AD.writeSamples(buffer, 0, buffer.length);
+        frame += buffer.length;
         old = num;
         return num;
+    }
 
+    // play every note and event scheduled up to a certain sample, late ones are played immediately
+    private void applyEvents(final long until) {
+        while (sequencer.hasNext() && sequencer.peekFrame() <= until) {
+            sequencer.playNext();
+        }
+        while (!events.isEmpty() && events.peekFrame() <= until) {
+            final Synth synth = events.peekSynth();
+            if (events.peekKind() == NoteEventQueue.NOTE_ON) {
+                synth.noteOn(events.peekIdentifier(), events.peekDuration());
+            } else {
+                synth.noteOff(events.peekIdentifier());
+            }
+            events.remove();
+        }
+    }
+
+    // give every note and event scheduled before a certain sample to the channel of its synthesizer, in time order
+    private void collectEvents(final long until) {
+        while (true) {
+            if (sequencer.hasNext() && sequencer.peekFrame() < until
+                    && (events.isEmpty() || sequencer.peekFrame() <= events.peekFrame())) {
+                addEvent(sequencer.peekSynth(), sequencer.peekFrame(), NoteEventQueue.NOTE_ON,
+                        sequencer.peekIdentifier(), sequencer.peekDuration());
+                sequencer.remove();
+            } else if (!events.isEmpty() && events.peekFrame() < until) {
+                addEvent(events.peekSynth(), events.peekFrame(), events.peekKind(),
+                        events.peekIdentifier(), events.peekDuration());
+                events.remove();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void addEvent(final Synth synth, final long eventFrame, final int kind, final int identifier,
+                          final long micros) {
+        final SynthChannel channel = channelOf.get(synth);
+        if (channel != null) {
+            channel.addEvent((int) (eventFrame - frame), kind, identifier, micros);
+        } else if (kind == NoteEventQueue.NOTE_ON) {
+            synth.noteOn(identifier, micros);
+        } else {
+            synth.noteOff(identifier);
+        }
+    }
+
+    // the render thread renders the first channel while the pool renders the others
+    private void renderParallel() {
+        for (int c = 1; c < channels.size(); c++) {
+            channels.get(c).reinitialize();
+            Workers.POOL.execute(channels.get(c));
+        }
+        channels.get(0).render();
+        for (int c = 1; c < channels.size(); c++) {
+            channels.get(c).join();
+        }
+    }
+
+    /**
+     * Checks how many notes are currently playing in all the synthesizers.
+     * @return the number of notes
+     */
+    public int checkKeys() {
+        int num = 0;
+        for (int s = 0; s < synthetizers.size(); s++) {
+            num += synthetizers.get(s).checkKeys();
+        }
+        return num;
+    }
+
+    /**
+     * Returns the number of samples calculated since the engine was created.
+     * @return the number of samples
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the queue of the note events that the engine plays while calculating its buffers.
+     * @return the queue
+     */
+    public NoteEventQueue getEvents() {
+        return events;
+    }
+
+    /**
+     * Add a synthesizer for every track of a song and set the sequence of its notes.
+     * @param song the song
+     * @return the sequencer that plays the song
+     */
+    public Sequencer loadSong(final Song song) {
+        final Sequencer songSequencer = new Sequencer();
+        song.getTracks().forEach(track -> {
+            final Synth synthesizer = track.getChannel() == 10 ? addDrum(track.getColumns()) : addSynth(track);
+            songSequencer.addTrack(synthesizer, track.getColumns());
+        });
+        setSequencer(songSequencer);
+        return songSequencer;
+    }
+
+    /**
+     * Set the sequence of notes that the engine plays while calculating its buffers,
+     * it must be called before the engine is used by its render thread.
+     * @param sequencer the sequencer
+     */
+    public void setSequencer(final Sequencer sequencer) {
+        this.sequencer = sequencer;
+    }
+
+    /**
+     * Returns the last calculated buffer.
+     * @return the buffer
+     */
+    public float[] getBuffer() {
+        return buffer;
     }
 
     /**
@@ -62,9 +230,7 @@ public class Engine {
         final Instrument serializedInstrument = new Instrument((InstrumentType) actualTrack.getInstrument());
 
         try {
-            final var synth = serializedInstrument.getSynthetizer().build(notes);
-            synthetizers.add(synth);
-            return synth;
+            return addSynth(serializedInstrument.getSynthetizer().build(notes));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -77,9 +243,30 @@ public class Engine {
      * @return the drum synthesizer added
      */
     public Synth addDrum() {
-        final var drumSynth = new DrumSynth();
-        synthetizers.add(drumSynth);
-        return drumSynth;
+        return addSynth(new DrumSynth());
+    }
+
+    // a drum synthesizer with the percussions of a track already loaded, so that they are not loaded while it plays
+    private Synth addDrum(final NoteColumns notes) {
+        final DrumSynth drums = new DrumSynth();
+        for (int i = 0; i < notes.size(); i++) {
+            drums.prepare(notes.getIdentifier(i));
+        }
+        return addSynth(drums);
+    }
+
+    /**
+     * Add an already built synthesizer to the synthesizer list.
+     * @param synth the synthesizer
+     * @param <S> the type of the synthesizer
+     * @return the synthesizer added
+     */
+    <S extends Synth> S addSynth(final S synth) {
+        synthetizers.add(synth);
+        final SynthChannel channel = new SynthChannel(synth, buffer.length);
+        channels.add(channel);
+        channelOf.put(synth, channel);
+        return synth;
     }
 
     /**
@@ -89,6 +276,7 @@ public class Engine {
      */
     public float regulateVolume(final int n) {
         switch (n) {
+            case 0:
             case 1: return 0.3f;
             case 2: return 0.25f;
             case 3: return 0.22f;
@@ -37,8 +37,29 @@ public class Enveloper {
      * @param buff the sample buffer
      * @return the volume buffer Manager
      */
-    public BufferManager<Float> createBufferManager(final double [] buff) {
-        return new BufferManager<>() {
+    public FloatBufferManager createBufferManager(final double [] buff) {
+        return createBufferManager(new SampleSource() {
+            private int position;
+
+            @Override
+            public void restart() {
+                position = 0;
+            }
+
+            @Override
+            public double next() {
+                return buff[position++];
+            }
+        });
+    }
+
+    /**
+     * Create the actual volume enveloper, using the class parameters.
+     * @param source the source of the samples, restarted every time the note is replayed
+     * @return the volume buffer Manager
+     */
+    public FloatBufferManager createBufferManager(final SampleSource source) {
+        return new FloatBufferManager() {
             private float actual;
             private float totalSamples;
             private int processedSamples;
@@ -57,6 +78,14 @@ public class Enveloper {
                 step2 = 0;
             }
 
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void release() {
+                totalSamples = reset >= 0 ? 0 : Math.min(totalSamples, processedSamples);
+            }
+
             /**
              * {@inheritDoc}
              */
@@ -69,14 +98,25 @@ public class Enveloper {
              * {@inheritDoc}
              */
             @Override
-            public Float next() {
+            public float getVolume() {
+                return actual;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public float nextSample() {
 
                 if (reset > 0) {
                     actual -= resetStep;
                 } else {
                     if (reset == 0) {
+                        // the attenuation is over even if the note has been released in the meantime
+                        this.reset = -1;
                         this.processedSamples = 0;
                         this.actual = 0;
+                        source.restart();
                     }
                     if (this.processedSamples >= this.totalSamples) {
                         if (step2 == 0) {
@@ -89,14 +129,73 @@ public class Enveloper {
                         actual += step2;
                     } else {
                         if (actual >= atkVol) {
-                            return atkVol * (float) buff[this.processedSamples++];
+                            this.processedSamples++;
+                            return atkVol * (float) source.next();
                         }
                         actual += step1;
                     }
                 }
 
-                this.reset--;
-                return (float) buff[this.processedSamples++] * actual;
+                if (this.reset > 0) {
+                    this.reset--;
+                }
+                this.processedSamples++;
+                return (float) source.next() * actual;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int render(final float[] block, final int offset, final int length) {
+                final int end = offset + length;
+                int i = offset;
+                // every iteration renders a segment with the same volume slope, up to its end or the end of the block
+                while (i < end && hasNext()) {
+                    final int start = i;
+                    float volume = actual;
+                    if (reset > 0) {
+                        final int attenuation = Math.min(end, i + reset);
+                        for (; i < attenuation; i++) {
+                            volume -= resetStep;
+                            block[i] += (float) source.next() * volume;
+                        }
+                        this.reset -= i - start;
+                    } else {
+                        if (reset == 0) {
+                            this.reset = -1;
+                            this.processedSamples = 0;
+                            this.actual = 0;
+                            volume = 0;
+                            source.restart();
+                        }
+                        final int processed = this.processedSamples;
+                        if (processed >= totalSamples) {
+                            if (step2 == 0) {
+                                step2 = (volume / (rel * Settings.SAMPLESPERMILLI)) * -1;
+                            }
+                            if (volume <= 0) {
+                                break;
+                            }
+                            for (; i < end && volume > 0; i++) {
+                                volume += step2;
+                                block[i] += (float) source.next() * volume;
+                            }
+                        } else if (volume >= atkVol) {
+                            for (; i < end && processed + i - start < totalSamples; i++) {
+                                block[i] += atkVol * (float) source.next();
+                            }
+                        } else {
+                            for (; i < end && processed + i - start < totalSamples && volume < atkVol; i++) {
+                                volume += step1;
+                                block[i] += (float) source.next() * volume;
+                            }
+                        }
+                    }
+                    this.actual = volume;
+                    this.processedSamples += i - start;
+                }
+                return i - offset;
             }
         };
     }
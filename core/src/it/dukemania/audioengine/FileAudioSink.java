@@ -0,0 +1,114 @@
+package it.dukemania.audioengine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the samples to a 16 bit mono WAV file, the header is completed when the sink is closed.
+ */
+public class FileAudioSink implements AudioSink {
+
+    private static final int HEADER_SIZE = 44;
+    private static final int FORMAT_SIZE = 16;
+    private static final short PCM = 1;
+    private static final short CHANNELS = 1;
+    private static final short BYTES_PER_SAMPLE = 2;
+
+    private final FileChannel channel;
+    private final boolean owned;
+    private final long start;
+    private ByteBuffer bytes = ByteBuffer.allocate(0);
+    private long samples;
+
+    /**
+     * Create a sink that writes a WAV file.
+     * @param file the path of the file, it is overwritten if it already exists
+     * @throws IOException if the file can't be opened
+     */
+    public FileAudioSink(final Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), true);
+    }
+
+    /**
+     * Create a sink that writes a WAV starting from the current position of a channel,
+     * the channel is not closed with the sink.
+     * @param channel the channel
+     * @throws IOException if the channel can't be written
+     */
+    public FileAudioSink(final FileChannel channel) throws IOException {
+        this(channel, false);
+    }
+
+    private FileAudioSink(final FileChannel channel, final boolean owned) throws IOException {
+        this.channel = channel;
+        this.owned = owned;
+        this.start = channel.position();
+        channel.write(header(0), start);
+        channel.position(start + HEADER_SIZE);
+    }
+
+    // the RIFF header of a WAV file with a certain number of bytes of samples
+    private static ByteBuffer header(final long dataSize) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes()).putInt((int) (HEADER_SIZE - 8 + dataSize)).put("WAVE".getBytes());
+        header.put("fmt ".getBytes()).putInt(FORMAT_SIZE).putShort(PCM).putShort(CHANNELS)
+                .putInt((int) Settings.SAMPLE_RATE).putInt((int) Settings.SAMPLE_RATE * CHANNELS * BYTES_PER_SAMPLE)
+                .putShort((short) (CHANNELS * BYTES_PER_SAMPLE)).putShort((short) (Byte.SIZE * BYTES_PER_SAMPLE));
+        header.put("data".getBytes()).putInt((int) dataSize);
+        return header.flip();
+    }
+
+    @Override
+    public void write(final float[] block, final int offset, final int length) {
+        if (bytes.capacity() < length * BYTES_PER_SAMPLE) {
+            bytes = ByteBuffer.allocate(length * BYTES_PER_SAMPLE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        bytes.clear();
+        for (int i = offset; i < offset + length; i++) {
+            bytes.putShort((short) (Math.max(-1f, Math.min(1f, block[i])) * Short.MAX_VALUE));
+        }
+        bytes.flip();
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        samples += length;
+    }
+
+    /**
+     * Returns how many samples have been written.
+     * @return the number of samples
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    @Override
+    public long getUnderruns() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        try {
+            try {
+                channel.write(header(samples * BYTES_PER_SAMPLE), start);
+            } finally {
+                if (owned) {
+                    channel.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package it.dukemania.audioengine;
+
+public interface FloatBufferManager {
+    /**
+     * Restart the enveloper, first, 10 samples are used to take the volume from the current value to 0.
+     * @param ttl the sustain time of the note
+     */
+    void refresh(long ttl);
+
+    /**
+     * End the sustain of the note, the enveloper enters its release phase.
+     */
+    void release();
+
+    /**
+     * Checks if the note has other samples to play.
+     * @return true if another sample can be played, false otherwise
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next sample.
+     * @return the sample
+     */
+    float nextSample();
+
+    /**
+     * Adds the next samples of the note to a block, the same ones that nextSample would return one at a time.
+     * @param block the block where the samples are added
+     * @param offset the index of the block where the first sample is added
+     * @param length how many samples have to be added
+     * @return how many samples have been added, less than length if the note has ended
+     */
+    int render(float[] block, int offset, int length);
+
+    /**
+     * Returns the current volume of the enveloper.
+     * @return the volume, 0 when the note is silent
+     */
+    float getVolume();
+}
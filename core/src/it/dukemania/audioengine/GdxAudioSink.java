@@ -0,0 +1,31 @@
+package it.dukemania.audioengine;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.AudioDevice;
+
+/**
+ * Plays the samples on the LibGDX audio device, every write blocks until the device can accept the samples.
+ */
+public class GdxAudioSink implements AudioSink {
+
+    private final AudioDevice device = Gdx.audio.newAudioDevice((int) Settings.SAMPLE_RATE, true);
+
+    @Override
+    public void write(final float[] samples, final int offset, final int length) {
+        device.writeSamples(samples, offset, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The device doesn't report its underruns, they can be counted by a BufferedAudioSink in front of it.
+     */
+    @Override
+    public long getUnderruns() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        device.dispose();
+    }
+}
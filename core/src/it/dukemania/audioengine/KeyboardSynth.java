@@ -3,86 +3,266 @@ package it.dukemania.audioengine;
 import it.dukemania.util.Pair;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
-import java.util.stream.IntStream;
-import java.util.stream.LongStream;
 
 public class KeyboardSynth implements Synth {
-    private final Map<Integer, BufferManager<Float>> keys = new HashMap<>();
-
-    // create a bufferManager for a ceratin note in a certain track in a certain song
-    private static BufferManager<Float> createNoteBuffer(final Enveloper env,
-                                                         final float freq,
-                                                         final long time,
-                                                         final WaveTable[]waves,
-                                                         final Function<Long, Float> noteLFO,
-                                                         final Function<Long, Float> volumeLFO,
-                                                         final double [] offsets) {
-        double[] steps = Arrays.stream(offsets)
-                                .map(x -> (Settings.WAVETABLE_SIZE * (x * freq)) / Settings.SAMPLE_RATE)
-                                .toArray();
-        final double[] positions = new double[steps.length];
-        final long total = (long) (time * Settings.SAMPLESPERMILLI + env.getTime() + 1000);
-        double [] buff = LongStream.range(0, total).mapToDouble(
-            k -> {
-                final float noteLfoVal = noteLFO.apply(k);
-                return IntStream.range(0, steps.length).mapToDouble(x -> {
-                    positions[x] = positions[x] + steps[x] * noteLfoVal;
-                    return waves[x].getAt((int) (positions[x] % Settings.WAVETABLE_SIZE));
-                }).sum() / steps.length * volumeLFO.apply(k) / waves.length;
+    private static final int NUM_A4 = 69;
+    private static final int NUM_NOTE = 12;
+    private static final double FREQ_A4 = 440;
+    private static final int MIDI_NOTES = 128;
+
+    // the voices that are playing are the first ones, the others are free
+    private final Voice[] voices;
+    private int playing;
+    private long started;
+    private final VoiceStealing stealing;
+    // indexed by note: the voice that is playing it and has not been released, the pre-rendered samples
+    private final Voice[] keys;
+    private final NoteBufferCache.Note[] notes;
+    private final Enveloper env;
+    private final WaveTable[] waves;
+    private final Function<Long, Float> nlfo;
+    private final Function<Long, Float> vlfo;
+    private final double[] offsets;
+    private final boolean realtime;
+
+    // a voice plays a note at a time, a new note starts after the previous one has been attenuated
+    // every voice has two cursors and two oscillators, the ones of the previous note are not moved while it is attenuated
+    private static final class Voice implements SampleSource {
+        private FloatBufferManager envelope;
+        private final NoteBufferCache.Cursor[] cursors = {new NoteBufferCache.Cursor(), new NoteBufferCache.Cursor()};
+        private final Oscillator[] oscillators;
+        private SampleSource current;
+        private SampleSource following;
+        private int currentSlot;
+        private int followingSlot;
+        private int note;
+        private long start;
+
+        private Voice(final WaveTable[] waves, final Function<Long, Float> nlfo, final Function<Long, Float> vlfo,
+                final double[] offsets) {
+            this.oscillators = new Oscillator[] {
+                new Oscillator((float) FREQ_A4, waves, nlfo, vlfo, offsets),
+                new Oscillator((float) FREQ_A4, waves, nlfo, vlfo, offsets),
+            };
+        }
+
+        // the note plays its pre-rendered samples, or it is calculated while it is played if they are null
+        private void play(final int note, final NoteBufferCache.Note rendered, final float frequency, final long start) {
+            this.note = note;
+            this.start = start;
+            this.followingSlot = 1 - currentSlot;
+            if (rendered != null) {
+                rendered.rewind(cursors[followingSlot]);
+                this.following = cursors[followingSlot];
+            } else {
+                oscillators[followingSlot].tune(frequency);
+                this.following = oscillators[followingSlot];
+            }
+            // a voice that is not playing has nothing to attenuate
+            if (this.current == null || !this.envelope.hasNext()) {
+                this.current = following;
+                this.currentSlot = followingSlot;
+            }
+        }
+
+        @Override
+        public void restart() {
+            if (following != null) {
+                current = following;
+                currentSlot = followingSlot;
+                following = null;
             }
-        ).toArray();
-        return env.createBufferManager(buff);
+            current.restart();
+        }
+
+        @Override
+        public double next() {
+            return current.next();
+        }
+    }
+
+    // the samples of a note, they are shared with the other synthesizers that have the same oscillators
+    private NoteBufferCache.Note renderNote(final int note, final int samples) {
+        return NoteBufferCache.getInstance().getNote(frequencyOf(note), note, waves, nlfo, vlfo, offsets, samples);
+    }
+
+    // the number of samples of a note played for a certain time, including its attack and release
+    private int samplesOf(final long time) {
+        return (int) (time * Settings.SAMPLESPERMILLI + env.getTime() + 1000);
+    }
+
+    private static float frequencyOf(final int note) {
+        return (float) (Math.pow(2, (double) (note - NUM_A4) / NUM_NOTE) * FREQ_A4);
     }
 
 
     /**
      * costructor of KeyboardSynth, usually called by a builder.
+     * The synthesizer plays up to Settings.POLYPHONY notes at the same time,
+     * the note that stops to play a new one is chosen with Settings.VOICE_STEALING.
+     * It plays the MIDI notes and the identifiers of freqs, the other identifiers are ignored.
      * @param env the enveloper which all the notees of the synth must follow
      * @param waves the wave forms of the osacillators
      * @param nlfo the note lfo
      * @param vlfo the volume lfo
      * @param offsets the offsets of the oscilaltors
      * @param freqs a list of pairs, X is the note frequency, Y is the maxium duration for the note (in ms)
+     * @param realtime true if the notes are calculated while they are played,
+     * false if every note is pre-rendered for its maximum duration when the synthesizer is built
      */
     public KeyboardSynth(final Enveloper env,
                          final WaveTable [] waves,
                          final Function<Long, Float> nlfo,
                          final Function<Long, Float> vlfo,
                          final double [] offsets,
-                         final List<Pair<Integer, Long>> freqs) {
-        freqs.forEach(x -> {
-            final int numA4 = 69;
-            final int numNote = 12;
-            final double freqA4 = 440;
-            final float freq = (float) (Math.pow(2, (double) (x.getX() - numA4) / numNote) * freqA4);
-            keys.put(x.getX(), createNoteBuffer(env, freq, x.getY(), waves, nlfo, vlfo, offsets));
-        });
+                         final List<Pair<Integer, Long>> freqs,
+                         final boolean realtime) {
+        this.env = env;
+        this.waves = waves;
+        this.nlfo = nlfo;
+        this.vlfo = vlfo;
+        this.offsets = offsets;
+        this.realtime = realtime;
+        this.stealing = Settings.VOICE_STEALING;
+        this.voices = new Voice[Math.max(1, Settings.POLYPHONY)];
+        for (int k = 0; k < voices.length; k++) {
+            voices[k] = new Voice(waves, nlfo, vlfo, offsets);
+            voices[k].envelope = env.createBufferManager(voices[k]);
+        }
+        // the tables are never resized while the notes are played
+        final int identifiers = freqs.stream().mapToInt(x -> x.getX() + 1).reduce(MIDI_NOTES, Math::max);
+        this.keys = new Voice[identifiers];
+        this.notes = new NoteBufferCache.Note[identifiers];
+        if (!realtime) {
+            final int[] lengths = new int[notes.length];
+            freqs.forEach(x -> lengths[x.getX()] = Math.max(lengths[x.getX()], samplesOf(x.getY())));
+            // the notes are kept by the synthesizer, so the cache is not locked while they are played
+            for (int note = 0; note < lengths.length; note++) {
+                if (lengths[note] > 0) {
+                    notes[note] = renderNote(note, lengths[note]);
+                }
+            }
+        }
     }
+
+    // the pre-rendered samples of a note, null if it has not been pre-rendered or is longer than expected
+    private NoteBufferCache.Note renderedFor(final int note, final long millis) {
+        final NoteBufferCache.Note rendered = notes[note];
+        return rendered != null && rendered.length() >= samplesOf(millis) ? rendered : null;
+    }
+
+    private boolean isPlayable(final int identifier) {
+        return identifier >= 0 && identifier < keys.length;
+    }
+
+    // the voice that stops playing its note to play a new one
+    private Voice steal() {
+        Voice victim = voices[0];
+        for (int k = 1; k < playing; k++) {
+            final Voice voice = voices[k];
+            final boolean quieter = stealing == VoiceStealing.QUIETEST
+                    && voice.envelope.getVolume() != victim.envelope.getVolume();
+            if (quieter ? voice.envelope.getVolume() < victim.envelope.getVolume() : voice.start < victim.start) {
+                victim = voice;
+            }
+        }
+        return victim;
+    }
+
+    // move a voice that has stopped playing after the ones that are playing, the last playing voice takes its place
+    private void stop(final int index) {
+        final Voice voice = voices[index];
+        voices[index] = voices[--playing];
+        voices[playing] = voice;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int checkKeys() {
-        return (int) keys.values().stream().filter(BufferManager::hasNext).count();
+        int sounding = 0;
+        for (int k = 0; k < playing; k++) {
+            if (voices[k].envelope.hasNext()) {
+                sounding++;
+            }
+        }
+        return sounding;
     }
     /**
      * {@inheritDoc}
      */
     @Override
     public float getSample() {
-        return (float) keys.values().stream().filter(BufferManager::hasNext).mapToDouble(BufferManager::next).sum();
+        float sample = 0;
+        for (int k = 0; k < playing; k++) {
+            final FloatBufferManager voice = voices[k].envelope;
+            if (voice.hasNext()) {
+                sample += voice.nextSample();
+            } else {
+                stop(k--);
+            }
+        }
+        return sample;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fillBlock(final float[] block, final int offset, final int length) {
+        final int end = offset + length;
+        Arrays.fill(block, offset, end, 0f);
+        for (int k = 0; k < playing; k++) {
+            final FloatBufferManager voice = voices[k].envelope;
+            voice.render(block, offset, length);
+            if (!voice.hasNext()) {
+                stop(k--);
+            }
+        }
     }
     /**
      * Given a certain frequency, play that note for a certain amount of time.
+     * The note is played by a free voice, a note with the same frequency that is still playing enters its release.
      * @param identifier the frequency of the note that wants to be played
      * @param micros how many microseconds we want the note to be played
      */
     public void playTimedNote(final int identifier, final Long micros) {
-        keys.get(identifier).refresh(micros / 1000);
+        play(identifier, micros);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void noteOn(final int identifier, final long micros) {
+        play(identifier, micros);
+    }
+
+    private void play(final int identifier, final long micros) {
+        if (!isPlayable(identifier)) {
+            return;
+        }
+        noteOff(identifier);
+        final Voice voice = playing < voices.length ? voices[playing++] : steal();
+        voice.play(identifier, renderedFor(identifier, micros / 1000), frequencyOf(identifier), started++);
+        voice.envelope.refresh(micros / 1000);
+        keys[identifier] = voice;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void noteOff(final int identifier) {
+        if (!isPlayable(identifier)) {
+            return;
+        }
+        final Voice voice = keys[identifier];
+        keys[identifier] = null;
+        // the voice may have been stolen by another note in the meantime
+        if (voice != null && voice.note == identifier) {
+            voice.envelope.release();
+        }
     }
 
 }
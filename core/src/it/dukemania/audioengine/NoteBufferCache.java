@@ -0,0 +1,326 @@
+package it.dukemania.audioengine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Keeps the pre-rendered samples of the notes, so that the tracks and the songs played with the same synthesizer
+ * share them instead of rendering them again.
+ * The samples only depend on the oscillators, the enveloper is applied while they are played, so a note is
+ * identified by the wave forms, the offsets and the LFOs of its synthesizer, its pitch and the sample rate.
+ * A note rendered for a longer time is also used for the shorter ones, the lengths are rounded up to a multiple of
+ * a quarter of a second so that a note is rendered again only when it becomes much longer.
+ * The least recently used notes are removed when the samples exceed the memory budget, and they can be moved to a
+ * memory mapped file instead of being discarded.
+ * The cache is locked while a note is looked up or rendered, so it is meant to be used when the synthesizers are
+ * built: a synthesizer keeps the notes it gets and plays them with its cursors, without looking them up again.
+ */
+final class NoteBufferCache {
+
+    private static final float BUCKET_SECONDS = 0.25f;
+    private static NoteBufferCache instance;
+
+    private final long budget;
+    private final long spillLimit;
+    private final Optional<Path> spillFile;
+    private final LinkedHashMap<Key, float[]> rendered = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, FloatBuffer> spilled = new HashMap<>();
+    private FileChannel spill;
+    private long used;
+
+    // the parameters of the oscillators of a note
+    private static final class Key {
+        private final WaveTable[] waves;
+        private final double[] offsets;
+        private final Function<Long, Float> noteLFO;
+        private final Function<Long, Float> volumeLFO;
+        private final int note;
+        private final float sampleRate;
+        private final int hash;
+
+        Key(final WaveTable[] waves, final double[] offsets, final Function<Long, Float> noteLFO,
+                final Function<Long, Float> volumeLFO, final int note) {
+            this.waves = waves.clone();
+            this.offsets = offsets.clone();
+            this.noteLFO = noteLFO;
+            this.volumeLFO = volumeLFO;
+            this.note = note;
+            this.sampleRate = Settings.SAMPLE_RATE;
+            this.hash = Objects.hash(Arrays.hashCode(this.waves), Arrays.hashCode(this.offsets), noteLFO, volumeLFO,
+                    note, sampleRate);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            // the LFOs are functions, so they are the same only if they come from the same synthesizer
+            return note == other.note && Float.compare(sampleRate, other.sampleRate) == 0
+                    && noteLFO == other.noteLFO && volumeLFO == other.volumeLFO
+                    && Arrays.equals(waves, other.waves) && Arrays.equals(offsets, other.offsets);
+        }
+    }
+
+    /**
+     * The samples of a note, which can be played by more sources at the same time.
+     */
+    interface Note extends SampleSource {
+        /**
+         * @return the number of samples
+         */
+        int length();
+
+        /**
+         * Moves a cursor to the first of these samples, so that it plays them without creating a new source.
+         * It doesn't lock the cache, so it can be called while the notes are played.
+         * @param cursor the cursor
+         */
+        void rewind(Cursor cursor);
+    }
+
+    /**
+     * A source that plays the samples of the notes without copying them, it is moved from a note to the following one
+     * so that the notes played by a voice don't create new objects.
+     */
+    static final class Cursor implements SampleSource {
+        private float[] array;
+        private FloatBuffer buffer;
+        private int position;
+
+        private void rewind(final float[] array, final FloatBuffer buffer) {
+            this.array = array;
+            this.buffer = buffer;
+            this.position = 0;
+        }
+
+        @Override
+        public void restart() {
+            position = 0;
+        }
+
+        @Override
+        public double next() {
+            // the position of the mapped buffer is never moved, so it can be shared by all the cursors
+            return array != null ? array[position++] : buffer.get(position++);
+        }
+    }
+
+    /**
+     * Create a cache.
+     * @param budget the maximum number of bytes of the samples kept in memory
+     * @param spillFile the file where the notes removed from the memory are moved, if present
+     * @param spillLimit the maximum size of the file
+     */
+    NoteBufferCache(final long budget, final Optional<Path> spillFile, final long spillLimit) {
+        this.budget = budget;
+        this.spillFile = spillFile;
+        this.spillLimit = spillLimit;
+    }
+
+    /**
+     * Returns the cache shared by all the synthesizers, created with the budget of the settings.
+     * @return the cache
+     */
+    static synchronized NoteBufferCache getInstance() {
+        if (instance == null) {
+            Optional<Path> file = Optional.empty();
+            if (Settings.NOTE_CACHE_SPILL_BYTES > 0) {
+                try {
+                    file = Optional.of(Files.createTempFile("dukemania-notes", null));
+                    file.get().toFile().deleteOnExit();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            instance = new NoteBufferCache(Settings.NOTE_CACHE_BYTES, file, Settings.NOTE_CACHE_SPILL_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the samples of a note, rendering them only if they are not in the cache or if they are too short.
+     * @param frequency the frequency of the note
+     * @param note the number of the note, it identifies the frequency
+     * @param waves the wave forms of the oscillators
+     * @param noteLFO the note LFO
+     * @param volumeLFO the volume LFO
+     * @param offsets the offsets of the oscillators
+     * @param samples the minimum number of samples
+     * @return a new source of the samples, which can be played independently from the others
+     */
+    synchronized Note getNote(final float frequency, final int note, final WaveTable[] waves,
+            final Function<Long, Float> noteLFO, final Function<Long, Float> volumeLFO, final double[] offsets,
+            final int samples) {
+        final Key key = new Key(waves, offsets, noteLFO, volumeLFO, note);
+        final float[] inMemory = rendered.get(key);
+        if (inMemory != null && inMemory.length >= samples) {
+            return new ArraySource(inMemory);
+        }
+        final FloatBuffer mapped = spilled.get(key);
+        if (mapped != null && mapped.capacity() >= samples) {
+            return new MappedSource(mapped);
+        }
+        final float[] buff = render(frequency, waves, noteLFO, volumeLFO, offsets, samples);
+        spilled.remove(key);
+        if (inMemory != null) {
+            rendered.remove(key);
+            used -= sizeOf(inMemory);
+        }
+        if (sizeOf(buff) <= budget) {
+            rendered.put(key, buff);
+            used += sizeOf(buff);
+            evict();
+        }
+        return new ArraySource(buff);
+    }
+
+    /**
+     * @return the number of bytes of the samples kept in memory
+     */
+    synchronized long getUsedBytes() {
+        return used;
+    }
+
+    /**
+     * Removes all the notes. The file is not truncated, the notes that are playing may still read it.
+     */
+    synchronized void clear() {
+        rendered.clear();
+        spilled.clear();
+        used = 0;
+    }
+
+    private static float[] render(final float frequency, final WaveTable[] waves, final Function<Long, Float> noteLFO,
+            final Function<Long, Float> volumeLFO, final double[] offsets, final int samples) {
+        // the oscillator does not escape the loop, so the compiler can avoid boxing the positions for the LFOs
+        final Oscillator oscillator = new Oscillator(frequency, waves, noteLFO, volumeLFO, offsets);
+        final int bucket = Math.max(1, (int) (Settings.SAMPLE_RATE * BUCKET_SECONDS));
+        final float[] buff = new float[(samples + bucket - 1) / bucket * bucket];
+        // the pre-rendered samples have always been played as floats
+        for (int k = 0; k < buff.length; k++) {
+            buff[k] = (float) oscillator.next();
+        }
+        return buff;
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Key, float[]>> eldest = rendered.entrySet().iterator();
+        while (used > budget && eldest.hasNext()) {
+            final Map.Entry<Key, float[]> entry = eldest.next();
+            eldest.remove();
+            used -= sizeOf(entry.getValue());
+            if (spillFile.isPresent()) {
+                moveToFile(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void moveToFile(final Key key, final float[] samples) {
+        try {
+            if (spill == null) {
+                spill = FileChannel.open(spillFile.get(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            final long position = spill.size();
+            if (position + sizeOf(samples) > spillLimit) {
+                return;
+            }
+            final ByteBuffer bytes = ByteBuffer.allocate((int) sizeOf(samples)).order(ByteOrder.nativeOrder());
+            bytes.asFloatBuffer().put(samples);
+            while (bytes.hasRemaining()) {
+                spill.write(bytes, position + bytes.position());
+            }
+            // the samples are read from the pages of the file, without copying them back in the heap
+            spilled.put(key, spill.map(FileChannel.MapMode.READ_ONLY, position, sizeOf(samples))
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer());
+        } catch (IOException e) {
+            // the note is rendered again when it is needed
+            e.printStackTrace();
+        }
+    }
+
+    private static long sizeOf(final float[] samples) {
+        return (long) samples.length * Float.BYTES;
+    }
+
+    private static final class ArraySource implements Note {
+        private final float[] samples;
+        private int position;
+
+        ArraySource(final float[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public int length() {
+            return samples.length;
+        }
+
+        @Override
+        public void rewind(final Cursor cursor) {
+            cursor.rewind(samples, null);
+        }
+
+        @Override
+        public void restart() {
+            position = 0;
+        }
+
+        @Override
+        public double next() {
+            return samples[position++];
+        }
+    }
+
+    private static final class MappedSource implements Note {
+        private final FloatBuffer samples;
+
+        MappedSource(final FloatBuffer samples) {
+            this.samples = samples.duplicate();
+        }
+
+        @Override
+        public int length() {
+            return samples.capacity();
+        }
+
+        @Override
+        public void rewind(final Cursor cursor) {
+            cursor.rewind(null, samples);
+        }
+
+        @Override
+        public void restart() {
+            samples.rewind();
+        }
+
+        @Override
+        public double next() {
+            return samples.get();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package it.dukemania.audioengine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring buffer of note events, written by a single producer thread and read by a single consumer thread.
+ * The events are stored in preallocated parallel arrays, so neither side allocates while the song is playing.
+ */
+public final class NoteEventQueue {
+
+    /**
+     * The event starts a note.
+     */
+    public static final int NOTE_ON = 0;
+    /**
+     * The event makes a note enter its release phase.
+     */
+    public static final int NOTE_OFF = 1;
+
+    private final int mask;
+    private final long[] frames;
+    private final Synth[] synths;
+    private final int[] kinds;
+    private final int[] identifiers;
+    private final long[] durations;
+    // index of the next event to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // index of the next event to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * Create an empty queue.
+     * @param capacity the minimum number of events that the queue can hold, rounded up to a power of two
+     */
+    public NoteEventQueue(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.frames = new long[size];
+        this.synths = new Synth[size];
+        this.kinds = new int[size];
+        this.identifiers = new int[size];
+        this.durations = new long[size];
+    }
+
+    /**
+     * Add an event at the end of the queue, only the producer thread can call it.
+     * Events must be offered in non decreasing frame order.
+     * @param frame the sample at which the event takes place
+     * @param synth the synthesizer that plays the note
+     * @param kind NOTE_ON or NOTE_OFF
+     * @param identifier the MIDI number of the note
+     * @param micros the duration of the note in microseconds, used only by NOTE_ON events
+     * @return true if the event was added, false if the queue is full
+     */
+    public boolean offer(final long frame, final Synth synth, final int kind, final int identifier, final long micros) {
+        final long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                return false;
+            }
+        }
+        final int index = (int) t & mask;
+        frames[index] = frame;
+        synths[index] = synth;
+        kinds[index] = kind;
+        identifiers[index] = identifier;
+        durations[index] = micros;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Checks if there is an event to read, only the consumer thread can call it.
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        final long h = head.get();
+        if (h == cachedTail) {
+            cachedTail = tail.get();
+        }
+        return h == cachedTail;
+    }
+
+    /**
+     * Checks if every event that was offered has already been read, any thread can call it.
+     * @return true if the consumer has read every event
+     */
+    public boolean isDrained() {
+        return head.get() == tail.get();
+    }
+
+    private int headIndex() {
+        return (int) head.get() & mask;
+    }
+
+    /**
+     * @return the frame of the first event of the queue
+     */
+    public long peekFrame() {
+        return frames[headIndex()];
+    }
+
+    /**
+     * @return the synthesizer of the first event of the queue
+     */
+    public Synth peekSynth() {
+        return synths[headIndex()];
+    }
+
+    /**
+     * @return the kind of the first event of the queue
+     */
+    public int peekKind() {
+        return kinds[headIndex()];
+    }
+
+    /**
+     * @return the note identifier of the first event of the queue
+     */
+    public int peekIdentifier() {
+        return identifiers[headIndex()];
+    }
+
+    /**
+     * @return the note duration in microseconds of the first event of the queue
+     */
+    public long peekDuration() {
+        return durations[headIndex()];
+    }
+
+    /**
+     * Remove the first event of the queue, only the consumer thread can call it.
+     */
+    public void remove() {
+        final long h = head.get();
+        synths[(int) h & mask] = null;
+        head.lazySet(h + 1);
+    }
+}
@@ -0,0 +1,31 @@
+package it.dukemania.audioengine;
+
+/**
+ * Discards every sample, so that the engine can be run without any output.
+ */
+public class NullAudioSink implements AudioSink {
+
+    private long samples;
+
+    @Override
+    public void write(final float[] block, final int offset, final int length) {
+        samples += length;
+    }
+
+    /**
+     * Returns how many samples have been discarded.
+     * @return the number of samples
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    @Override
+    public long getUnderruns() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,145 @@
+package it.dukemania.audioengine;
+
+import it.dukemania.midi.MidiParser;
+import it.dukemania.midi.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Renders a song to a WAV file, or to any other sink, as fast as the CPU allows, without any audio device.
+ */
+public class OfflineRenderer {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final Engine engine;
+    private final Sequencer sequencer;
+    private long frames;
+    private long nanos;
+
+    /**
+     * Create the renderer of a song parsed from a MIDI file.
+     * @param song the song
+     */
+    public OfflineRenderer(final Song song) {
+        this.engine = new Engine();
+        this.sequencer = engine.loadSong(song);
+    }
+
+    /**
+     * Create the renderer of an engine that already plays a sequence.
+     * @param engine the engine
+     * @param sequencer the sequencer of the engine
+     */
+    OfflineRenderer(final Engine engine, final Sequencer sequencer) {
+        this.engine = engine;
+        this.sequencer = sequencer;
+    }
+
+    /**
+     * Renders the whole song to a 16 bit mono WAV file.
+     * @param file the path of the file, it is overwritten if it already exists
+     * @return how many times the song was rendered faster than real time
+     * @throws IOException if the file can't be written
+     */
+    public double render(final Path file) throws IOException {
+        return render(new FileAudioSink(file));
+    }
+
+    /**
+     * Renders the whole song as a 16 bit mono WAV, starting from the current position of the channel.
+     * @param channel the channel, it is not closed at the end
+     * @return how many times the song was rendered faster than real time
+     * @throws IOException if the channel can't be written
+     */
+    public double render(final FileChannel channel) throws IOException {
+        return render(new FileAudioSink(channel));
+    }
+
+    /**
+     * Renders the whole song to a sink, every buffer is written as soon as it is calculated,
+     * then the sink is closed, also when a buffer can't be written.
+     * The song is over when every note has been played and no synthesizer is playing anymore.
+     * @param sink the sink
+     * @return how many times the song was rendered faster than real time
+     * @throws IOException if the sink can't be written
+     */
+    public double render(final AudioSink sink) throws IOException {
+        final long startNanos = System.nanoTime();
+        frames = 0;
+        try {
+            try {
+                while (sequencer.hasNext() || engine.checkKeys() > 0) {
+                    engine.renderBuffer();
+                    sink.write(engine.getBuffer(), 0, engine.getBuffer().length);
+                    frames += engine.getBuffer().length;
+                }
+            } catch (RuntimeException e) {
+                // the sink is closed anyway, the error of the write is the one that is reported
+                try {
+                    sink.close();
+                } catch (RuntimeException closing) {
+                    (e instanceof UncheckedIOException ? e.getCause() : e).addSuppressed(closing);
+                }
+                throw e;
+            }
+            sink.close();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        nanos = System.nanoTime() - startNanos;
+        return getRealTimeFactor();
+    }
+
+    /**
+     * Returns the number of samples written by the last render.
+     * @return the number of samples
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns how many seconds of audio the last render has written.
+     * @return the seconds of audio
+     */
+    public double getAudioSeconds() {
+        return frames / Settings.SAMPLE_RATE;
+    }
+
+    /**
+     * Returns how many seconds the last render has taken.
+     * @return the seconds of computation
+     */
+    public double getRenderSeconds() {
+        return nanos / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Returns how many times the last render was faster than real time.
+     * @return the throughput as a multiple of real time
+     */
+    public double getRealTimeFactor() {
+        return getAudioSeconds() / getRenderSeconds();
+    }
+
+    /**
+     * Renders a MIDI file to a WAV file and prints the throughput.
+     * @param args the path of the MIDI file and the path of the WAV file
+     * @throws Exception if the MIDI file can't be parsed or the WAV file can't be written
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: OfflineRenderer <song.mid> <output.wav>");
+            return;
+        }
+        final OfflineRenderer renderer = new OfflineRenderer(MidiParser.getInstance().parse(new File(args[0])));
+        renderer.render(Path.of(args[1]));
+        System.out.printf("Rendered %.2f s of audio in %.2f s, %.1fx real time%n",
+                renderer.getAudioSeconds(), renderer.getRenderSeconds(), renderer.getRealTimeFactor());
+    }
+}
@@ -0,0 +1,79 @@
+package it.dukemania.audioengine;
+
+import java.util.function.Function;
+
+public final class Oscillator implements SampleSource {
+
+    private final WaveTable[] tables;
+    private final double[] offsets;
+    private final float[][] waves;
+    private final Function<Long, Float> noteLFO;
+    private final Function<Long, Float> volumeLFO;
+    private final double[] steps;
+    private final int[] phases;
+    private long processed;
+
+    /**
+     * Create an oscillator that calculates the samples of a note only when they are requested,
+     * keeping a fixed point phase accumulator for every wave, that wraps around at the end of the period.
+     * Every wave uses the band-limited version for its frequency.
+     * @param freq the frequency of the note
+     * @param waves the wave forms of the oscillators
+     * @param noteLFO the note lfo
+     * @param volumeLFO the volume lfo
+     * @param offsets the offsets of the oscillators
+     */
+    public Oscillator(final float freq,
+                      final WaveTable[] waves,
+                      final Function<Long, Float> noteLFO,
+                      final Function<Long, Float> volumeLFO,
+                      final double[] offsets) {
+        this.tables = waves;
+        this.offsets = offsets;
+        this.waves = new float[waves.length][];
+        this.noteLFO = noteLFO;
+        this.volumeLFO = volumeLFO;
+        this.steps = new double[offsets.length];
+        this.phases = new int[steps.length];
+        tune(freq);
+    }
+
+    /**
+     * Change the frequency of the note and restart the oscillator, so that the same oscillator can play
+     * many notes one after the other without being created again.
+     * @param freq the frequency of the note
+     */
+    public void tune(final float freq) {
+        for (int x = 0; x < offsets.length; x++) {
+            steps[x] = WaveTable.PHASE_PERIOD * (offsets[x] * freq) / Settings.SAMPLE_RATE;
+            waves[x] = tables[x].getBandLimited(steps[x] / (1 << WaveTable.FRACTION_BITS));
+        }
+        restart();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restart() {
+        processed = 0;
+        for (int x = 0; x < phases.length; x++) {
+            phases[x] = 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double next() {
+        final float noteLfoVal = noteLFO.apply(processed);
+        double sum = 0;
+        for (int x = 0; x < steps.length; x++) {
+            // the overflow of the phase is the end of the period
+            phases[x] += (int) (long) (steps[x] * noteLfoVal);
+            sum += WaveTable.interpolate(waves[x], phases[x]);
+        }
+        return sum / steps.length * volumeLFO.apply(processed++) / waves.length;
+    }
+}
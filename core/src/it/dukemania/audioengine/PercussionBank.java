@@ -0,0 +1,389 @@
+package it.dukemania.audioengine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.Random;
+
+import it.dukemania.util.storage.FileHasher;
+import it.dukemania.util.storage.StorageFactoryImpl;
+
+/**
+ * The synthesized sounds of the General MIDI percussions, from note 35 to note 81.
+ * A percussion is synthesized the first time it is used and then saved in a folder, identified by the hash of its
+ * parameters, so the next time it is read from the folder and nothing is synthesized when the game starts.
+ */
+public final class PercussionBank {
+
+    /**
+     * The MIDI number of the first percussion of the bank.
+     */
+    public static final int FIRST = 35;
+    /**
+     * The number of percussions of the bank.
+     */
+    public static final int SIZE = 47;
+    /**
+     * The extension of the files of the saved percussions.
+     */
+    public static final String EXTENSION = ".drum";
+    private static final String CACHE_FOLDER = "cache/drums";
+    private static final int MAGIC = 0x444D4452;
+    // it must change whenever the synthesis produces different samples from the same parameters
+    private static final int VERSION = 1;
+    private static final long ATTACK = 1;
+    private static final double MAX_LENGTH = 2000;
+    // a percussion ends when its volume has decayed to about a thousandth
+    private static final double DECAYS = 7;
+    private static final float HIGHPASS = 0.2f;
+    private static final float TREMOLO_LOW = 0.3f;
+    // in the order of the General MIDI percussion map, five for every row
+    private static final Patch[] PATCHES = {
+        // 35: bass drums, side stick, snare, hand clap
+        kick(50, 180), kick(60, 140), wood(1700, 25), snare(190, 150, false), clap(),
+        // 40: electric snare, toms and hi-hats
+        snare(230, 110, true), tom(80), hat(40), tom(100), hat(70),
+        // 45: toms, open hi-hat, crash
+        tom(125), hat(350), tom(150), tom(175), cymbal(900, 0, 1),
+        // 50: high tom, cymbals, tambourine
+        tom(200), cymbal(1200, 480, 1), cymbal(700, 0, 3), metal(750, 1.5, 500, WaveTable.Triangle), tambourine(),
+        // 55: splash, cowbell, crash, vibraslap, ride
+        cymbal(350, 0, 1), metal(560, 1.48, 180, WaveTable.Square), cymbal(1100, 0, 2), vibraslap(), cymbal(1400, 520, 2),
+        // 60: bongos and congas
+        skin(400, 90), skin(300, 110), skin(330, 60), skin(330, 200), skin(250, 220),
+        // 65: timbales, agogos, cabasa
+        timbale(560), timbale(420), metal(900, 1.5, 250, WaveTable.Triangle), metal(650, 1.5, 280, WaveTable.Triangle),
+        shaker(80, 0),
+        // 70: maracas, whistles, guiros
+        shaker(50, 0), whistle(2400, 90), whistle(2200, 450), guiro(120), guiro(400),
+        // 75: claves, wood blocks, cuicas
+        wood(2500, 60), wood(1050, 70), wood(780, 80), cuica(500, 1.6, 80), cuica(350, 0.6, 250),
+        // 80: triangles
+        metal(2600, 2.76, 120, WaveTable.Sine), metal(2600, 2.76, 900, WaveTable.Sine),
+    };
+    private static PercussionBank instance;
+
+    private final Optional<Path> directory;
+    private final float[][] samples = new float[SIZE][];
+
+    // the parameters of the synthesis of a percussion: a tone that slides in pitch, some colored noise,
+    // and an exponential decay, optionally chopped by a tremolo
+    private static final class Patch {
+        private WaveTable wave = WaveTable.Sine;
+        private double frequency;
+        private double partial;
+        private double sweep = 1;
+        private double sweepTime;
+        private float tone;
+        private float noise;
+        private int hold = 1;
+        private boolean highpass;
+        private double decay;
+        private double tremolo;
+
+        private Patch tone(final WaveTable wave, final double frequency, final float level) {
+            this.wave = wave;
+            this.frequency = frequency;
+            this.tone = level;
+            return this;
+        }
+
+        // a second tone, at a multiple of the frequency of the first one
+        private Patch partial(final double ratio) {
+            this.partial = ratio;
+            return this;
+        }
+
+        // the pitch moves from the frequency to frequency * ratio in about time milliseconds
+        private Patch sweep(final double ratio, final double time) {
+            this.sweep = ratio;
+            this.sweepTime = time;
+            return this;
+        }
+
+        // every random value is held for hold samples, the higher the darker, highpass keeps only its hiss
+        private Patch noise(final float level, final int hold, final boolean highpass) {
+            this.noise = level;
+            this.hold = hold;
+            this.highpass = highpass;
+            return this;
+        }
+
+        private Patch decay(final double time) {
+            this.decay = time;
+            return this;
+        }
+
+        private Patch tremolo(final double frequency) {
+            this.tremolo = frequency;
+            return this;
+        }
+
+        private double getLength() {
+            return Math.min(MAX_LENGTH, decay * DECAYS);
+        }
+
+        // all the parameters, the sample rate and the version of the synthesis
+        private String getKey() {
+            return String.join(",", String.valueOf(VERSION), String.valueOf(Settings.SAMPLE_RATE), wave.name(),
+                    String.valueOf(frequency), String.valueOf(partial), String.valueOf(sweep),
+                    String.valueOf(sweepTime), String.valueOf(tone), String.valueOf(noise), String.valueOf(hold),
+                    String.valueOf(highpass), String.valueOf(decay), String.valueOf(tremolo));
+        }
+    }
+
+    /**
+     * Create a bank.
+     * @param directory the folder where the synthesized percussions are saved, if present
+     */
+    PercussionBank(final Optional<Path> directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the bank shared by all the drum synthesizers, which saves the percussions in the configuration folder.
+     * @return the bank
+     */
+    public static synchronized PercussionBank getInstance() {
+        if (instance == null) {
+            instance = new PercussionBank(Optional.of(new StorageFactoryImpl().getConfigurationStorage()
+                    .getAsFile(CACHE_FOLDER).toPath()));
+        }
+        return instance;
+    }
+
+    /**
+     * Checks if a percussion is in the bank.
+     * @param identifier the MIDI number of the percussion
+     * @return true if the bank has a sound for the percussion
+     */
+    public static boolean contains(final int identifier) {
+        return identifier >= FIRST && identifier < FIRST + SIZE;
+    }
+
+    /**
+     * Returns the samples of a percussion, reading them from the folder or synthesizing them the first time.
+     * @param identifier the MIDI number of the percussion
+     * @return the samples, which must not be modified
+     */
+    public synchronized float[] getSamples(final int identifier) {
+        final int index = indexOf(identifier);
+        if (samples[index] == null) {
+            final Patch patch = PATCHES[index];
+            final String key = patch.getKey();
+            samples[index] = load(key).orElseGet(() -> {
+                final float[] synthesized = synthesize(patch, key.hashCode());
+                save(key, synthesized);
+                return synthesized;
+            });
+        }
+        return samples[index];
+    }
+
+    /**
+     * Create a new hit of a percussion, it has its own envelope and position and plays the samples of the bank.
+     * @param identifier the MIDI number of the percussion
+     * @return the buffer manager of the hit, restarted every time the percussion is hit
+     */
+    public FloatBufferManager createHit(final int identifier) {
+        final float[] sound = getSamples(identifier);
+        final Enveloper enveloper = new Enveloper(ATTACK, 1f, (long) PATCHES[indexOf(identifier)].getLength());
+        return enveloper.createBufferManager(new SampleSource() {
+            private int position;
+
+            @Override
+            public void restart() {
+                position = 0;
+            }
+
+            @Override
+            public double next() {
+                return position < sound.length ? sound[position++] : 0;
+            }
+        });
+    }
+
+    private static int indexOf(final int identifier) {
+        if (!contains(identifier)) {
+            throw new IllegalArgumentException("No percussion with the number " + identifier);
+        }
+        return identifier - FIRST;
+    }
+
+    private static float[] synthesize(final Patch patch, final long seed) {
+        final double rate = Settings.SAMPLE_RATE;
+        final float[] sound = new float[(int) (patch.getLength() * rate / 1000)];
+        final Random rnd = new Random(seed);
+        final double highest = patch.frequency * Math.max(1, patch.sweep) * Math.max(1, patch.partial);
+        final float[] wave = patch.wave.getBandLimited(highest * Settings.WAVETABLE_SIZE / rate);
+        int phase = 0;
+        int partialPhase = 0;
+        float held = 0;
+        float lowpassed = 0;
+        for (int i = 0; i < sound.length; i++) {
+            final double millis = i * 1000 / rate;
+            final double slide = patch.sweepTime > 0 ? Math.exp(-millis / patch.sweepTime) : 0;
+            final double pitch = patch.frequency * (patch.sweep + (1 - patch.sweep) * slide);
+            phase += (int) (long) (WaveTable.PHASE_PERIOD * pitch / rate);
+            float tone = WaveTable.interpolate(wave, phase);
+            if (patch.partial > 0) {
+                partialPhase += (int) (long) (WaveTable.PHASE_PERIOD * pitch * patch.partial / rate);
+                tone = (tone + WaveTable.interpolate(wave, partialPhase)) / 2;
+            }
+            if (i % patch.hold == 0) {
+                held = rnd.nextFloat() * 2 - 1;
+            }
+            lowpassed += (held - lowpassed) * HIGHPASS;
+            final float noise = patch.highpass ? held - lowpassed : held;
+            final double tremolo = patch.tremolo > 0 && Math.sin(2 * Math.PI * patch.tremolo * millis / 1000) < 0
+                    ? TREMOLO_LOW : 1;
+            sound[i] = (float) ((tone * patch.tone + noise * patch.noise) * Math.exp(-millis / patch.decay) * tremolo
+                    * Settings.MAX_VOLUME);
+        }
+        return sound;
+    }
+
+    private Optional<float[]> load(final String key) {
+        if (directory.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            final ByteBuffer encoded = ByteBuffer.wrap(Files.readAllBytes(fileOf(key)));
+            // the lengths are checked against the bytes of the file before anything is allocated
+            if (encoded.remaining() < Integer.BYTES * 2 || encoded.getInt() != MAGIC) {
+                return Optional.empty();
+            }
+            final int keyLength = encoded.getInt();
+            if (keyLength < 0 || keyLength > encoded.remaining() - Integer.BYTES) {
+                return Optional.empty();
+            }
+            final byte[] savedKey = new byte[keyLength];
+            encoded.get(savedKey);
+            final int length = encoded.getInt();
+            // a different key is a collision of the hashes, a wrong length a file that has not been written completely
+            if (!key.equals(new String(savedKey, StandardCharsets.UTF_8))
+                    || encoded.remaining() != (long) length * Float.BYTES) {
+                return Optional.empty();
+            }
+            final float[] sound = new float[length];
+            encoded.asFloatBuffer().get(sound);
+            return Optional.of(sound);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            // the percussion is synthesized and saved again
+            e.printStackTrace();
+            return Optional.empty();
+        }
+    }
+
+    private void save(final String key, final float[] sound) {
+        if (directory.isEmpty()) {
+            return;
+        }
+        final byte[] savedKey = key.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer encoded = ByteBuffer.allocate(Integer.BYTES * 3 + savedKey.length + sound.length * Float.BYTES);
+        encoded.putInt(MAGIC).putInt(savedKey.length).put(savedKey).putInt(sound.length);
+        encoded.asFloatBuffer().put(sound);
+        try {
+            Files.createDirectories(directory.get());
+            // the file is renamed only when it is complete, so a percussion is never read while it is being written
+            final Path temporary = Files.createTempFile(directory.get(), "drum", null);
+            try {
+                Files.write(temporary, encoded.array());
+                Files.move(temporary, fileOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // the percussion is synthesized again the next time
+            e.printStackTrace();
+        }
+    }
+
+    private Path fileOf(final String key) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.get().resolve(FileHasher.toHex(hash) + EXTENSION);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Patch kick(final double frequency, final double decay) {
+        return new Patch().tone(WaveTable.Sine, frequency * 3, 1).sweep(1 / 3d, 40).noise(0.05f, 1, false).decay(decay);
+    }
+
+    private static Patch tom(final double frequency) {
+        return new Patch().tone(WaveTable.Sine, frequency * 1.6, 1).sweep(1 / 1.6, 60).noise(0.08f, 4, false).decay(250);
+    }
+
+    private static Patch snare(final double frequency, final double decay, final boolean bright) {
+        return new Patch().tone(WaveTable.Triangle, frequency, 0.4f).sweep(0.8, 20).noise(0.7f, bright ? 1 : 2, bright)
+                .decay(decay);
+    }
+
+    private static Patch clap() {
+        return new Patch().noise(0.8f, 3, false).tremolo(90).decay(100);
+    }
+
+    private static Patch hat(final double decay) {
+        return new Patch().noise(0.8f, 1, true).decay(decay);
+    }
+
+    // the bell is a metallic tone over the noise, 0 for none
+    private static Patch cymbal(final double decay, final double bell, final int hold) {
+        return new Patch().tone(WaveTable.Square, bell, bell > 0 ? 0.15f : 0).partial(1.47).noise(0.7f, hold, true)
+                .decay(decay);
+    }
+
+    private static Patch metal(final double frequency, final double ratio, final double decay, final WaveTable wave) {
+        return new Patch().tone(wave, frequency, 0.6f).partial(ratio).decay(decay);
+    }
+
+    private static Patch tambourine() {
+        return new Patch().tone(WaveTable.Square, 5000, 0.1f).noise(0.6f, 1, true).tremolo(18).decay(220);
+    }
+
+    private static Patch vibraslap() {
+        return new Patch().tone(WaveTable.Square, 1000, 0.3f).noise(0.3f, 1, true).tremolo(28).decay(700);
+    }
+
+    private static Patch skin(final double frequency, final double decay) {
+        return new Patch().tone(WaveTable.Sine, frequency * 1.15, 0.9f).sweep(1 / 1.15, 15).noise(0.1f, 2, false)
+                .decay(decay);
+    }
+
+    private static Patch timbale(final double frequency) {
+        return new Patch().tone(WaveTable.Triangle, frequency * 1.05, 0.7f).sweep(1 / 1.05, 20).noise(0.2f, 1, true)
+                .decay(180);
+    }
+
+    private static Patch shaker(final double decay, final double tremolo) {
+        return new Patch().noise(0.6f, 1, true).tremolo(tremolo).decay(decay);
+    }
+
+    private static Patch whistle(final double frequency, final double decay) {
+        return new Patch().tone(WaveTable.Sine, frequency, 0.7f).noise(0.03f, 1, true).decay(decay);
+    }
+
+    private static Patch guiro(final double decay) {
+        return new Patch().noise(0.6f, 3, false).tremolo(45).decay(decay);
+    }
+
+    private static Patch wood(final double frequency, final double decay) {
+        return new Patch().tone(WaveTable.Sine, frequency, 1).noise(0.15f, 1, true).decay(decay);
+    }
+
+    // the pitch of the cuica slides up or down for the whole note
+    private static Patch cuica(final double frequency, final double ratio, final double decay) {
+        return new Patch().tone(WaveTable.Sine, frequency, 0.8f).sweep(ratio, decay).decay(decay);
+    }
+}
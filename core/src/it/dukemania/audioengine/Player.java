@@ -1,21 +1,13 @@
 package it.dukemania.audioengine;
 
+import java.util.concurrent.CompletableFuture;
 
 public interface Player {
 
     /**
-     * A PlayableTrack represents a track as an Observable, with the method update, all the tracks update their status.
+     * Starts playing the song the first time it is called, every note is played by the audio thread
+     * at the exact sample at which it starts, following the samples that have been written to the device.
+     * @return the future that the audio thread completes when the song is over and the device has been closed
      */
-    interface PlayableTrack {
-        boolean hasNext();
-        void update(long millis);
-    }
-
-    /**
-     * Checks and plays all the notes whose startTime is inferiors than the total milliseconds
-     * that have passed from the total elapsed time,
-     * then plays a buffer in the AudioEngine.
-     * @return true if the song is over, false otherwise
-     */
-    boolean playNotes();
+    CompletableFuture<Long> playNotes();
 }
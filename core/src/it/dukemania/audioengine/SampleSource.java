@@ -0,0 +1,14 @@
+package it.dukemania.audioengine;
+
+public interface SampleSource {
+    /**
+     * Restart the source, the next sample returned will be its first one.
+     */
+    void restart();
+
+    /**
+     * Returns the next sample of the source.
+     * @return the sample
+     */
+    double next();
+}
@@ -0,0 +1,161 @@
+package it.dukemania.audioengine;
+
+import it.dukemania.midi.AbstractNote;
+import it.dukemania.midi.NoteColumns;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Plays the notes of a song on the synthesizers of an Engine, the notes are triggered by the sample clock of the engine
+ * and not by the time that has passed, so every note starts at its exact sample inside the buffer.
+ */
+public class Sequencer {
+
+    private static final long DEFAULT_DURATION = 1000L;
+
+    private final List<SequencedTrack> tracks = new ArrayList<>();
+    private SequencedTrack next;
+    private long lastFrame = -1;
+
+    // the notes of a track converted to samples, sorted by start
+    private static final class SequencedTrack {
+        private final Synth synth;
+        private final long[] frames;
+        private final int[] identifiers;
+        private final long[] durations;
+        private int curr;
+
+        SequencedTrack(final Synth synth, final NoteColumns notes) {
+            this.synth = synth;
+            this.frames = new long[notes.size()];
+            this.identifiers = new int[notes.size()];
+            this.durations = new long[notes.size()];
+            final int[] order = startOrder(notes);
+            for (int i = 0; i < order.length; i++) {
+                frames[i] = AudioScheduler.toFrame(notes.getStartTime(order[i]));
+                identifiers[i] = notes.getIdentifier(order[i]);
+                durations[i] = notes.getDuration(order[i]);
+            }
+        }
+
+        // the indexes of the notes sorted by start, the notes of a parsed song are usually sorted already
+        private static int[] startOrder(final NoteColumns notes) {
+            boolean sorted = true;
+            for (int i = 1; i < notes.size() && sorted; i++) {
+                sorted = notes.getStartTime(i - 1) <= notes.getStartTime(i);
+            }
+            final IntStream indexes = IntStream.range(0, notes.size());
+            return sorted ? indexes.toArray()
+                    : indexes.boxed().sorted(Comparator.comparingLong(notes::getStartTime)).mapToInt(i -> i).toArray();
+        }
+
+        boolean hasNext() {
+            return curr < frames.length;
+        }
+    }
+
+    /**
+     * Add a track to the sequence.
+     * @param synth the synthesizer that plays the track
+     * @param notes the notes of the track
+     */
+    public void addTrack(final Synth synth, final List<? extends AbstractNote> notes) {
+        final NoteColumns columns = new NoteColumns(notes.size());
+        notes.forEach(note -> columns.add(note.getStartTime(), note.getDuration().orElse(DEFAULT_DURATION),
+                note.getIdentifier()));
+        addTrack(synth, columns);
+    }
+
+    /**
+     * Add a track to the sequence.
+     * @param synth the synthesizer that plays the track
+     * @param notes the columns of the notes of the track
+     */
+    public void addTrack(final Synth synth, final NoteColumns notes) {
+        final SequencedTrack track = new SequencedTrack(synth, notes);
+        if (track.hasNext()) {
+            tracks.add(track);
+            lastFrame = Math.max(lastFrame, track.frames[track.frames.length - 1]);
+        }
+        next = firstTrack();
+    }
+
+    // the track whose next note starts first, so that the notes are played in time order
+    private SequencedTrack firstTrack() {
+        SequencedTrack first = null;
+        for (int t = 0; t < tracks.size(); t++) {
+            final SequencedTrack track = tracks.get(t);
+            if (track.hasNext() && (first == null || track.frames[track.curr] < first.frames[first.curr])) {
+                first = track;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Checks if there are notes that still have to be played.
+     * @return true if there is at least another note
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Returns the sample at which the next note starts, it must be called only if there is another note.
+     * @return the sample
+     */
+    public long peekFrame() {
+        return next.frames[next.curr];
+    }
+
+    /**
+     * Returns the synthesizer that plays the next note, it must be called only if there is another note.
+     * @return the synthesizer
+     */
+    public Synth peekSynth() {
+        return next.synth;
+    }
+
+    /**
+     * Returns the MIDI number of the next note, it must be called only if there is another note.
+     * @return the MIDI number
+     */
+    public int peekIdentifier() {
+        return next.identifiers[next.curr];
+    }
+
+    /**
+     * Returns the duration of the next note in microseconds, it must be called only if there is another note.
+     * @return the duration
+     */
+    public long peekDuration() {
+        return next.durations[next.curr];
+    }
+
+    /**
+     * Skip the next note without playing it, it must be called only if there is another note.
+     */
+    public void remove() {
+        next.curr++;
+        next = firstTrack();
+    }
+
+    /**
+     * Plays the next note on its synthesizer, it must be called only if there is another note.
+     */
+    public void playNext() {
+        next.synth.noteOn(peekIdentifier(), peekDuration());
+        remove();
+    }
+
+    /**
+     * Returns the sample at which the last note of the sequence starts.
+     * @return the sample, or -1 if the sequence is empty
+     */
+    public long getLastFrame() {
+        return lastFrame;
+    }
+}
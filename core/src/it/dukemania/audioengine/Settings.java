@@ -36,13 +36,47 @@ public final class Settings {
      */
     public static final float SAMPLESPERMILLI = Settings.SAMPLE_RATE / 1000f;
     /**
-     * The number of samples that compose a wavetable.
+     * The number of samples that compose a wavetable, a power of two.
      */
     public static final float WAVETABLE_SIZE = 8192;
     /**
      * The number of attenuations samples, to restart the note.
      */
     public static final int ATTENUATION = 300;
+    /**
+     * True if the keyboard notes are calculated while they are played,
+     * false if they are pre-rendered for their maximum duration when the synthesizer is built.
+     */
+    public static boolean REALTIME_VOICES = true;
+    /**
+     * The maximum number of notes that a keyboard synthesizer plays at the same time.
+     */
+    public static int POLYPHONY = 16;
+    /**
+     * Which note stops when a keyboard synthesizer has to play a new one and all its voices are playing.
+     */
+    public static VoiceStealing VOICE_STEALING = VoiceStealing.OLDEST;
+    /**
+     * The number of hits of every drum that a drum synthesizer can play at the same time before creating new ones.
+     */
+    public static int DRUM_HITS = 8;
+    /**
+     * The maximum number of bytes of the pre-rendered notes kept in memory, shared by all the synthesizers.
+     */
+    public static long NOTE_CACHE_BYTES = 64L << 20;
+    /**
+     * The maximum size of the temporary file where the pre-rendered notes removed from the memory are moved,
+     * 0 to discard them.
+     */
+    public static long NOTE_CACHE_SPILL_BYTES = 0;
+    /**
+     * How many buffers the synthesis can calculate ahead of the audio device.
+     */
+    public static int SINK_BLOCKS = 3;
+    /**
+     * True if the synthesizers of an engine are rendered in parallel, one block for each synthesizer.
+     */
+    public static boolean PARALLEL_RENDERING = Runtime.getRuntime().availableProcessors() > 1;
 
 
     private Settings() {
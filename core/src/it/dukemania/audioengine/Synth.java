@@ -11,4 +11,22 @@ public interface Synth {
      * @return the sample
      */
     float getSample();
+    /**
+     * Writes the next length combined samples of the Synthesizer in a block, overwriting its content.
+     * @param block the block to fill
+     * @param offset the index of the block where the first sample is written
+     * @param length how many samples have to be written
+     */
+    void fillBlock(float[] block, int offset, int length);
+    /**
+     * Start playing a note.
+     * @param identifier the MIDI number of the note
+     * @param micros how many microseconds the note has to be played
+     */
+    void noteOn(int identifier, long micros);
+    /**
+     * Make a note enter its release phase before its time is over.
+     * @param identifier the MIDI number of the note
+     */
+    void noteOff(int identifier);
 }
@@ -99,7 +99,8 @@ public class SynthBuilderImpl implements SynthBuilder {
                 this.noteLFO.orElse(x -> 1f),
                 this.volumeLFO.orElse(x -> 1f),
                 this.offsets,
-                freqs
+                freqs,
+                Settings.REALTIME_VOICES
         );
     }
 
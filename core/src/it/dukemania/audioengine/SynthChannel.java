@@ -0,0 +1,94 @@
+package it.dukemania.audioengine;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A synthesizer of the engine with its own block and the note events that it has to play inside the next buffer,
+ * so that it can be rendered independently from the other synthesizers, even on another thread.
+ */
+final class SynthChannel extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_EVENTS = 16;
+
+    private final transient Synth synth;
+    private final float[] block;
+    private int[] offsets = new int[INITIAL_EVENTS];
+    private int[] kinds = new int[INITIAL_EVENTS];
+    private int[] identifiers = new int[INITIAL_EVENTS];
+    private long[] durations = new long[INITIAL_EVENTS];
+    private int count;
+
+    /**
+     * Create the channel of a synthesizer.
+     * @param synth the synthesizer
+     * @param length the length of the buffers of the engine
+     */
+    SynthChannel(final Synth synth, final int length) {
+        this.synth = synth;
+        this.block = new float[length];
+    }
+
+    /**
+     * Returns the synthesizer of the channel.
+     * @return the synthesizer
+     */
+    Synth getSynth() {
+        return synth;
+    }
+
+    /**
+     * Returns the block calculated by the last render.
+     * @return the block
+     */
+    float[] getBlock() {
+        return block;
+    }
+
+    /**
+     * Add an event that will be played in the next render, the events must be added in non decreasing offset order.
+     * @param offset the position in the block of the sample at which the event takes place
+     * @param kind NoteEventQueue.NOTE_ON or NoteEventQueue.NOTE_OFF
+     * @param identifier the MIDI number of the note
+     * @param micros the duration of the note in microseconds, used only by NOTE_ON events
+     */
+    void addEvent(final int offset, final int kind, final int identifier, final long micros) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            kinds = Arrays.copyOf(kinds, count * 2);
+            identifiers = Arrays.copyOf(identifiers, count * 2);
+            durations = Arrays.copyOf(durations, count * 2);
+        }
+        offsets[count] = offset;
+        kinds[count] = kind;
+        identifiers[count] = identifier;
+        durations[count] = micros;
+        count++;
+    }
+
+    /**
+     * Fill the whole block, playing every event at its offset, then forget the events.
+     */
+    void render() {
+        int position = 0;
+        for (int e = 0; e < count; e++) {
+            if (offsets[e] > position) {
+                synth.fillBlock(block, position, offsets[e] - position);
+                position = offsets[e];
+            }
+            if (kinds[e] == NoteEventQueue.NOTE_ON) {
+                synth.noteOn(identifiers[e], durations[e]);
+            } else {
+                synth.noteOff(identifiers[e]);
+            }
+        }
+        synth.fillBlock(block, position, block.length - position);
+        count = 0;
+    }
+
+    @Override
+    protected void compute() {
+        render();
+    }
+}
@@ -1,13 +1,24 @@
 package it.dukemania.audioengine;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import it.dukemania.midi.Note;
+import it.dukemania.midi.PercussionNote;
 import it.dukemania.util.Pair;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -33,19 +44,31 @@ public class TestAudioEngine {
         // those samples are used to attenuate the note and bring it from the actual volume,
         //where it got the input to be replayed, to 0
         Assertions.assertEquals(0.0, IntStream.range(0, Settings.ATTENUATION).mapToDouble(x -> ds.getSample()).sum());
-        // after the attenuation samples, the value to put in the buffer has to be > 0
-        Assertions.assertTrue(ds.getSample() > 0.0);
+        // after the attenuation samples, the drums start playing
+        Assertions.assertTrue(ds.getSample() != 0.0);
 
         // wait 1000000 samples, after those all the drums should have stopped playing and checkKeys has to return 0
         LongStream.range(0, 1000000).forEach(x -> ds.getSample());
         Assertions.assertEquals(0, ds.checkKeys());
 
+        // a drum hit again plays over its previous hit, without cutting it
         ds.playPercussion(DrumSamples.Bass);
         IntStream.range(0, 1000).forEach(x -> ds.getSample());
         ds.playPercussion(DrumSamples.Bass);
-        Assertions.assertTrue(IntStream.range(0, Settings.ATTENUATION - 1).mapToDouble(x -> ds.getSample()).sum() != 0);
-        Assertions.assertTrue(checkTolerance(ds.getSample(), 0.0));
-        Assertions.assertTrue(ds.getSample() > 0.0);
+        Assertions.assertEquals(2, ds.checkKeys());
+        Assertions.assertTrue(IntStream.range(0, Settings.ATTENUATION).mapToDouble(x -> ds.getSample()).sum() != 0);
+
+        // the hits are not limited by the preallocated ones, and every synthesizer has its own
+        final DrumSynth other = new DrumSynth();
+        final int hits = Settings.DRUM_HITS * 3;
+        IntStream.range(0, hits).forEach(x -> {
+            other.playPercussion(DrumSamples.Hat);
+            IntStream.range(0, 10).forEach(y -> other.getSample());
+        });
+        Assertions.assertEquals(hits, other.checkKeys());
+        Assertions.assertEquals(2, ds.checkKeys());
+        LongStream.range(0, 1000000).forEach(x -> other.getSample());
+        Assertions.assertEquals(0, other.checkKeys());
     }
 
     @Test
@@ -101,6 +124,351 @@ public class TestAudioEngine {
         Assertions.assertEquals(0, ks.checkKeys());
     }
 
+    @Test
+    public void testBlockRendering() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 100L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw, WaveTable.Sine});
+        builder.setOffsets(new double[]{1, 0.5});
+        final List<Pair<Integer, Long>> notes = List.of(new Pair<>(60, 500L), new Pair<>(67, 500L));
+        final KeyboardSynth perSample = builder.build(notes);
+        final KeyboardSynth perBlock = builder.build(notes);
+        perSample.playTimedNote(60, 100_000L);
+        perBlock.playTimedNote(60, 100_000L);
+        perSample.playTimedNote(67, 300_000L);
+        perBlock.playTimedNote(67, 300_000L);
+
+        // the block must contain the same samples that getSample would have returned, one after the other
+        final float[] block = new float[Settings.BUFFER_LENGHT];
+        while (perSample.checkKeys() > 0) {
+            perBlock.fillBlock(block, 0, block.length);
+            for (final float sample : block) {
+                Assertions.assertEquals(perSample.getSample(), sample, 1e-6f);
+            }
+        }
+        Assertions.assertEquals(0, perBlock.checkKeys());
+
+        // the engine sums the blocks of every synthesizer in its buffer
+        final Engine engine = new Engine();
+        engine.addSynth(perBlock);
+        perBlock.playTimedNote(60, 100_000L);
+        Assertions.assertEquals(1, engine.renderBuffer());
+        Assertions.assertTrue(checkTolerance(IntStream.range(0, Settings.ATTENUATION)
+                .mapToDouble(x -> engine.getBuffer()[x]).sum(), 0.0));
+        Assertions.assertTrue(engine.getBuffer()[Settings.BUFFER_LENGHT - 1] != 0);
+    }
+
+    @Test
+    public void testRealtimeVoices() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 100L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw, WaveTable.Triangle});
+        builder.setOffsets(new double[]{1, 2});
+        builder.setNoteLFO(LFOFactory.sineLFO(1.1f, 0.9f, 200));
+        final List<Pair<Integer, Long>> notes = List.of(new Pair<>(69, 200L));
+        final boolean mode = Settings.REALTIME_VOICES;
+        try {
+            Settings.REALTIME_VOICES = false;
+            final KeyboardSynth preRendered = builder.build(notes);
+            Settings.REALTIME_VOICES = true;
+            final KeyboardSynth realtime = builder.build(notes);
+
+            // the oscillators must produce the same samples of the pre-rendered buffers
+            preRendered.playTimedNote(69, 200_000L);
+            realtime.playTimedNote(69, 200_000L);
+            while (preRendered.checkKeys() > 0) {
+                Assertions.assertEquals(preRendered.getSample(), realtime.getSample(), 1e-6f);
+            }
+            Assertions.assertEquals(0, realtime.checkKeys());
+
+            // a realtime synthesizer can play notes that were not known when it was built
+            realtime.playTimedNote(40, 100_000L);
+            Assertions.assertEquals(1, realtime.checkKeys());
+        } finally {
+            Settings.REALTIME_VOICES = mode;
+        }
+    }
+
+    @Test
+    public void testPinnedNotes() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 100L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw, WaveTable.Sine});
+        builder.setOffsets(new double[]{1, 0.5});
+        final List<Pair<Integer, Long>> notes = List.of(new Pair<>(69, 200L));
+        final boolean mode = Settings.REALTIME_VOICES;
+        try {
+            Settings.REALTIME_VOICES = false;
+            final KeyboardSynth preRendered = builder.build(notes);
+            Settings.REALTIME_VOICES = true;
+            final KeyboardSynth realtime = builder.build(notes);
+            // the notes are kept by the synthesizer, playing them never renders or looks up a note in the cache
+            NoteBufferCache.getInstance().clear();
+            preRendered.playTimedNote(69, 200_000L);
+            preRendered.playTimedNote(72, 100_000L);
+            realtime.playTimedNote(69, 200_000L);
+            realtime.playTimedNote(72, 100_000L);
+            while (preRendered.checkKeys() > 0) {
+                Assertions.assertEquals(realtime.getSample(), preRendered.getSample(), 1e-6f);
+            }
+            // a note longer than its pre-rendered samples is calculated while it is played
+            preRendered.playTimedNote(69, 2_000_000L);
+            realtime.playTimedNote(69, 2_000_000L);
+            while (preRendered.checkKeys() > 0) {
+                Assertions.assertEquals(realtime.getSample(), preRendered.getSample(), 1e-6f);
+            }
+            Assertions.assertEquals(0, realtime.checkKeys());
+            Assertions.assertEquals(0, NoteBufferCache.getInstance().getUsedBytes());
+        } finally {
+            Settings.REALTIME_VOICES = mode;
+        }
+    }
+
+    @Test
+    public void testNoteEventQueue() throws Exception {
+        final NoteEventQueue queue = new NoteEventQueue(10);
+        final DrumSynth synth = new DrumSynth();
+        final int total = 100_000;
+        // the producer always finds the queue full sooner or later, every event must arrive once and in order
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                while (!queue.offer(i, synth, NoteEventQueue.NOTE_ON, i % 128, i * 2L)) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < total; i++) {
+            while (queue.isEmpty()) {
+                Thread.onSpinWait();
+            }
+            Assertions.assertEquals(i, queue.peekFrame());
+            Assertions.assertEquals(i % 128, queue.peekIdentifier());
+            Assertions.assertEquals(i * 2L, queue.peekDuration());
+            Assertions.assertSame(synth, queue.peekSynth());
+            queue.remove();
+        }
+        producer.join();
+        Assertions.assertTrue(queue.isEmpty() && queue.isDrained());
+    }
+
+    @Test
+    public void testScheduledNotes() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 10L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Square});
+        builder.setOffsets(new double[]{1});
+        final Engine engine = new Engine();
+        final KeyboardSynth synth = engine.addSynth(builder.build(new ArrayList<>()));
+        final int start = 100;
+
+        // the note starts exactly at its sample, after the attenuation samples
+        engine.getEvents().offer(start, synth, NoteEventQueue.NOTE_ON, 69, 1_000_000L);
+        Assertions.assertEquals(0, engine.renderBuffer());
+        final float[] buffer = engine.getBuffer();
+        Assertions.assertTrue(IntStream.range(0, start + Settings.ATTENUATION).allMatch(i -> buffer[i] == 0));
+        Assertions.assertTrue(buffer[start + Settings.ATTENUATION] != 0);
+        Assertions.assertEquals(Settings.BUFFER_LENGHT, engine.getFrame());
+
+        // a note off makes the note fade out long before its duration is over
+        engine.getEvents().offer(engine.getFrame() + 1, synth, NoteEventQueue.NOTE_OFF, 69, 0);
+        engine.renderBuffer();
+        engine.renderBuffer();
+        Assertions.assertEquals(0, engine.checkKeys());
+    }
+
+    @Test
+    public void testSequencer() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 10L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Square});
+        builder.setOffsets(new double[]{1});
+        final Engine engine = new Engine();
+        final KeyboardSynth synth = engine.addSynth(builder.build(new ArrayList<>()));
+        // the notes are not sorted, the second one starts in the middle of the second buffer
+        final long second = AudioScheduler.toFrame(30_000L);
+        final Sequencer sequencer = new Sequencer();
+        sequencer.addTrack(synth, List.of(new Note(Optional.of(100_000L), 30_000L, 72), new Note(Optional.of(100_000L), 0L, 69)));
+        engine.setSequencer(sequencer);
+        Assertions.assertEquals(second, sequencer.getLastFrame());
+
+        final float[] buffer = engine.getBuffer();
+        // the same song is rendered in the same way every time, without looking at the clock
+        final List<float[]> rendered = new ArrayList<>();
+        while (engine.getFrame() <= second) {
+            Assertions.assertTrue(sequencer.hasNext());
+            engine.renderBuffer();
+            rendered.add(buffer.clone());
+        }
+        Assertions.assertFalse(sequencer.hasNext());
+        Assertions.assertEquals(2, synth.checkKeys());
+        final int offset = (int) (second % Settings.BUFFER_LENGHT);
+        Assertions.assertTrue(offset > 0);
+
+        final Engine other = new Engine();
+        final KeyboardSynth otherSynth = other.addSynth(builder.build(new ArrayList<>()));
+        final Sequencer otherSequencer = new Sequencer();
+        otherSequencer.addTrack(otherSynth, List.of(new Note(Optional.of(100_000L), 0L, 69)));
+        other.setSequencer(otherSequencer);
+        for (final float[] expected : rendered.subList(0, rendered.size() - 1)) {
+            other.renderBuffer();
+            Assertions.assertArrayEquals(expected, other.getBuffer());
+        }
+        // the last buffer only changes from the sample at which the second note starts
+        other.renderBuffer();
+        final float[] last = rendered.get(rendered.size() - 1);
+        Assertions.assertArrayEquals(Arrays.copyOf(last, offset + Settings.ATTENUATION),
+                Arrays.copyOf(other.getBuffer(), offset + Settings.ATTENUATION));
+        Assertions.assertNotEquals(last[offset + Settings.ATTENUATION], other.getBuffer()[offset + Settings.ATTENUATION]);
+    }
+
+    @Test
+    public void testOfflineRender() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 10L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Square});
+        builder.setOffsets(new double[]{1});
+        final Engine engine = new Engine();
+        final Sequencer sequencer = new Sequencer();
+        sequencer.addTrack(engine.addSynth(builder.build(new ArrayList<>())), List.of(new Note(Optional.of(50_000L), 0L, 69)));
+        sequencer.addTrack(engine.addDrum(), List.of(new PercussionNote(Optional.empty(), 20_000L, 36)));
+        engine.setSequencer(sequencer);
+        final OfflineRenderer renderer = new OfflineRenderer(engine, sequencer);
+        final Path file = Files.createTempFile("dukemania", ".wav");
+        try {
+            renderer.render(file);
+            final ByteBuffer wav = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            // the song is over only when every note has been played and released
+            Assertions.assertTrue(renderer.getFrames() > AudioScheduler.toFrame(50_000L));
+            Assertions.assertEquals(0, engine.checkKeys());
+            Assertions.assertEquals(0, renderer.getFrames() % Settings.BUFFER_LENGHT);
+            Assertions.assertEquals(44 + renderer.getFrames() * 2, wav.limit());
+            Assertions.assertEquals("RIFF", new String(wav.array(), 0, 4));
+            Assertions.assertEquals(wav.limit() - 8, wav.getInt(4));
+            Assertions.assertEquals((int) Settings.SAMPLE_RATE, wav.getInt(24));
+            Assertions.assertEquals(renderer.getFrames() * 2, wav.getInt(40));
+            Assertions.assertTrue(renderer.getRealTimeFactor() > 0);
+            Assertions.assertTrue(IntStream.range(0, (int) renderer.getFrames()).anyMatch(i -> wav.getShort(44 + i * 2) != 0));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testOfflineRenderFailure() throws Exception {
+        final Engine engine = new Engine();
+        final Sequencer sequencer = new Sequencer();
+        sequencer.addTrack(engine.addDrum(), List.of(new PercussionNote(Optional.empty(), 20_000L, 36)));
+        engine.setSequencer(sequencer);
+        final boolean[] closed = new boolean[1];
+        final AudioSink failing = new AudioSink() {
+            @Override
+            public void write(final float[] samples, final int offset, final int length) {
+                throw new UncheckedIOException(new IOException("disk full"));
+            }
+
+            @Override
+            public long getUnderruns() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+                throw new UncheckedIOException(new IOException("cannot patch the header"));
+            }
+        };
+        // the sink is closed also when a write fails, and the error of the write is the one that is thrown
+        final IOException error = Assertions.assertThrows(IOException.class,
+            () -> new OfflineRenderer(engine, sequencer).render(failing));
+        Assertions.assertTrue(closed[0]);
+        Assertions.assertEquals("disk full", error.getMessage());
+        Assertions.assertEquals("cannot patch the header", error.getSuppressed()[0].getCause().getMessage());
+    }
+
+    @Test
+    public void testBufferedAudioSink() throws Exception {
+        final List<Float> played = new ArrayList<>();
+        final AudioSink slow = new AudioSink() {
+            private boolean closed;
+            @Override
+            public void write(final float[] samples, final int offset, final int length) {
+                Assertions.assertFalse(closed);
+                for (int i = offset; i < offset + length; i++) {
+                    played.add(samples[i]);
+                }
+            }
+            @Override
+            public long getUnderruns() {
+                return 0;
+            }
+            @Override
+            public void close() {
+                closed = true;
+            }
+        };
+        final BufferedAudioSink sink = new BufferedAudioSink(slow, 2, 4);
+        // the samples are split in blocks and written in order, even when the ring is full
+        final float[] samples = new float[50];
+        IntStream.range(0, samples.length).forEach(i -> samples[i] = i);
+        sink.write(samples, 0, 30);
+        sink.write(samples, 30, 20);
+        // the writer thread finds the ring empty while waiting for the next block
+        Thread.sleep(100);
+        Assertions.assertEquals(0, sink.getPendingBlocks());
+        sink.write(samples, 0, 1);
+        sink.close();
+        Assertions.assertEquals(51, played.size());
+        Assertions.assertTrue(IntStream.range(0, samples.length).allMatch(i -> played.get(i) == i));
+        Assertions.assertTrue(sink.getUnderruns() >= 1);
+    }
+
+    @Test
+    public void testSchedulerWithoutDevice() throws Exception {
+        final Engine engine = new Engine();
+        final Sequencer sequencer = new Sequencer();
+        sequencer.addTrack(engine.addDrum(), List.of(new PercussionNote(Optional.empty(), 20_000L, 36)));
+        engine.setSequencer(sequencer);
+        final NullAudioSink sink = new NullAudioSink();
+        final AudioScheduler scheduler = new AudioScheduler(engine, () -> sink);
+        scheduler.start();
+        // the render thread stops by itself when the song is over
+        final long frames = scheduler.stopWhenSilentAfter(sequencer.getLastFrame()).get(10, TimeUnit.SECONDS);
+        Assertions.assertTrue(scheduler.isSilentAfter(sequencer.getLastFrame()));
+        Assertions.assertEquals(frames, sink.getSamples());
+        Assertions.assertTrue(sink.getSamples() > sequencer.getLastFrame());
+        Assertions.assertEquals(0, scheduler.getUnderruns());
+    }
+
+    @Test
+    public void testParallelRendering() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 10L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw, WaveTable.Square});
+        builder.setOffsets(new double[]{1, 2});
+        final Engine serial = new Engine(false);
+        final Engine parallel = new Engine(true);
+        final Sequencer serialSequencer = new Sequencer();
+        final Sequencer parallelSequencer = new Sequencer();
+        // 12 tracks playing notes that start in the middle of the buffers
+        for (int t = 0; t < 12; t++) {
+            final int track = t;
+            final List<Note> notes = IntStream.range(0, 20)
+                    .mapToObj(n -> new Note(Optional.of(30_000L), n * 7_000L + track * 500L, 48 + track + n % 5))
+                    .collect(Collectors.toList());
+            serialSequencer.addTrack(serial.addSynth(builder.build(new ArrayList<>())), notes);
+            parallelSequencer.addTrack(parallel.addSynth(builder.build(new ArrayList<>())), notes);
+        }
+        serial.setSequencer(serialSequencer);
+        parallel.setSequencer(parallelSequencer);
+        // the blocks are summed in the same order, so the output is identical to the last bit
+        while (serialSequencer.hasNext() || serial.checkKeys() > 0) {
+            Assertions.assertEquals(serial.renderBuffer(), parallel.renderBuffer());
+            Assertions.assertArrayEquals(serial.getBuffer(), parallel.getBuffer());
+        }
+        Assertions.assertEquals(0, parallel.checkKeys());
+    }
+
     @Test
     public void testStraightLFO() {
         final float targetMult = 1.5f;
@@ -150,4 +518,271 @@ public class TestAudioEngine {
         Assertions.assertEquals(int3, arrIntervals.get((int) (totalSamples / 2)));
         Assertions.assertEquals(int4, arrIntervals.get((int) (totalSamples - 1)));
     }
+
+    @Test
+    public void testNoteBufferCache() throws Exception {
+        final WaveTable[] waves = {WaveTable.Saw, WaveTable.Square};
+        final double[] offsets = {1, 2};
+        final Function<Long, Float> lfo = LFOFactory.sineLFO(1.1f, 0.9f, 200);
+        final Function<Long, Float> none = x -> 1f;
+        final int samples = (int) Settings.SAMPLE_RATE;
+        final long noteBytes = (long) samples * Float.BYTES;
+        final Path file = Files.createTempFile("notes", null);
+        final NoteBufferCache cache = new NoteBufferCache(noteBytes * 2, Optional.of(file), noteBytes * 4);
+        final float[] expected = new float[samples];
+        final Oscillator oscillator = new Oscillator(440, waves, lfo, none, offsets);
+        for (int i = 0; i < samples; i++) {
+            expected[i] = (float) oscillator.next();
+        }
+
+        // a note is rendered once and then shared, also by shorter notes
+        final SampleSource first = cache.getNote(440, 69, waves, lfo, none, offsets, samples);
+        final long used = cache.getUsedBytes();
+        final SampleSource second = cache.getNote(440, 69, waves.clone(), lfo, none, offsets.clone(), samples / 2);
+        Assertions.assertEquals(used, cache.getUsedBytes());
+        for (final float sample : expected) {
+            Assertions.assertEquals(sample, (float) first.next());
+        }
+        second.restart();
+        Assertions.assertEquals(expected[0], (float) second.next());
+
+        // the notes that exceed the budget are moved to the file, and read from it
+        cache.getNote(220, 57, waves, lfo, none, offsets, samples);
+        cache.getNote(110, 45, waves, lfo, none, offsets, samples);
+        Assertions.assertTrue(cache.getUsedBytes() <= noteBytes * 2);
+        final SampleSource spilled = cache.getNote(440, 69, waves, lfo, none, offsets, samples);
+        for (final float sample : expected) {
+            Assertions.assertEquals(sample, (float) spilled.next());
+        }
+
+        // a synthesizer with another LFO has its own notes
+        final SampleSource other = cache.getNote(440, 69, waves, LFOFactory.sineLFO(1.2f, 0.8f, 300), none, offsets,
+                samples);
+        Assertions.assertTrue(IntStream.range(0, samples).anyMatch(i -> (float) other.next() != expected[i]));
+        cache.clear();
+        Assertions.assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void testWaveTableMipmaps() {
+        final int size = (int) Settings.WAVETABLE_SIZE;
+        // the lowest level is the wavetable, the sine has no harmonics to remove
+        Assertions.assertSame(WaveTable.Saw.getWave(), WaveTable.Saw.getBandLimited(1));
+        Assertions.assertSame(WaveTable.Sine.getWave(), WaveTable.Sine.getBandLimited(size / 4));
+        Assertions.assertSame(WaveTable.Square.getBandLimited(600), WaveTable.Square.getBandLimited(1000));
+
+        // with a step of 1000 only the first 4 harmonics stay below the Nyquist frequency
+        final float[] square = WaveTable.Square.getBandLimited(1000);
+        final Function<Integer, Double> harmonic = h -> IntStream.range(0, size)
+                .mapToDouble(i -> square[i] * Math.sin(2 * Math.PI * h * i / size)).sum() * 2 / size;
+        Assertions.assertTrue(harmonic.apply(1) > 1);
+        Assertions.assertTrue(harmonic.apply(3) > 0.1);
+        Assertions.assertTrue(checkTolerance(harmonic.apply(5), 0));
+        Assertions.assertTrue(checkTolerance(harmonic.apply(7), 0));
+
+        // the samples between two positions of the wavetable are interpolated, the last one with the first
+        final float[] saw = WaveTable.Saw.getWave();
+        final int position = 1 << WaveTable.FRACTION_BITS;
+        Assertions.assertEquals(saw[3], WaveTable.interpolate(saw, 3 * position));
+        Assertions.assertTrue(checkTolerance(WaveTable.interpolate(saw, 3 * position + position / 2),
+                (saw[3] + saw[4]) / 2));
+        Assertions.assertTrue(checkTolerance(WaveTable.interpolate(saw, -position / 2), (saw[size - 1] + saw[0]) / 2));
+
+        // the phase wraps around at the end of the period, a 441Hz sine crosses zero 882 times in a second
+        final Oscillator oscillator = new Oscillator(441, new WaveTable[]{WaveTable.Sine}, x -> 1f, x -> 1f,
+                new double[]{1});
+        final double[] sine = IntStream.range(0, (int) Settings.SAMPLE_RATE).mapToDouble(x -> oscillator.next()).toArray();
+        final long crossings = IntStream.range(1, sine.length).filter(i -> sine[i - 1] < 0 != sine[i] < 0).count();
+        Assertions.assertTrue(Math.abs(crossings - 882) <= 2);
+    }
+
+    @Test
+    public void testVoiceStealing() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 100L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw});
+        builder.setOffsets(new double[]{1});
+        final int release = (int) (Settings.SAMPLE_RATE / 5);
+        final int polyphony = Settings.POLYPHONY;
+        final VoiceStealing stealing = Settings.VOICE_STEALING;
+        try {
+            Settings.POLYPHONY = 2;
+            Settings.VOICE_STEALING = VoiceStealing.OLDEST;
+            final KeyboardSynth oldest = builder.build(List.of());
+            oldest.noteOn(60, 10_000_000L);
+            oldest.noteOn(64, 10_000_000L);
+            oldest.noteOn(67, 10_000_000L);
+            Assertions.assertEquals(2, oldest.checkKeys());
+            // the first note has been stopped, releasing the second one leaves only the third
+            oldest.noteOff(60);
+            oldest.noteOff(64);
+            IntStream.range(0, release).forEach(x -> oldest.getSample());
+            Assertions.assertEquals(1, oldest.checkKeys());
+
+            Settings.VOICE_STEALING = VoiceStealing.QUIETEST;
+            final KeyboardSynth quietest = builder.build(List.of());
+            quietest.noteOn(60, 10_000_000L);
+            IntStream.range(0, release).forEach(x -> quietest.getSample());
+            // the second note is still silent, so it is stopped instead of the first one
+            quietest.noteOn(64, 10_000_000L);
+            quietest.noteOn(67, 10_000_000L);
+            quietest.noteOff(64);
+            IntStream.range(0, release).forEach(x -> quietest.getSample());
+            Assertions.assertEquals(2, quietest.checkKeys());
+
+            // a note played again starts in a new voice, while the previous one is released
+            Settings.POLYPHONY = 4;
+            final KeyboardSynth retrigger = builder.build(List.of());
+            retrigger.noteOn(60, 10_000_000L);
+            IntStream.range(0, release).forEach(x -> retrigger.getSample());
+            retrigger.noteOn(60, 10_000_000L);
+            Assertions.assertEquals(2, retrigger.checkKeys());
+            IntStream.range(0, release).forEach(x -> retrigger.getSample());
+            Assertions.assertEquals(1, retrigger.checkKeys());
+        } finally {
+            Settings.POLYPHONY = polyphony;
+            Settings.VOICE_STEALING = stealing;
+        }
+    }
+
+    @Test
+    public void testNoteTable() throws Exception {
+        final SynthBuilderImpl builder = new SynthBuilderImpl();
+        builder.setEnveloper(new Enveloper(10L, 1f, 100L));
+        builder.setWavetables(new WaveTable[]{WaveTable.Saw});
+        builder.setOffsets(new double[]{1});
+        final int release = (int) (Settings.SAMPLE_RATE / 5);
+        final int polyphony = Settings.POLYPHONY;
+        final VoiceStealing stealing = Settings.VOICE_STEALING;
+        try {
+            Settings.POLYPHONY = 4;
+            // a note off releases only the voice of its note
+            final KeyboardSynth synth = builder.build(List.of(new Pair<>(130, 1000L)));
+            synth.noteOn(60, 10_000_000L);
+            synth.noteOn(64, 10_000_000L);
+            synth.noteOn(67, 10_000_000L);
+            synth.noteOff(64);
+            synth.noteOff(64);
+            IntStream.range(0, release).forEach(x -> synth.getSample());
+            Assertions.assertEquals(2, synth.checkKeys());
+            synth.noteOff(60);
+            synth.noteOff(67);
+            IntStream.range(0, release).forEach(x -> synth.getSample());
+            Assertions.assertEquals(0, synth.checkKeys());
+
+            // the identifiers above the MIDI notes are played only if the synthesizer has been built with them
+            synth.noteOn(130, 10_000_000L);
+            synth.noteOn(131, 10_000_000L);
+            synth.noteOn(-1, 10_000_000L);
+            synth.noteOff(131);
+            synth.noteOff(-1);
+            Assertions.assertEquals(1, synth.checkKeys());
+            synth.noteOff(130);
+            IntStream.range(0, release).forEach(x -> synth.getSample());
+            Assertions.assertEquals(0, synth.checkKeys());
+
+            // the entry of a stolen voice is stale, its note off must not release the note the voice plays now
+            Settings.POLYPHONY = 1;
+            Settings.VOICE_STEALING = VoiceStealing.OLDEST;
+            final KeyboardSynth single = builder.build(List.of());
+            single.noteOn(60, 10_000_000L);
+            single.noteOn(64, 10_000_000L);
+            single.noteOff(60);
+            IntStream.range(0, release).forEach(x -> single.getSample());
+            Assertions.assertEquals(1, single.checkKeys());
+            single.noteOff(64);
+            IntStream.range(0, release).forEach(x -> single.getSample());
+            Assertions.assertEquals(0, single.checkKeys());
+        } finally {
+            Settings.POLYPHONY = polyphony;
+            Settings.VOICE_STEALING = stealing;
+        }
+    }
+
+    @Test
+    public void testEnvelopeBlocks() {
+        final Enveloper env = new Enveloper(20L, 0.9f, 50L);
+        final double[] samples = IntStream.range(0, (int) Settings.SAMPLE_RATE * 2).mapToDouble(x -> Math.sin(x / 10.0))
+                .toArray();
+        final FloatBufferManager perSample = env.createBufferManager(samples);
+        final FloatBufferManager perBlock = env.createBufferManager(samples);
+        final int[] lengths = {1, 7, Settings.ATTENUATION, 513, 64};
+        final float[] block = new float[lengths[3]];
+        int played = 0;
+        perSample.refresh(200);
+        perBlock.refresh(200);
+        // the blocks must contain the samples of every segment of the enveloper, also when it changes inside a block
+        for (int b = 0; perBlock.hasNext(); b++) {
+            if (b == 20) {
+                perSample.refresh(100);
+                perBlock.refresh(100);
+            } else if (b == 40) {
+                perSample.release();
+                perBlock.release();
+            }
+            final int length = lengths[b % lengths.length];
+            Arrays.fill(block, 0.5f);
+            final int rendered = perBlock.render(block, 0, length);
+            for (int i = 0; i < rendered; i++) {
+                Assertions.assertEquals(0.5f + perSample.nextSample(), block[i]);
+            }
+            if (rendered < length) {
+                Assertions.assertEquals(0.5f, block[rendered]);
+            }
+            played += rendered;
+        }
+        Assertions.assertFalse(perSample.hasNext());
+        Assertions.assertTrue(played > Settings.ATTENUATION);
+    }
+
+    @Test
+    public void testPercussionBank() throws Exception {
+        final Path directory = Files.createTempDirectory("drums");
+        final PercussionBank bank = new PercussionBank(Optional.of(directory));
+        // nothing is synthesized until a percussion is used
+        Assertions.assertEquals(0, Files.list(directory).count());
+        final List<float[]> sounds = IntStream.range(PercussionBank.FIRST, PercussionBank.FIRST + PercussionBank.SIZE)
+                .mapToObj(bank::getSamples).collect(Collectors.toList());
+        Assertions.assertEquals(PercussionBank.SIZE, Files.list(directory)
+                .filter(f -> f.toString().endsWith(PercussionBank.EXTENSION)).count());
+
+        // every percussion of the General MIDI map has its own sound
+        for (int i = 0; i < sounds.size(); i++) {
+            final float[] sound = sounds.get(i);
+            Assertions.assertTrue(IntStream.range(0, sound.length).anyMatch(x -> sound[x] != 0));
+            for (int j = 0; j < i; j++) {
+                Assertions.assertFalse(Arrays.equals(sound, sounds.get(j)));
+            }
+        }
+        Assertions.assertFalse(PercussionBank.contains(PercussionBank.FIRST - 1));
+        Assertions.assertFalse(PercussionBank.contains(PercussionBank.FIRST + PercussionBank.SIZE));
+        Assertions.assertFalse(PercussionBank.contains(DrumSamples.Empty.getIdentifier()));
+
+        // another bank reads the saved percussions, a damaged file is synthesized again
+        final List<Path> files = Files.list(directory).collect(Collectors.toList());
+        final Path damaged = files.get(0);
+        Files.write(damaged, Arrays.copyOf(Files.readAllBytes(damaged), 100));
+        // the lengths in the headers are not trusted, a huge one must not be allocated
+        final ByteBuffer hugeKey = ByteBuffer.wrap(Files.readAllBytes(files.get(1)));
+        hugeKey.putInt(Integer.BYTES, Integer.MAX_VALUE);
+        Files.write(files.get(1), hugeKey.array());
+        final ByteBuffer hugeSound = ByteBuffer.wrap(Files.readAllBytes(files.get(2)));
+        hugeSound.putInt(Integer.BYTES * 2 + hugeSound.getInt(Integer.BYTES), Integer.MAX_VALUE);
+        Files.write(files.get(2), hugeSound.array());
+        final PercussionBank saved = new PercussionBank(Optional.of(directory));
+        for (int i = 0; i < sounds.size(); i++) {
+            Assertions.assertArrayEquals(sounds.get(i), saved.getSamples(PercussionBank.FIRST + i));
+        }
+        Assertions.assertTrue(Files.size(damaged) > 100);
+        Assertions.assertNotEquals(Integer.MAX_VALUE, ByteBuffer.wrap(Files.readAllBytes(files.get(1))).getInt(Integer.BYTES));
+        final ByteBuffer rewritten = ByteBuffer.wrap(Files.readAllBytes(files.get(2)));
+        Assertions.assertNotEquals(Integer.MAX_VALUE, rewritten.getInt(Integer.BYTES * 2 + rewritten.getInt(Integer.BYTES)));
+
+        // the percussions played by a drum synthesizer come from its bank
+        final DrumSynth drums = new DrumSynth(saved);
+        drums.noteOn(PercussionBank.FIRST + 2, 0);
+        drums.noteOn(PercussionBank.FIRST - 1, 0);
+        Assertions.assertEquals(1, drums.checkKeys());
+    }
+
 }
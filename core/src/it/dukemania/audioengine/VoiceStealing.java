@@ -0,0 +1,12 @@
+package it.dukemania.audioengine;
+
+public enum VoiceStealing {
+    /**
+     * Stop the note that started first.
+     */
+    OLDEST,
+    /**
+     * Stop the note with the lowest volume, usually one that is ending its release.
+     */
+    QUIETEST
+}
@@ -24,7 +24,23 @@ public enum WaveTable {
      */
     Noise;
 
+    /**
+     * The number of bits of the phase of a wave that are below the position in the wavetable.
+     */
+    public static final int FRACTION_BITS = Integer.SIZE - Integer.numberOfTrailingZeros((int) Settings.WAVETABLE_SIZE);
+    /**
+     * The phase of a whole period of a wave, the phases are stored in an int and wrap around at the end of the period.
+     */
+    public static final double PHASE_PERIOD = Math.pow(2, Integer.SIZE);
+
+    private static final int SIZE = (int) Settings.WAVETABLE_SIZE;
+    private static final int FRACTION_MASK = (1 << FRACTION_BITS) - 1;
+    private static final float FRACTION_SCALE = 1f / (1 << FRACTION_BITS);
+
     private final float [] wave = new float [(int) Settings.WAVETABLE_SIZE];
+    // the band-limited waves, level n has the harmonics that stay below the Nyquist frequency for steps up to 2^n,
+    // the last one contains only the fundamental
+    private final float [][] levels = new float [Integer.numberOfTrailingZeros((int) Settings.WAVETABLE_SIZE)][];
 
 
     static {
@@ -56,4 +72,65 @@ public enum WaveTable {
     public float getAt(final int pos) {
         return wave[pos];
     }
+
+    /**
+     * get the band-limited version of the wave, without the harmonics that would alias when the wave is played
+     * with a certain step. The waves are computed once for every octave, the first time they are requested.
+     * @param step how many samples of the wavetable are skipped for every sample played
+     * @return the samples of the band-limited wave
+     */
+    public synchronized float[] getBandLimited(final double step) {
+        final int level = Math.max(0, Math.min(levels.length - 1, Math.getExponent(step - Math.ulp(step)) + 1));
+        if (levels[level] == null) {
+            // the sine and the noise have no harmonics to remove, the lowest level is the wavetable itself
+            levels[level] = this == Sine || this == Noise || level == 0 ? wave : addHarmonics(SIZE >> (level + 1));
+        }
+        return levels[level];
+    }
+
+    /**
+     * get the sample of a wave at a certain phase, interpolating linearly between the two nearest samples.
+     * @param samples the samples of the wave, as many as the wavetable size
+     * @param phase the phase of the wave in fixed point, the position in the wavetable is in the highest bits
+     * @return the sample
+     */
+    public static float interpolate(final float[] samples, final int phase) {
+        final int pos = phase >>> FRACTION_BITS;
+        final float current = samples[pos];
+        return current + (samples[(pos + 1) & (SIZE - 1)] - current) * ((phase & FRACTION_MASK) * FRACTION_SCALE);
+    }
+
+    // sum the sines of the Fourier series of the wave, up to a certain harmonic
+    private float[] addHarmonics(final int harmonics) {
+        final double[] sum = new double[SIZE];
+        for (int h = 1; h <= harmonics; h++) {
+            final double amplitude = amplitudeOf(h) * sigma(h, harmonics);
+            if (amplitude != 0) {
+                for (int i = 0; i < SIZE; i++) {
+                    sum[i] += amplitude * Sine.wave[(h * i) & (SIZE - 1)];
+                }
+            }
+        }
+        final float[] band = new float[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            band[i] = (float) (sum[i] * Settings.MAX_VOLUME);
+        }
+        return band;
+    }
+
+    private double amplitudeOf(final int harmonic) {
+        final boolean odd = harmonic % 2 == 1;
+        switch (this) {
+            case Square: return odd ? 4 / (Math.PI * harmonic) : 0;
+            case Saw: return -2 / (Math.PI * harmonic);
+            case Triangle: return odd ? 8 / (Math.PI * Math.PI * harmonic * harmonic) * (harmonic % 4 == 1 ? 1 : -1) : 0;
+            default: return harmonic == 1 ? 1 : 0;
+        }
+    }
+
+    // the Lanczos sigma factor, it reduces the ringing near the edges of the truncated series
+    private static double sigma(final int harmonic, final int harmonics) {
+        final double x = Math.PI * harmonic / (harmonics + 1);
+        return Math.sin(x) / x;
+    }
 }
@@ -3,20 +3,21 @@ package it.dukemania.controller.leaderboard;
 import it.dukemania.model.GameModel;
 import it.dukemania.model.serializers.ConfigurationsModel;
 import it.dukemania.model.serializers.ConfigurationsModelImpl;
-import it.dukemania.model.serializers.leaderboard.SongLeaderBoard;
+import it.dukemania.model.serializers.leaderboard.LeaderboardStore;
 import it.dukemania.util.storage.Storage;
 import it.dukemania.util.storage.StorageFactoryImpl;
 import it.dukemania.util.Pair;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class LeaderboardControllerImpl implements LeaderboardController {
 
+    private static final String SCORES_LOG_PATH = "configs/users_score.log";
+    private static final int SHOWN_SCORES = 100;
+    private static LeaderboardStore store;
+
     private final Storage storage = new StorageFactoryImpl().getConfigurationStorage();
     private final ConfigurationsModel model = new ConfigurationsModelImpl(storage);
     private final GameModel data;
@@ -28,28 +29,36 @@ public class LeaderboardControllerImpl implements LeaderboardController {
     @Override
     public final List<Pair<String, String>> getLeaderboard() {
         String songHash = data.getSongHash();
-        SongLeaderBoard scores = new SongLeaderBoard(songHash, new HashMap<>());
-        List<SongLeaderBoard> leaderBoards = new ArrayList<>();
-        try {
-            leaderBoards = model.readLeaderBoards();
-            scores = leaderBoards
-                            .stream()
-                            .filter(l -> l.getSongHash().equals(songHash))
-                            .findFirst()
-                            .orElse(new SongLeaderBoard(songHash, new HashMap<>()));
-            leaderBoards.remove(scores);
-        } catch (Exception ignored) {
-        }
-        scores.setUserScore(data.getPlayerName(), data.getScore());
-        leaderBoards.add(scores);
         try {
-            model.writeLeaderBoards(leaderBoards);
+            LeaderboardStore scores = getStore();
+            try {
+                scores.submit(songHash, data.getPlayerName(), data.getScore());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return scores.getTopScores(songHash, SHOWN_SCORES).stream()
+                                                        .map(p -> new Pair<>(p.getX(), p.getY().toString()))
+                                                        .collect(Collectors.toList());
         } catch (IOException e) {
             e.printStackTrace();
+            return List.of(new Pair<>(data.getPlayerName(), Integer.toString(data.getScore())));
         }
+    }
 
-        return scores.getUsersScore().entrySet().stream().map(l -> new Pair<>(l.getKey(), l.getValue().toString()))
-                                                        .sorted(Comparator.comparing(e -> -Integer.parseInt(e.getY())))
-                                                        .collect(Collectors.toList());
+    // the log is read only once, the scores saved by the older versions in the JSON file are imported in it
+    private LeaderboardStore getStore() throws IOException {
+        synchronized (LeaderboardControllerImpl.class) {
+            if (store == null) {
+                LeaderboardStore opened = LeaderboardStore.open(storage.getAsFile(SCORES_LOG_PATH).toPath());
+                if (opened.isEmpty()) {
+                    try {
+                        opened.importLeaderBoards(model.readLeaderBoards());
+                    } catch (Exception ignored) {
+                    }
+                }
+                store = opened;
+            }
+            return store;
+        }
     }
 }
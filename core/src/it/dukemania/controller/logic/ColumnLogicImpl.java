@@ -3,25 +3,23 @@ package it.dukemania.controller.logic;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import it.dukemania.audioengine.PlayerAudio;
-import it.dukemania.midi.AbstractNote;
+import it.dukemania.midi.NoteColumns;
 import it.dukemania.midi.ParsedTrack;
 import it.dukemania.midi.Song;
-import it.dukemania.util.Pair;
 
 public class ColumnLogicImpl implements ColumnLogic {
 
     private static final int COLUMN_MAX_CAP = 8;
     private static final int COLUMN_MIN_CAP = 4;
     private static final int MAX_HEIGHT = 4;
-    private static final int THREAD_SLEEP_TIME = 5;
     private int columnNumber;
     private List<NoteRange> noteRanges;
     private PlayerAudio player;
@@ -51,17 +49,12 @@ public class ColumnLogicImpl implements ColumnLogic {
     @Override
     public final void initAudio(final Song song) {
         player = new PlayerAudio(song);
-        Runnable midiPlayer = () -> {
-            while (!player.playNotes()) {
-                try {
-                    //Used for not overloading the audio engine
-                    Thread.sleep(THREAD_SLEEP_TIME);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        //the player plays the notes on its own audio thread, which stops by itself when the song is over
+        player.playNotes().whenComplete((frames, error) -> {
+            if (error != null) {
+                error.printStackTrace();
             }
-        };
-        new Thread(midiPlayer).start();
+        });
     }
 
     @Override
@@ -69,15 +62,54 @@ public class ColumnLogicImpl implements ColumnLogic {
 
     }
 
-    private List<AbstractNote> overlappingNotes(final List<AbstractNote> notes) {
-        return notes.stream().collect(Collectors.toMap(x -> x, x -> notes.stream()
-                        .filter(y -> x != y && (x.getStartTime() == y.getStartTime()
-                        || (x.getStartTime() < y.getStartTime() && (x.getStartTime() + x.getDuration().get()
-                                        > y.getStartTime())))).collect(Collectors.toList()))).entrySet().stream()
-                        .filter(x -> x.getValue().size() != 0)
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)).values().stream()
-                        .flatMap(List::stream)
-                        .collect(Collectors.toList()); //list of all the notes that need to be removed
+    // the indexes of a group of notes of a track
+    private static final class NoteGroup {
+        private int[] indexes = new int[1];
+        private int size;
+
+        void add(final int index) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+            }
+            indexes[size++] = index;
+        }
+
+        void addAll(final NoteGroup other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.indexes[i]);
+            }
+        }
+    }
+
+    private void removeOverlappingNotes(final NoteGroup group, final NoteColumns notes) {
+        // a note is removed if another note starts with it or if a note that starts before it is still playing
+        final int[] byStart = IntStream.range(0, group.size).boxed()
+                .sorted(Comparator.comparingLong(i -> notes.getStartTime(group.indexes[i])))
+                .mapToInt(i -> i).toArray();
+        final boolean[] removed = new boolean[group.size];
+        long maxEnd = Long.MIN_VALUE;
+        int first = 0;
+        while (first < byStart.length) {
+            final long start = notes.getStartTime(group.indexes[byStart[first]]);
+            int last = first;
+            while (last + 1 < byStart.length && notes.getStartTime(group.indexes[byStart[last + 1]]) == start) {
+                last++;
+            }
+            for (int i = first; i <= last; i++) {
+                removed[byStart[i]] = last > first || maxEnd > start;
+            }
+            for (int i = first; i <= last; i++) {
+                maxEnd = Math.max(maxEnd, start + notes.getDuration(group.indexes[byStart[i]]));
+            }
+            first = last + 1;
+        }
+        int kept = 0;
+        for (int i = 0; i < group.size; i++) {
+            if (!removed[i]) {
+                group.indexes[kept++] = group.indexes[i];
+            }
+        }
+        group.size = kept;
     }
 
     private List<Columns> getColumnList() {
@@ -86,71 +118,50 @@ public class ColumnLogicImpl implements ColumnLogic {
         return columnList;
     }
 
-    private List<List<AbstractNote>> generateNoteRanges(final List<List<AbstractNote>> list) {
-        // used to verify the pressed notes during gameplay
-        final List<Columns> columnList = getColumnList();
-        noteRanges = list.stream().map(t -> {
-                final Columns column = columnList.remove(0);
-                return t.stream().map(r -> {
-                        return new NoteRange(column, r.getStartTime(), r.getStartTime()
-                        + r.getDuration().get().intValue());
-                }).collect(Collectors.toList());
-        }).collect(Collectors.toList()).stream()
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
-        return list;
-    }
-
-    private Optional<Long> getMaxDuration(final ParsedTrack track) {
-        //return the max duration of a note in a track
-        return track.getNotes().stream()
-                .max(Comparator.comparing(e -> e.getDuration().get()))
-                .get()
-                .getDuration();
+    public static final int generateNoteHeight(final Optional<Long> noteDuration, final Optional<Long> maxDuration) {
+        return generateNoteHeight(noteDuration.orElse(0L), maxDuration.orElse(0L));
     }
 
-    public static final int generateNoteHeight(final Optional<Long> noteDuration, final Optional<Long> maxDuration) {
+    public static final int generateNoteHeight(final long noteDuration, final long maxDuration) {
       //return an int between 1 and 4 based on the duration of the note and the max duration of a note in the current track
-        return IntStream.iterate(1, i -> i + 1)
-        .limit(MAX_HEIGHT)
-        .filter(x -> noteDuration.orElse(0L) <= maxDuration.orElse(0L) / MAX_HEIGHT * x)
-        .findFirst()
-        .orElse(1);
+        for (int height = 1; height <= MAX_HEIGHT; height++) {
+            if (noteDuration <= maxDuration / MAX_HEIGHT * height) {
+                return height;
+            }
+        }
+        return 1;
     }
 
     @Override
     public final List<LogicNote> noteQueuing(final ParsedTrack track) {
-        List<Pair<Integer, List<AbstractNote>>> notesForNoteType = track.getNotes().stream()
-                .collect(Collectors.groupingBy(
-                        AbstractNote::getIdentifier, Collectors.toList()))
-                .entrySet()
-                .stream()
-                .map(x -> new Pair<Integer, List<AbstractNote>>(x.getKey(), x.getValue()))
-                .collect(Collectors.toList()); // notes grouped by identifier
-
-        while (notesForNoteType.size() > columnNumber) { //until the groups of notes are less than the number of columns
-            notesForNoteType.sort(Comparator.comparingInt(e -> e.getY().size())); //smaller groups first
-            notesForNoteType.set(0, new Pair<Integer, List<AbstractNote>>(notesForNoteType.get(0).getX(),
-                    Stream.concat(notesForNoteType.get(0).getY().stream(), notesForNoteType.remove(1).getY().stream())
-                    .collect(Collectors.toList()))); //add the first 2 groups in the first removing the second
+        final NoteColumns notes = track.getColumns();
+        final Map<Integer, NoteGroup> notesForNoteType = new HashMap<>();
+        long maxDuration = Long.MIN_VALUE;
+        for (int i = 0; i < notes.size(); i++) {
+            notesForNoteType.computeIfAbsent(notes.getIdentifier(i), k -> new NoteGroup()).add(i);
+            maxDuration = Math.max(maxDuration, notes.getDuration(i));
+        } // notes grouped by identifier
+
+        final List<NoteGroup> groups = new ArrayList<>(notesForNoteType.values());
+        while (groups.size() > columnNumber) { //until the groups of notes are less than the number of columns
+            groups.sort(Comparator.comparingInt(e -> e.size)); //smaller groups first
+            groups.get(0).addAll(groups.remove(1)); //add the first 2 groups in the first removing the second
         }
 
         final List<Columns> columnList = getColumnList();
-        return (generateNoteRanges(notesForNoteType.stream()
-                .map(x -> x.getY())
-                .peek(x -> x.removeAll(overlappingNotes(x))) // remove all overlapping notes
-                .collect(Collectors.toList()))) // create the ranges for the gameplay
-                .stream()
-                .map(x -> {
-                    final Columns currentColumn = columnList.remove(0);
-                    return x.stream()
-                            .map(y -> 
-                            new LogicNoteImpl(y, currentColumn,
-                                    generateNoteHeight(y.getDuration(), getMaxDuration(track))))
-                            .collect(Collectors.toList());
-                })
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+        final List<LogicNote> queued = new ArrayList<>();
+        noteRanges = new ArrayList<>(); // used to verify the pressed notes during gameplay
+        for (final NoteGroup group : groups) {
+            removeOverlappingNotes(group, notes);
+            final Columns currentColumn = columnList.remove(0);
+            for (int i = 0; i < group.size; i++) {
+                final long start = notes.getStartTime(group.indexes[i]);
+                final long duration = notes.getDuration(group.indexes[i]);
+                noteRanges.add(new NoteRange(currentColumn, start, start + (int) duration));
+                queued.add(new LogicNoteImpl(start, duration, currentColumn, generateNoteHeight(duration, maxDuration)));
+            }
+        }
+        return queued;
     }
 
     @Override
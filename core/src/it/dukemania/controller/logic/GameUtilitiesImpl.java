@@ -27,7 +27,7 @@ public class GameUtilitiesImpl implements GameUtilities {
                             final int numberOfDifficulties = DifficultyLevel.values().length - 1;
                             Optional<DifficultyLevel> difficulty = getDifficulties().stream()
                                     .filter(y -> 
-                                    x.getNotes().size() <= TrackFilterImpl.MAX_NOTE / numberOfDifficulties * y.getNumericValue())
+                                    x.getNumberOfNotes() <= TrackFilterImpl.MAX_NOTE / numberOfDifficulties * y.getNumericValue())
                                     .findFirst();
                             return difficulty.orElse(DifficultyLevel.UNKNOWN); //debug value
                         }));
@@ -4,11 +4,17 @@ import it.dukemania.midi.AbstractNote;
 
 public class LogicNoteImpl implements LogicNote {
     private final int height;
-    private final AbstractNote note;
+    private final long start;
+    private final long duration;
     private final Columns column;
 
     public LogicNoteImpl(final AbstractNote note, final Columns column, final int height) {
-       this.note = note;
+       this(note.getStartTime(), note.getDuration().orElse(0L), column, height);
+    }
+
+    public LogicNoteImpl(final long start, final long duration, final Columns column, final int height) {
+       this.start = start;
+       this.duration = duration;
        this.column = column;
        this.height = height;
     }
@@ -26,12 +32,12 @@ public class LogicNoteImpl implements LogicNote {
 
     @Override
     public final long getNoteStarts() {
-        return this.note.getStartTime();
+        return this.start;
     }
 
     @Override
     public final Long getNoteDuration() {
-        return this.note.getDuration().orElse(0L);
+        return this.duration;
     }
 
 
@@ -4,8 +4,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import it.dukemania.midi.AbstractNote;
 import it.dukemania.midi.FactoryConfigurator;
+import it.dukemania.midi.NoteColumns;
 import it.dukemania.midi.ParsedTrack;
 import it.dukemania.midi.Song;
 import it.dukemania.midi.KeyboardTrack;
@@ -21,21 +21,25 @@ public class TrackFilterImpl implements TrackFilter {
         return song.getTracks().stream()
                 .filter(x -> x.getChannel() != PERCUSSION_CHANNEL)//remove unplayable tracks
                 .map(x -> FactoryConfigurator.getFactory(x.getChannel()).createTrack(((KeyboardTrack) x).getInstrument(),
-                        x.getNotes().stream()
-                        .filter(y -> y.getDuration().orElse(0L) >= MIN_DURATION)
-                        //remove unplayable notes
-                        .collect(Collectors.toList()), x.getChannel()))
-                .map(x -> {
-                    final int numberOfNotes = x.getNotes().size();
-                    final List<AbstractNote> notePos = x.getNotes();
-                    return FactoryConfigurator.getFactory(x.getChannel()).createTrack(((KeyboardTrack) x).getInstrument(),
-                            x.getNotes().stream()
-                            .filter(y -> notePos.indexOf(y) % Math.ceil((double) numberOfNotes / MAX_NOTE) == 0) 
-                            //remove extra notes
-                            .collect(Collectors.toList()), x.getChannel());
-                    })
-                .sorted(Comparator.comparing(e -> e.getNotes().size()))
+                        reduceNotes(x.getColumns()), x.getChannel()))
+                .sorted(Comparator.comparingInt(ParsedTrack::getNumberOfNotes))
                 .collect(Collectors.toList());
     }
 
+    private NoteColumns reduceNotes(final NoteColumns notes) {
+        final NoteColumns playable = new NoteColumns(notes.size());
+        final NoteColumns.Cursor cursor = notes.cursor();
+        while (cursor.next()) {
+            if (cursor.getDuration() >= MIN_DURATION) { //remove unplayable notes
+                playable.add(cursor.getStartTime(), cursor.getDuration(), cursor.getIdentifier());
+            }
+        }
+        final int step = (playable.size() + MAX_NOTE - 1) / MAX_NOTE;
+        final NoteColumns reduced = new NoteColumns(Math.min(playable.size(), MAX_NOTE));
+        for (int i = 0; i < playable.size(); i += step) { //remove extra notes
+            reduced.add(playable.getStartTime(i), playable.getDuration(i), playable.getIdentifier(i));
+        }
+        return reduced;
+    }
+
 }
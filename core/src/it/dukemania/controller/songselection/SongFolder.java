@@ -0,0 +1,101 @@
+package it.dukemania.controller.songselection;
+
+import it.dukemania.midi.SongCache;
+import it.dukemania.util.storage.AssetSync;
+import it.dukemania.util.storage.FileHasher;
+import it.dukemania.util.storage.Storage;
+import it.dukemania.util.storage.StorageFactory;
+import it.dukemania.util.storage.StorageFactoryImpl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * The MIDI folder of the configuration, shared by the whole game.
+ * The bundled songs are copied in it when the game starts, its songs are indexed in background,
+ * and the hashes of its files and the songs parsed from them are cached.
+ */
+public final class SongFolder {
+
+    /**
+     * The path of the folder in the configuration storage.
+     */
+    public static final String MIDI_FOLDER = "midi_files";
+    private static final String SONG_CACHE_FOLDER = "cache/songs";
+    private static final int SONG_CACHE_SIZE = 8;
+    private static final String HASH_INDEX_PATH = "cache/file_hashes.tsv";
+    private static final String ASSETS_MANIFEST_PATH = "cache/assets_manifest.properties";
+    private static final String LIBRARY_INDEX_PATH = "cache/library.json";
+    private static final String[] MIDI_FILES = {"amogus_drip.mid", "dawn_of_sorrow_afterconfession.mid",
+                                        "dawn_of_sorrow_subhell.mid", "dawn_of_sorrow_vampirekiller.mid",
+                                        "Evangelion_-_Cruel_Angels_Thesis.mid", "simon_quest_bloody_tears.mid",
+                                        "test_file.mid"};
+    private static SongFolder instance;
+
+    private final StorageFactory storageFactory = new StorageFactoryImpl();
+    private final Storage configurationStorage = storageFactory.getConfigurationStorage();
+    private final FileHasher hasher;
+    private final SongLibrary library;
+    private final SongCache cache;
+
+    private SongFolder() {
+        //the folder must exist to be watched by the library and opened by the file dialog
+        configurationStorage.createDirectoryRecursively(MIDI_FOLDER);
+        hasher = new FileHasher(configurationStorage.getAsFile(HASH_INDEX_PATH).toPath());
+        library = new SongLibrary(List.of(configurationStorage.getAsFile(MIDI_FOLDER).toPath()),
+                                configurationStorage.getAsFile(LIBRARY_INDEX_PATH).toPath(), hasher);
+        cache = new SongCache(configurationStorage.getAsFile(SONG_CACHE_FOLDER).toPath(), SONG_CACHE_SIZE);
+    }
+
+    /**
+     * this method makes sure that exist only one instance of SongFolder and returns it.
+     * @return the folder
+     */
+    public static synchronized SongFolder getInstance() {
+        if (instance == null) {
+            instance = new SongFolder();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the hasher of the files, whose index is saved in the configuration.
+     * @return the hasher
+     */
+    public FileHasher getHasher() {
+        return hasher;
+    }
+
+    /**
+     * Returns the library of the songs of the folder, which is indexed only after it has been started.
+     * @return the library
+     */
+    public SongLibrary getLibrary() {
+        return library;
+    }
+
+    /**
+     * Returns the cache of the parsed songs, which keeps them in memory and in the configuration.
+     * @return the cache
+     */
+    public SongCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Copies the MIDI files of the assets to the folder on a background thread,
+     * skipping the ones whose copy is already up to date. It must be called once, when the game starts.
+     * @param progress called after each file with the number of files that have been checked and the total
+     * @return the future that completes with the number of files that have been copied
+     */
+    public CompletableFuture<Integer> syncBundledSongs(final BiConsumer<Integer, Integer> progress) {
+        AssetSync sync = new AssetSync(storageFactory.getAssetStorage(), configurationStorage.getAsFile("").toPath(),
+                                        configurationStorage.getAsFile(ASSETS_MANIFEST_PATH).toPath(), hasher);
+        return sync.start(Arrays.stream(MIDI_FILES)
+                                .map(midiFile -> MIDI_FOLDER + "/" + midiFile)
+                                .collect(Collectors.toList()), progress);
+    }
+}
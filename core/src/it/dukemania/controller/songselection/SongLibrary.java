@@ -0,0 +1,373 @@
+package it.dukemania.controller.songselection;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import it.dukemania.controller.logic.DifficultyLevel;
+import it.dukemania.controller.logic.GameUtilities;
+import it.dukemania.controller.logic.GameUtilitiesImpl;
+import it.dukemania.controller.logic.TrackFilter;
+import it.dukemania.controller.logic.TrackFilterImpl;
+import it.dukemania.midi.InstrumentType;
+import it.dukemania.midi.KeyboardTrack;
+import it.dukemania.midi.MidiParser;
+import it.dukemania.midi.Song;
+import it.dukemania.model.serializers.SharedMapper;
+import it.dukemania.model.serializers.song.SongInfo;
+import it.dukemania.model.serializers.song.TrackInfo;
+import it.dukemania.util.storage.FileHasher;
+
+import javax.sound.midi.InvalidMidiDataException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The songs contained in some folders, described by a SongInfo.
+ * The folders are scanned on a background thread, parsing the new or modified MIDI files in parallel,
+ * and the result is saved in a file, so that the next sessions only parse the files that have changed.
+ * After the first scan the folders are watched, and every change is applied as soon as it happens.
+ */
+public class SongLibrary {
+
+    private static final String MIDI_EXTENSION = ".mid";
+    private static final String MIDI_LONG_EXTENSION = ".midi";
+    private static final long WATCH_DELAY = 200; //milliseconds, to collect the events of a file that is being written
+
+    private final List<Path> folders;
+    private final Path indexFile;
+    private final FileHasher hasher;
+    private final ObjectMapper mapper = SharedMapper.getInstance();
+    private final Map<Path, LibraryEntry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "DukeMania library indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private WatchService watchService;
+    private boolean started;
+
+    // what has been extracted from a file, with the size and the modification time that the file had
+    private static final class LibraryEntry {
+        private final long size;
+        private final long lastModified;
+        private final SongInfo song; //null if the file is not a valid MIDI
+
+        LibraryEntry(final long size, final long lastModified, final SongInfo song) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.song = song;
+        }
+
+        boolean isUpToDate(final BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * Create a library, which is empty until it is started.
+     * @param folders the folders that contain the songs, their subfolders are included
+     * @param indexFile the file where the library is saved
+     * @param hasher used to calculate the hash of the songs
+     */
+    public SongLibrary(final List<Path> folders, final Path indexFile, final FileHasher hasher) {
+        this.folders = folders.stream().map(f -> f.toAbsolutePath().normalize()).collect(Collectors.toList());
+        this.indexFile = indexFile;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Loads the saved library and scans the folders in background, then keeps watching them.
+     * Calling it again has no effect.
+     * @return the future that completes when the first scan is over
+     */
+    public synchronized Future<?> start() {
+        if (started) {
+            return executor.submit(() -> { });
+        }
+        started = true;
+        executor.submit(this::load);
+        // the folders are watched before the scan, so that no change can be missed
+        executor.submit(this::watch);
+        return scan();
+    }
+
+    /**
+     * Scans the folders again in background, parsing only the files whose size or modification time has changed.
+     * @return the future that completes when the scan is over
+     */
+    public Future<?> scan() {
+        return executor.submit(() -> {
+            final Set<Path> found = new HashSet<>();
+            for (final Path folder : folders) {
+                try (Stream<Path> files = Files.walk(folder)) {
+                    files.filter(SongLibrary::isMidi).forEach(found::add);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            final Set<Path> changed = new HashSet<>(found);
+            entries.keySet().stream().filter(p -> !found.contains(p)).forEach(changed::add);
+            update(changed);
+        });
+    }
+
+    /**
+     * Returns all the valid songs of the library, the ones that are still being scanned are not included.
+     * @return a map associating the path of each file to a copy of its song
+     */
+    public Map<Path, SongInfo> getSongs() {
+        return entries.entrySet().stream()
+                .filter(e -> e.getValue().song != null)
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> copy(e.getValue().song)));
+    }
+
+    /**
+     * Returns the song of a file, if the library knows it and the file has not changed since.
+     * @param file the path of the file
+     * @param hash the hash of the file
+     * @return a copy of the song, which can be modified, or an empty optional if the file is not in the library
+     */
+    public Optional<SongInfo> getSong(final Path file, final String hash) {
+        final LibraryEntry entry = entries.get(file.toAbsolutePath().normalize());
+        return entry == null || entry.song == null || !entry.song.getSongHash().equals(hash) ? Optional.empty()
+                : Optional.of(copy(entry.song));
+    }
+
+    /**
+     * Stops watching the folders and scanning them.
+     */
+    public synchronized void close() {
+        executor.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Creates the description of a song, with the difficulty of each of its tracks.
+     * @param song the parsed song
+     * @param fileHash the hash of the file of the song
+     * @return the description of the song
+     */
+    public static SongInfo createSongInfo(final Song song, final String fileHash) {
+        final GameUtilities gameUtils = new GameUtilitiesImpl();
+        final TrackFilter trackFilter = new TrackFilterImpl();
+
+        //Maps the difficulty level to the associated track channel
+        Map<Integer, DifficultyLevel> difficulties = gameUtils.generateTracksDifficulty(trackFilter.reduceTrack(song))
+                                                .entrySet()
+                                                .stream()
+                                                .map(t -> Map.entry(t.getKey().getChannel(), t.getValue()))
+                                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        //Generate a list of TrackInfo from the list of MidiTrack parsed by the MIDI parser
+        List<TrackInfo> tracks = song.getTracks()
+                                    .stream()
+                                    .map(t -> {
+                                        InstrumentType instrument = InstrumentType.APPLAUSE;
+                                        String trackName = "Percussion";
+                                        DifficultyLevel difficulty = DifficultyLevel.UNKNOWN;
+
+                                        if (t.getClass().equals(KeyboardTrack.class)) {
+                                            KeyboardTrack tmp = (KeyboardTrack) t;
+                                            Enum<InstrumentType> tmpIns = tmp.getInstrument();
+                                            instrument = tmpIns == null ? InstrumentType.ACOUSTIC_GRAND_PIANO
+                                                                            : (InstrumentType) tmpIns;
+                                            trackName = instrument.toString();
+                                            difficulty = difficulties.get(tmp.getChannel());
+                                        }
+                                        return new TrackInfo(t.getChannel(),
+                                                            trackName,
+                                                            instrument,
+                                                            difficulty);
+                                    })
+                                    .filter(t -> t.getDifficultyLevel() != DifficultyLevel.UNKNOWN)
+                                    .collect(Collectors.toList());
+        return new SongInfo(song.getTitle(), fileHash, song.getDuration(), tracks, Math.round(song.getBPM()));
+    }
+
+    private static SongInfo copy(final SongInfo song) {
+        return new SongInfo(song.getTitle(), song.getSongHash(), song.getDuration(),
+                song.getTracks().stream()
+                        .map(t -> new TrackInfo(t.getChannel(), t.getTrackName(), (InstrumentType) t.getInstrument(),
+                                t.getDifficultyLevel()))
+                        .collect(Collectors.toList()),
+                song.getBPM());
+    }
+
+    private static boolean isMidi(final Path file) {
+        final String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return (name.endsWith(MIDI_EXTENSION) || name.endsWith(MIDI_LONG_EXTENSION)) && Files.isRegularFile(file);
+    }
+
+    // brings the entries of some files up to date, the files that don't exist anymore are removed
+    private void update(final Collection<Path> files) {
+        final List<Path> changed = new ArrayList<>();
+        final List<Path> missing = new ArrayList<>();
+        for (final Path file : files) {
+            try {
+                final LibraryEntry entry = entries.get(file);
+                if (entry == null || !entry.isUpToDate(Files.readAttributes(file, BasicFileAttributes.class))) {
+                    changed.add(file);
+                }
+            } catch (IOException e) {
+                missing.add(file);
+            }
+        }
+        boolean removed = false;
+        for (final Path file : missing) {
+            removed |= entries.remove(file) != null;
+        }
+        changed.parallelStream().filter(SongLibrary::isMidi).forEach(this::index);
+        if (removed || !changed.isEmpty()) {
+            save();
+        }
+    }
+
+    private void index(final Path file) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            SongInfo song;
+            try {
+                song = createSongInfo(MidiParser.getInstance().parse(file.toFile()), hasher.getHash(file));
+            } catch (InvalidMidiDataException | RuntimeException e) {
+                song = null;
+            }
+            entries.put(file, new LibraryEntry(attributes.size(), attributes.lastModifiedTime().toMillis(), song));
+        } catch (IOException e) {
+            entries.remove(file);
+        }
+    }
+
+    private void load() {
+        try {
+            for (final JsonNode node : mapper.readTree(indexFile.toFile())) {
+                final JsonNode song = node.get("song");
+                entries.put(Paths.get(node.get("path").asText()), new LibraryEntry(node.get("size").asLong(),
+                        node.get("lastModified").asLong(), song.isNull() ? null : mapper.treeToValue(song, SongInfo.class)));
+            }
+        } catch (IOException | RuntimeException e) {
+            // the library is rebuilt by the scan
+            entries.clear();
+        }
+    }
+
+    private void save() {
+        final ArrayNode root = mapper.createArrayNode();
+        entries.forEach((path, entry) -> {
+            final ObjectNode node = root.addObject();
+            node.put("path", path.toString());
+            node.put("size", entry.size);
+            node.put("lastModified", entry.lastModified);
+            node.set("song", mapper.valueToTree(entry.song));
+        });
+        try {
+            Files.createDirectories(indexFile.toAbsolutePath().getParent());
+            final Path temporary = Files.createTempFile(indexFile.toAbsolutePath().getParent(), "library", null);
+            mapper.writeValue(temporary.toFile(), root);
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // registers the folders in a WatchService and waits for their changes on its own thread
+    private void watch() {
+        final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+        try {
+            synchronized (this) {
+                if (executor.isShutdown()) {
+                    return;
+                }
+                watchService = FileSystems.getDefault().newWatchService();
+            }
+            for (final Path folder : folders) {
+                register(folder, keys);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        final Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    final Set<Path> changed = new HashSet<>();
+                    boolean overflow = false;
+                    WatchKey key = watchService.take();
+                    Thread.sleep(WATCH_DELAY);
+                    while (key != null) {
+                        final Path folder = keys.get(key);
+                        for (final WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW || folder == null) {
+                                overflow = true;
+                            } else {
+                                final Path file = folder.resolve((Path) event.context());
+                                if (Files.isDirectory(file)) {
+                                    register(file, keys);
+                                    overflow = true;
+                                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                                        && !entries.containsKey(file)) {
+                                    overflow = true; //a folder has been removed with all its files
+                                }
+                                changed.add(file);
+                            }
+                        }
+                        if (!key.reset()) {
+                            keys.remove(key);
+                        }
+                        key = watchService.poll();
+                    }
+                    if (overflow) {
+                        scan();
+                    } else {
+                        executor.submit(() -> update(changed));
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // the library has been closed
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, "DukeMania library watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void register(final Path folder, final Map<WatchKey, Path> keys) throws IOException {
+        try (Stream<Path> subfolders = Files.walk(folder)) {
+            for (final Path subfolder : subfolders.filter(Files::isDirectory).collect(Collectors.toList())) {
+                keys.put(subfolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), subfolder);
+            }
+        }
+    }
+}
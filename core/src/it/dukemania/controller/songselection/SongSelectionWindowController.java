@@ -6,6 +6,7 @@ import it.dukemania.midi.InstrumentType;
 import javax.sound.midi.InvalidMidiDataException;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 public interface SongSelectionWindowController {
     /**
@@ -63,4 +64,11 @@ public interface SongSelectionWindowController {
      * @return The midi directory path
      */
     String getMidiDirectory();
+
+    /**
+     * Returns the songs of the midi directory that have already been indexed, without reading their files.
+     * @return A map associating the path of each song, which can be given to setSongPath, to its information,
+     * sorted by file name
+     */
+    Map<String, SongInfo> getLibrarySongs();
 }
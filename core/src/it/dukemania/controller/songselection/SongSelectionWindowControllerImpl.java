@@ -1,20 +1,17 @@
 package it.dukemania.controller.songselection;
 
 import it.dukemania.controller.logic.Columns;
-import it.dukemania.controller.logic.DifficultyLevel;
-import it.dukemania.controller.logic.GameUtilities;
-import it.dukemania.controller.logic.GameUtilitiesImpl;
 import it.dukemania.controller.logic.TrackFilter;
 import it.dukemania.controller.logic.TrackFilterImpl;
 import it.dukemania.model.GameModel;
+import it.dukemania.model.serializers.SharedMapper;
+import it.dukemania.model.serializers.song.SongConfigStore;
 import it.dukemania.model.serializers.song.SongInfo;
 import it.dukemania.model.serializers.ConfigurationsModelImpl;
 import it.dukemania.model.serializers.song.TrackInfo;
 import it.dukemania.midi.InstrumentType;
 import it.dukemania.midi.KeyboardTrack;
-import it.dukemania.midi.MidiParser;
 import it.dukemania.midi.ParsedTrack;
-import it.dukemania.midi.Parser;
 import it.dukemania.midi.Song;
 import it.dukemania.util.storage.Storage;
 import it.dukemania.util.storage.StorageFactory;
@@ -25,11 +22,12 @@ import it.dukemania.windowmanager.SwitchWindowNotifier;
 import javax.sound.midi.InvalidMidiDataException;
 import java.io.File;
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -39,17 +37,12 @@ public class SongSelectionWindowControllerImpl implements SongSelectionWindowCon
     private final StorageFactory storageFactory = new StorageFactoryImpl();
     private final Storage externalStorage = storageFactory.getExternalStorage();
     private final Storage configurationStorage = storageFactory.getConfigurationStorage();
-    private final Storage assetStorage = storageFactory.getAssetStorage();
-    private static final String MIDI_FOLDER_ASSETS = "midi_files";
-    private static final String[] MIDI_FILES = {"amogus_drip.mid", "dawn_of_sorrow_afterconfession.mid",
-                                        "dawn_of_sorrow_subhell.mid", "dawn_of_sorrow_vampirekiller.mid",
-                                        "Evangelion_-_Cruel_Angels_Thesis.mid", "simon_quest_bloody_tears.mid",
-                                        "test_file.mid"};
+    private static final String SONGS_CONFIGURATION_PATH = "configs/song_config.jsonl";
+    private static SongConfigStore songsConfigurations;
+    private final SongFolder songFolder = SongFolder.getInstance();
 
     private SongInfo currentSong;
-    private final List<SongInfo> songsConfigurations;
 
-    private final GameUtilities gameUtils = new GameUtilitiesImpl();
     private final TrackFilter trackFilter = new TrackFilterImpl();
 
     private static final int PERCUSSION_CHANNEL = 10;
@@ -63,97 +56,36 @@ public class SongSelectionWindowControllerImpl implements SongSelectionWindowCon
 
     public SongSelectionWindowControllerImpl(final SwitchWindowNotifier notifier,
                                              final GameModel data) throws NoSuchAlgorithmException {
-        songsConfigurations = getSongsConfiguration();
+        openSongsConfiguration();
         this.data = data;
         this.switchWindowNotifier = notifier;
-        moveMidisToConfigurationFolder();
-    }
-
-    private void moveMidisToConfigurationFolder() {
-        String configurationDirectory = configurationStorage.getBaseDirectoryName();
-        configurationStorage.createDirectoryRecursively(MIDI_FOLDER_ASSETS);
-        for (String midiFile : MIDI_FILES) {
-            String path = MIDI_FOLDER_ASSETS + "/" + midiFile;
-            try {
-                assetStorage.copyTo(path, configurationDirectory + "/" + MIDI_FOLDER_ASSETS + "/" + midiFile);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        songFolder.getLibrary().start();
     }
 
     @Override
     public final void setSongPath(final String path) throws InvalidMidiDataException, IOException {
         selectedTrackChannel = 1;
-        byte[] fileBytes = externalStorage.readFileAsByte(path);
-        String hashedFile = getHashString(fileBytes);
+        String hashedFile = songFolder.getHasher().getHash(externalStorage.getAsFile(path).toPath());
 
         //Find the song configuration that matches the digest
-        Optional<SongInfo> song = songsConfigurations.stream().filter(s -> s.getSongHash().equals(hashedFile)).findFirst();
+        Optional<SongInfo> song = readSongConfiguration(hashedFile);
         this.path = path;
         if (song.isPresent()) {
             if (song.get().getTracks().size() == 0) {
                 throw new InvalidMidiDataException();
             }
             currentSong = song.get();
-            songsConfigurations.remove(currentSong);
         } else {
-            createConfig(path);
+            createConfig(path, hashedFile);
         }
     }
 
-    private void createConfig(final String path) throws InvalidMidiDataException, IOException {
-        Parser parser = MidiParser.getInstance();
+    private void createConfig(final String path, final String fileHash) throws InvalidMidiDataException, IOException {
         File songFile = externalStorage.getAsFile(path);
-        Song s = parser.parse(songFile);
-        String fileHash = getHashString(externalStorage.readFileAsByte(path));
-
-        //Maps the difficulty level to the associated track channel
-        Map<Integer, DifficultyLevel> difficulties = gameUtils.generateTracksDifficulty(trackFilter.reduceTrack(s))
-                                                .entrySet()
-                                                .stream()
-                                                .map(t -> Map.entry(t.getKey().getChannel(), t.getValue()))
-                                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        //Generate a list of TrackInfo from the list of MidiTrack parsed by the MIDI parser
-        List<TrackInfo> tracks = s.getTracks()
-                                    .stream()
-                                    .map(t -> {
-                                        InstrumentType instrument = InstrumentType.APPLAUSE;
-                                        String trackName = "Percussion";
-                                        DifficultyLevel difficulty = DifficultyLevel.UNKNOWN;
-
-                                        if (t.getClass().equals(KeyboardTrack.class)) {
-                                            KeyboardTrack tmp = (KeyboardTrack) t;
-                                            Enum<InstrumentType> tmpIns = tmp.getInstrument();
-                                            instrument = tmpIns == null ? InstrumentType.ACOUSTIC_GRAND_PIANO
-                                                                            : (InstrumentType) tmpIns;
-                                            trackName = instrument.toString();
-                                            difficulty = difficulties.get(tmp.getChannel());
-                                        }
-                                        return new TrackInfo(t.getChannel(),
-                                                            trackName,
-                                                            instrument,
-                                                            difficulty);
-                                    })
-                                    .filter(t -> t.getDifficultyLevel() != DifficultyLevel.UNKNOWN)
-                                    .collect(Collectors.toList());
-        this.currentSong = new SongInfo(s.getTitle(), fileHash, s.getDuration(), tracks, Math.round(s.getBPM()));
-    }
-
-    private String getHashString(final byte[] bytes)  {
-        StringBuilder stringHash = new StringBuilder();
-        byte[] d = new byte[0];
-        try {
-            d = MessageDigest.getInstance("SHA-256").digest(bytes);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
-        //Convert each byte to its relative hex value (in String format)
-        for (byte b : d) {
-            stringHash.append(String.format("%02x", b));
-        }
-        return stringHash.toString();
+        Optional<SongInfo> indexed = songFolder.getLibrary().getSong(songFile.toPath(), fileHash);
+        this.currentSong = indexed.isPresent() ? indexed.get()
+                                               : SongLibrary.createSongInfo(songFolder.getCache().getOrParse(fileHash, songFile),
+                                                                            fileHash);
     }
 
     @Override
@@ -163,20 +95,17 @@ public class SongSelectionWindowControllerImpl implements SongSelectionWindowCon
 
     @Override
     public final void updateTracks(final List<String> names, final List<InstrumentType> instruments) {
-        songsConfigurations.removeIf(x -> x.getSongHash().equals(currentSong.getSongHash()));
         TrackInfo[] tracks = currentSong.getTracks().toArray(TrackInfo[]::new);
         for (int i = 0; i < names.size(); i++) {
             tracks[i].setTrackName(names.get(i));
             tracks[i].setInstrument(instruments.get(i));
         }
-        songsConfigurations.add(currentSong);
-        writeSongsConfiguration(songsConfigurations);
+        writeSongConfiguration(currentSong);
     }
 
     @Override
     public final void playSong() throws InvalidMidiDataException, IOException {
-        Parser parser = MidiParser.getInstance();
-        Song song = parser.parse(new File(path));
+        Song song = songFolder.getCache().getOrParse(currentSong.getSongHash(), new File(path));
         ParsedTrack selectedTrack = trackFilter.reduceTrack(song)
                                             .stream()
                                             .filter(t -> t.getChannel() == selectedTrackChannel)
@@ -226,24 +155,58 @@ public class SongSelectionWindowControllerImpl implements SongSelectionWindowCon
 
     @Override
     public final String getMidiDirectory() {
-        return configurationStorage.getBaseDirectoryName() + File.separator + MIDI_FOLDER_ASSETS + File.separator;
+        return configurationStorage.getBaseDirectoryName() + File.separator + SongFolder.MIDI_FOLDER + File.separator;
     }
 
-    private List<SongInfo> getSongsConfiguration() {
-        List<SongInfo> songs;
-        try {
-            songs = configurationModel.readSongsConfiguration();
-        } catch (IOException e) {
-            return new ArrayList<>();
+    @Override
+    public final Map<String, SongInfo> getLibrarySongs() {
+        return songFolder.getLibrary().getSongs().entrySet()
+                                .stream()
+                                .sorted(Comparator.comparing(e -> e.getKey().getFileName().toString()
+                                                                .toLowerCase(Locale.ROOT)))
+                                .collect(Collectors.toMap(e -> e.getKey().toString(), Map.Entry::getValue,
+                                                        (first, second) -> first, LinkedHashMap::new));
+    }
+
+    //the file is opened once, the configurations saved by the older versions in the JSON file are imported in it
+    private void openSongsConfiguration() {
+        synchronized (SongSelectionWindowControllerImpl.class) {
+            if (songsConfigurations != null) {
+                return;
+            }
+            try {
+                songsConfigurations = SongConfigStore.open(configurationStorage.getAsFile(SONGS_CONFIGURATION_PATH)
+                                                        .toPath(), SharedMapper.getInstance());
+                if (songsConfigurations.isEmpty()) {
+                    try {
+                        songsConfigurations.putAll(configurationModel.readSongsConfiguration());
+                    } catch (IOException ignored) {
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
-        return songs;
     }
 
-    private void writeSongsConfiguration(final List<SongInfo> songs) {
-        try {
-            configurationModel.writeSongsConfiguration(songs);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private Optional<SongInfo> readSongConfiguration(final String songHash) {
+        if (songsConfigurations != null) {
+            try {
+                return songsConfigurations.get(songHash);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void writeSongConfiguration(final SongInfo song) {
+        if (songsConfigurations != null) {
+            try {
+                songsConfigurations.put(song);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -0,0 +1,124 @@
+package it.dukemania.controller.songselection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.jupiter.api.Test;
+
+import it.dukemania.model.serializers.song.SongInfo;
+import it.dukemania.util.storage.FileHasher;
+
+class TestSongLibrary {
+
+    /**
+     * this method create a MIDI file with a track of notes.
+     * @param file the file to write
+     * @param notes the number of notes of the track
+     * @return the file
+     * @throws InvalidMidiDataException
+     * @throws IOException
+     */
+    Path createFile(final Path file, final int notes) throws InvalidMidiDataException, IOException {
+        Sequence seq = new Sequence(Sequence.PPQ, 100, 1);
+        Track t = seq.getTracks()[0];
+        for (int i = 0; i < notes; i++) {
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60 + i % 12, 7), i * 50L));
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60 + i % 12, 0), i * 50L + 40));
+        }
+        MidiSystem.write(seq, 0, file.toFile());
+        return file;
+    }
+
+    /**
+     * this test makes sure that the library finds the songs of its folders and follows their changes.
+     * @throws InvalidMidiDataException
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    @Test
+    void testSongLibrary() throws InvalidMidiDataException, IOException, InterruptedException, ExecutionException {
+        Path folder = Files.createTempDirectory("library");
+        Path index = folder.resolve("cache").resolve("library.json");
+        Path songs = Files.createDirectories(folder.resolve("songs"));
+        Path first = createFile(songs.resolve("first.mid"), 10);
+        Path second = createFile(Files.createDirectories(songs.resolve("sub")).resolve("second.MIDI"), 20);
+        Path invalid = Files.write(songs.resolve("invalid.mid"), new byte[] {1, 2, 3});
+        Files.write(songs.resolve("notes.txt"), new byte[] {1, 2, 3});
+        FileHasher hasher = new FileHasher();
+
+        // the first scan finds the valid MIDI files, also in the subfolders
+        SongLibrary library = new SongLibrary(List.of(songs), index, hasher);
+        library.start().get();
+        Map<Path, SongInfo> found = library.getSongs();
+        assertEquals(2, found.size());
+        assertEquals(hasher.getHash(first), found.get(first).getSongHash());
+        assertEquals(hasher.getHash(second), found.get(second).getSongHash());
+        assertTrue(Files.exists(index));
+        // the songs are copies, and a hash which is not the one of the file is stale
+        found.get(first).getTracks().clear();
+        assertTrue(!library.getSong(first, hasher.getHash(first)).get().getTracks().isEmpty());
+        assertTrue(library.getSong(first, hasher.getHash(second)).isEmpty());
+        assertTrue(library.getSong(invalid, hasher.getHash(invalid)).isEmpty());
+
+        // a modified file is parsed again, a deleted one is removed
+        String oldHash = hasher.getHash(first);
+        createFile(first, 30);
+        Files.setLastModifiedTime(first, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() + 10_000));
+        Files.delete(second);
+        library.scan().get();
+        found = library.getSongs();
+        assertEquals(1, found.size());
+        assertEquals(hasher.getHash(first), found.get(first).getSongHash());
+        assertTrue(library.getSong(first, oldHash).isEmpty());
+        assertTrue(library.getSong(first, hasher.getHash(first)).isPresent());
+        library.close();
+
+        // a new library reads the saved songs, and doesn't parse again the files that have not changed
+        FileTime time = Files.getLastModifiedTime(first);
+        long size = Files.size(first);
+        String hash = hasher.getHash(first);
+        Files.write(first, new byte[(int) size]);
+        Files.setLastModifiedTime(first, time);
+        SongLibrary reloaded = new SongLibrary(List.of(songs), index, hasher);
+        reloaded.start().get();
+        assertEquals(1, reloaded.getSongs().size());
+        assertEquals(hash, reloaded.getSongs().get(first).getSongHash());
+        assertTrue(reloaded.getSong(first, hash).isPresent());
+
+        // when the file really changes, the saved song is stale and the file is not a valid MIDI anymore
+        Files.setLastModifiedTime(first, FileTime.fromMillis(time.toMillis() + 10_000));
+        reloaded.scan().get();
+        assertTrue(reloaded.getSongs().isEmpty());
+        assertTrue(reloaded.getSong(first, hash).isEmpty());
+        reloaded.close();
+
+        // a corrupted index is ignored and the folders are scanned again
+        Files.write(index, new byte[] {'[', '{'});
+        createFile(first, 5);
+        SongLibrary rebuilt = new SongLibrary(List.of(songs), index, new FileHasher());
+        rebuilt.start().get();
+        assertEquals(1, rebuilt.getSongs().size());
+        rebuilt.close();
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
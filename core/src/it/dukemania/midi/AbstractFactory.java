@@ -23,4 +23,20 @@ public interface AbstractFactory {
      */
     ParsedTrack createTrack(Enum<InstrumentType> instrument, List<AbstractNote> notes, int channel);
 
+    /**
+     * this method create a new a track from the columns of its notes, without creating an object for each note.
+     * @param instrument the instrument associated with the track, this parameter is not used if the track is a PercussionTracks 
+     * @param notes the columns of the notes that compose the track
+     * @param channel the number of the MIDI channel associated to this track, can be considered an identifier for the track
+     * @return a parsed track
+     */
+    ParsedTrack createTrack(Enum<InstrumentType> instrument, NoteColumns notes, int channel);
+
+    /**
+     * this method checks if createNote accepts a MIDI number.
+     * @param identifier the MIDI number that identifies the note
+     * @return true if a note with this identifier can be created
+     */
+    boolean isValidIdentifier(int identifier);
+
 }
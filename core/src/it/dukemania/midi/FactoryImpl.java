@@ -32,4 +32,21 @@ public final class FactoryImpl implements AbstractFactory {
         return new KeyboardTrack(instrument, notes, channel);
     }
 
+    /**
+     * @param instrument the instrument associated with the track
+     * @return a KeyboardTrack
+     */
+    @Override
+    public ParsedTrack createTrack(final Enum<InstrumentType> instrument, final NoteColumns notes, final int channel) {
+        return new KeyboardTrack(instrument, notes, channel);
+    }
+
+    /**
+     * @return always true, every MIDI number is a valid Note
+     */
+    @Override
+    public boolean isValidIdentifier(final int identifier) {
+        return true;
+    }
+
 }
@@ -1,19 +1,15 @@
 package it.dukemania.midi;
 
-import java.io.IOException;
 import java.util.List;
 
-import it.dukemania.model.serializers.ConfigurationsModelImpl;
 import it.dukemania.model.serializers.synthesizer.SynthInfo;
 import it.dukemania.audioengine.SynthBuilderImpl;
-import it.dukemania.util.storage.StorageFactoryImpl;
 
 public final class Instrument {
-    private InstrumentType instrument;
-    private String name;
-    private SynthBuilderImpl synthetizer;
-    private List<InstrumentType> associatedInstrumentType;
-    private List<SynthInfo> list;
+    private final InstrumentType instrument;
+    private final String name;
+    private final SynthBuilderImpl synthetizer;
+    private final List<InstrumentType> associatedInstrumentType;
 
 
     /**
@@ -22,54 +18,13 @@ public final class Instrument {
      */
     public Instrument(final InstrumentType instrument) {
         this.instrument = instrument;
-        try {
-            this.list = new ConfigurationsModelImpl(
-                    new StorageFactoryImpl().getConfigurationStorage()).readSynthesizersConfiguration();
-        } catch (IOException e2) {
-            e2.printStackTrace();
-        }
-        this.synthetizer = calcSynthetizer();
-        this.name = calcName();
-        this.associatedInstrumentType = calcAssociatedInstrumentType();
+        //the configuration of the synthesizers is read only once, by the registry
+        final SynthInfo synth = InstrumentRegistry.getInstance().getSynthInfo(instrument);
+        this.synthetizer = synth.getSynth();
+        this.name = synth.getName();
+        this.associatedInstrumentType = synth.getAssociatedInstruments();
     }
 
-    /**
-     * this method find the instruments which use the same synthetizer as the current one. 
-     * @return a list of instruments which use the same synthetizer as the current one.
-     */
-    private List<InstrumentType> calcAssociatedInstrumentType() {
-        return this.list.stream()
-                .filter(s -> s.getSynth().equals(this.synthetizer))
-                .findAny().orElseThrow().getAssociatedInstruments();
-    }
-
-    /**
-     * this method find the name associated to the synthetizer of this instrument.
-     * @return the syntetizer name
-     */
-    private String calcName() {
-        return this.list.stream()
-                .filter(s -> s.getSynth().equals(this.synthetizer))
-                .findAny().orElseThrow().getName();
-    }
-
-
-    /**
-     * this method find which synthetizer is associated to this instrument.
-     * @return the synthetizer associated to the instrument
-     */
-    private SynthBuilderImpl calcSynthetizer() {
-        return this.list.stream()
-                .filter(s -> s.getAssociatedInstruments().contains(this.instrument))
-                .map(s -> s.getSynth())
-                .findAny().orElse(list.stream()
-                        .filter(s -> s.getName().equals("default"))
-                        .map(s -> s.getSynth())
-                        .findAny().get());
-    }
-
-
-
     /**
      * this method returns the name associated to the synthetizer of this instrument.
      * @return the associated syntetizer name
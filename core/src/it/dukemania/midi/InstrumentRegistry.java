@@ -0,0 +1,135 @@
+package it.dukemania.midi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import it.dukemania.model.serializers.ConfigurationsModel;
+import it.dukemania.model.serializers.ConfigurationsModelImpl;
+import it.dukemania.model.serializers.synthesizer.SynthInfo;
+import it.dukemania.util.storage.Storage;
+import it.dukemania.util.storage.StorageFactoryImpl;
+
+/**
+ * The synthesizer of every instrument, read once from the synthesizers configuration and indexed by instrument.
+ * The configuration is read again when its file changes, the file is checked at most once a second.
+ */
+public final class InstrumentRegistry {
+    private static final String DEFAULT_SYNTHESIZER = "default";
+    private static final long CHECK_INTERVAL = 1_000_000_000L; //nanoseconds
+    private static InstrumentRegistry instance;
+
+    private final ConfigurationsModel model;
+    private final File configurationFile;
+    private final long checkInterval;
+    private volatile Index index;
+    private volatile long nextCheck;
+    //the version of the file that has been read last, even if it could not be parsed
+    private long readModified;
+    private long readLength;
+
+    //the synthesizers of a version of the configuration file
+    private static final class Index {
+        private final Map<InstrumentType, SynthInfo> synthesizers;
+        private final SynthInfo defaultSynthesizer;
+
+        Index(final List<SynthInfo> configuration) {
+            this.synthesizers = new EnumMap<>(InstrumentType.class);
+            //an instrument associated to more synthesizers uses the first one
+            configuration.forEach(s -> s.getAssociatedInstruments().forEach(i -> this.synthesizers.putIfAbsent(i, s)));
+            this.defaultSynthesizer = configuration.stream()
+                    .filter(s -> s.getName().equals(DEFAULT_SYNTHESIZER))
+                    .findFirst().orElse(null);
+        }
+    }
+
+    private InstrumentRegistry() {
+        this(new StorageFactoryImpl().getConfigurationStorage());
+    }
+
+    private InstrumentRegistry(final Storage storage) {
+        this(new ConfigurationsModelImpl(storage), storage.getAsFile(ConfigurationsModelImpl.SYNTHESIZERS_CONFIGURATION_PATH),
+                CHECK_INTERVAL);
+    }
+
+    //the tests use their own configuration file, checked every time
+    InstrumentRegistry(final ConfigurationsModel model, final File configurationFile, final long checkInterval) {
+        this.model = model;
+        this.configurationFile = configurationFile;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * this method makes sure that exist only one instance of InstrumentRegistry and returns it.
+     * @return an instance of InstrumentRegistry
+     */
+    public static synchronized InstrumentRegistry getInstance() {
+        if (instance == null) {
+            instance = new InstrumentRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * this method returns the synthesizer associated to an instrument.
+     * @param instrument the instrument, null for the tracks without one
+     * @return the synthesizer associated to the instrument, or the default one if there is none
+     * @throws IllegalStateException if the configuration of the synthesizers cannot be read
+     */
+    public SynthInfo getSynthInfo(final InstrumentType instrument) {
+        final Index current = getIndex();
+        final SynthInfo synth = instrument == null ? null : current.synthesizers.get(instrument);
+        if (synth != null) {
+            return synth;
+        }
+        if (current.defaultSynthesizer == null) {
+            throw new IllegalStateException("No synthesizer for " + instrument + " and no default synthesizer");
+        }
+        return current.defaultSynthesizer;
+    }
+
+    /**
+     * this method returns the instruments that have their own synthesizer.
+     * @return the instruments and their synthesizers
+     */
+    public Map<InstrumentType, SynthInfo> getSynthesizers() {
+        return Collections.unmodifiableMap(getIndex().synthesizers);
+    }
+
+    private Index getIndex() {
+        final long now = System.nanoTime();
+        if (this.index == null || now - this.nextCheck >= 0) {
+            reloadIfChanged(now);
+        }
+        return this.index;
+    }
+
+    private synchronized void reloadIfChanged(final long now) {
+        if (this.index != null && now - this.nextCheck < 0) {
+            return;
+        }
+        this.nextCheck = now + this.checkInterval;
+        //the file is checked before it is read, so a change made while it is being read is seen at the next check
+        final long lastModified = this.configurationFile.lastModified();
+        final long length = this.configurationFile.length();
+        if (this.index != null && this.readModified == lastModified && this.readLength == length) {
+            return;
+        }
+        try {
+            final List<SynthInfo> configuration = this.model.readSynthesizersConfiguration();
+            this.index = new Index(configuration);
+        } catch (IOException e) {
+            if (this.index == null) {
+                throw new IllegalStateException("The configuration of the synthesizers cannot be read", e);
+            }
+            //a file that is being edited may be incomplete, the previous configuration is kept until it changes again
+            e.printStackTrace();
+        }
+        //the first time the file is copied from the assets while it is read, so it is read once more at the next check
+        this.readModified = lastModified;
+        this.readLength = length;
+    }
+}
@@ -1,8 +1,8 @@
 package it.dukemania.midi;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 
 public class KeyboardTrack extends ParsedTrack {
@@ -21,6 +21,18 @@ public class KeyboardTrack extends ParsedTrack {
         this.notesMaxDuration = calcMaxDuration();
     }
 
+    /**
+     * this is the constructor.
+     * @param instrument the instrument associated to this track
+     * @param notes the columns of the notes that compose the track
+     * @param channel the MIDI channel associated to this track
+     */
+    public KeyboardTrack(final Enum<InstrumentType> instrument, final NoteColumns notes, final int channel) {
+        super(notes, channel);
+        this.instrument = instrument;
+        this.notesMaxDuration = calcMaxDuration();
+    }
+
     /**
      * this method return the instrument associated to this track.
      * @return the instrument in which this track is played
@@ -50,9 +62,12 @@ public class KeyboardTrack extends ParsedTrack {
      * @return a map associating the identifier of the note and its duration
      */
     private Map<Integer, Long> calcMaxDuration() {
-        return super.getNotes().stream()
-                                    .collect(Collectors.toMap(AbstractNote::getIdentifier,
-                                            n -> n.getDuration().orElse(0L), (d1, d2) -> d1 > d2 ? d1 : d2));
+        final Map<Integer, Long> maxDuration = new HashMap<>();
+        final NoteColumns.Cursor cursor = super.getColumns().cursor();
+        while (cursor.next()) {
+            maxDuration.merge(cursor.getIdentifier(), cursor.getDuration(), Math::max);
+        }
+        return maxDuration;
     }
 
 }
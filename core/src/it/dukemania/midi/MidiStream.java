@@ -0,0 +1,430 @@
+package it.dukemania.midi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+/**
+ * Reads the notes of a standard MIDI file directly from its bytes, one note at a time and in order of start time,
+ * so that the first notes can be used before the whole file has been read.
+ * The tracks are read together, always taking the event that comes first, and every note off is matched
+ * with the oldest note on of the same channel and pitch that is still open.
+ * The object works as a cursor: nextNote moves it to the next note, whose values are returned by the getters.
+ */
+public final class MidiStream {
+
+    private static final int HEADER_CHUNK = 0x4D546864;
+    private static final int TRACK_CHUNK = 0x4D54726B;
+    private static final int NOTE_OFF = 0x80;
+    private static final int NOTE_ON = 0x90;
+    private static final int PROGRAM_CHANGE = 0xC0;
+    private static final int CHANNEL_PRESSURE = 0xD0;
+    private static final int SYSTEM_EXCLUSIVE = 0xF0;
+    private static final int SYSTEM_EXCLUSIVE_END = 0xF7;
+    private static final int META = 0xFF;
+    private static final int SET_TEMPO = 0x51;
+    private static final int END_OF_TRACK = 0x2F;
+    private static final int CHANNELS = 16;
+    private static final int PITCHES = 128;
+    private static final int MICROSEC_PER_MIN = 60_000_000;
+    private static final double SMPTE_30_DROP = 29.97;
+    private static final int INITIAL_PENDING = 256;
+
+    private final ByteBuffer data;
+    private final int format;
+    private final int[] trackStarts;
+    private final int[] trackEnds;
+    private final TempoMap tempoMap;
+    private final long microsecondLength;
+    private final double bpm;
+
+    // the cursors of the tracks
+    private final int[] positions;
+    private final long[] ticks;
+    private final int[] runningStatus;
+    private final int[] programs = new int[CHANNELS];
+
+    // the notes that have been read in order of start time, the first ones are still waiting to be closed
+    private final int[] openFirst = new int[CHANNELS * PITCHES];
+    private final int[] openLast = new int[CHANNELS * PITCHES];
+    private int[] pendingChannels = new int[INITIAL_PENDING];
+    private int[] pendingIdentifiers = new int[INITIAL_PENDING];
+    private long[] pendingStarts = new long[INITIAL_PENDING];
+    private long[] pendingDurations = new long[INITIAL_PENDING];
+    private int[] pendingNextOpen = new int[INITIAL_PENDING];
+    private int pendingHead;
+    private int pendingTail;
+
+    private int channel;
+    private int identifier;
+    private long startTime;
+    private long duration;
+
+    /**
+     * Create a stream that reads a standard MIDI file.
+     * @param bytes the content of the file
+     * @throws InvalidMidiDataException if the content is not a standard MIDI file
+     */
+    public MidiStream(final ByteBuffer bytes) throws InvalidMidiDataException {
+        this.data = bytes.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (data.getInt(0) != HEADER_CHUNK) {
+                throw new InvalidMidiDataException("Not a standard MIDI file");
+            }
+            final int headerLength = data.getInt(4);
+            this.format = data.getShort(8);
+            final int tracks = data.getShort(10) & 0xFFFF;
+            final int division = data.getShort(12);
+            this.trackStarts = new int[tracks];
+            this.trackEnds = new int[tracks];
+            int position = 8 + headerLength;
+            int found = 0;
+            while (found < tracks && position + 8 <= data.limit()) {
+                final int length = data.getInt(position + 4);
+                if (data.getInt(position) == TRACK_CHUNK) {
+                    trackStarts[found] = position + 8;
+                    trackEnds[found] = Math.min(data.limit(), position + 8 + length);
+                    found++;
+                }
+                position += 8 + length;
+            }
+            this.positions = Arrays.copyOf(trackStarts, found);
+            this.ticks = new long[found];
+            this.runningStatus = new int[found];
+
+            Arrays.fill(programs, -1);
+            final List<long[]> tempos = new ArrayList<>();
+            final long tickLength = scanFile(tempos);
+            // the BPM of the song is the one of the last tempo change read
+            this.bpm = tempos.isEmpty() ? 0 : (double) MICROSEC_PER_MIN / tempos.get(tempos.size() - 1)[1];
+            tempos.sort(Comparator.comparingLong(change -> change[0]));
+            this.tempoMap = division < 0 ? smpteTempoMap(division) : new TempoMap(division, tempos);
+            this.microsecondLength = tempoMap.toMicroseconds(tickLength);
+        } catch (IndexOutOfBoundsException e) {
+            throw new InvalidMidiDataException("Truncated MIDI file");
+        }
+        Arrays.fill(openFirst, -1);
+        Arrays.fill(openLast, -1);
+        for (int t = 0; t < positions.length; t++) {
+            readDelta(t);
+        }
+    }
+
+    /**
+     * Create a stream that reads a standard MIDI file mapped in memory.
+     * @param file the file
+     * @return the stream
+     * @throws InvalidMidiDataException if the file is not a standard MIDI file
+     * @throws IOException if the file can't be read
+     */
+    public static MidiStream open(final File file) throws InvalidMidiDataException, IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new MidiStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static TempoMap smpteTempoMap(final int division) {
+        final int framesPerSecond = -(division >> 8);
+        return TempoMap.ofSMPTE(framesPerSecond == 29 ? SMPTE_30_DROP : framesPerSecond, division & 0xFF);
+    }
+
+    // read every track once without decoding its notes, to know the tempo changes, the programs of the channels
+    // and the length of the song
+    private long scanFile(final List<long[]> tempos) {
+        long tickLength = 0;
+        for (int t = 0; t < positions.length; t++) {
+            int position = positions[t];
+            long tick = 0;
+            int status = 0;
+            while (position < trackEnds[t]) {
+                final long delta = readVariableLength(position);
+                position = (int) (delta >>> Integer.SIZE);
+                tick += (int) delta;
+                int current = data.get(position) & 0xFF;
+                if (current < NOTE_OFF) {
+                    current = status;
+                } else {
+                    position++;
+                }
+                if (current == META) {
+                    final int type = data.get(position++) & 0xFF;
+                    final long length = readVariableLength(position);
+                    position = (int) (length >>> Integer.SIZE);
+                    if (type == SET_TEMPO) {
+                        tempos.add(new long[] {tick, ((data.get(position) & 0xFF) << 16)
+                                | ((data.get(position + 1) & 0xFF) << 8) | (data.get(position + 2) & 0xFF)});
+                    }
+                    position += (int) length;
+                    if (type == END_OF_TRACK) {
+                        break;
+                    }
+                } else if (current == SYSTEM_EXCLUSIVE || current == SYSTEM_EXCLUSIVE_END) {
+                    final long length = readVariableLength(position);
+                    position = (int) (length >>> Integer.SIZE) + (int) length;
+                } else {
+                    status = current;
+                    if ((current & 0xF0) == PROGRAM_CHANGE) {
+                        programs[current & 0x0F] = data.get(position) & 0x7F;
+                    }
+                    position += dataBytes(current);
+                }
+            }
+            tickLength = Math.max(tickLength, tick);
+        }
+        return tickLength;
+    }
+
+    // a variable length quantity, the value is in the lower half and the position after it in the upper half
+    private long readVariableLength(final int start) {
+        int position = start;
+        int value = 0;
+        int current;
+        do {
+            current = data.get(position++);
+            value = (value << 7) | (current & 0x7F);
+        } while ((current & 0x80) != 0);
+        return ((long) position << Integer.SIZE) | (value & 0xFFFFFFFFL);
+    }
+
+    private static int dataBytes(final int status) {
+        final int command = status & 0xF0;
+        return command == PROGRAM_CHANGE || command == CHANNEL_PRESSURE ? 1 : 2;
+    }
+
+    // read the time of the next event of a track, or close the track if it is over
+    private void readDelta(final int track) {
+        if (positions[track] >= trackEnds[track]) {
+            positions[track] = -1;
+            return;
+        }
+        final long delta = readVariableLength(positions[track]);
+        positions[track] = (int) (delta >>> Integer.SIZE);
+        ticks[track] += (int) delta;
+    }
+
+    // the track whose next event comes first, or -1 if every track is over
+    private int firstTrack() {
+        int first = -1;
+        for (int t = 0; t < positions.length; t++) {
+            if (positions[t] >= 0 && (first < 0 || ticks[t] < ticks[first])) {
+                first = t;
+            }
+        }
+        return first;
+    }
+
+    // read the next event of the tracks, returns false if there are no more events
+    private boolean readEvent() {
+        final int track = firstTrack();
+        if (track < 0) {
+            return false;
+        }
+        int position = positions[track];
+        int status = data.get(position) & 0xFF;
+        if (status < NOTE_OFF) {
+            status = runningStatus[track];
+        } else {
+            position++;
+        }
+        if (status == META) {
+            final int type = data.get(position++) & 0xFF;
+            final long length = readVariableLength(position);
+            position = (int) (length >>> Integer.SIZE) + (int) length;
+            if (type == END_OF_TRACK) {
+                position = trackEnds[track];
+            }
+        } else if (status == SYSTEM_EXCLUSIVE || status == SYSTEM_EXCLUSIVE_END) {
+            final long length = readVariableLength(position);
+            position = (int) (length >>> Integer.SIZE) + (int) length;
+        } else {
+            runningStatus[track] = status;
+            final int command = status & 0xF0;
+            final int eventChannel = status & 0x0F;
+            final int data1 = data.get(position) & 0x7F;
+            if (command == NOTE_ON && (data.get(position + 1) & 0x7F) != 0) {
+                openNote(eventChannel, data1, tempoMap.toMicroseconds(ticks[track]));
+            } else if (command == NOTE_ON || command == NOTE_OFF) {
+                closeNote(eventChannel, data1, tempoMap.toMicroseconds(ticks[track]));
+            }
+            position += dataBytes(status);
+        }
+        positions[track] = position;
+        readDelta(track);
+        return true;
+    }
+
+    private void openNote(final int noteChannel, final int pitch, final long time) {
+        if (pendingTail - pendingHead == pendingChannels.length) {
+            growPending();
+        }
+        final int index = pendingTail & (pendingChannels.length - 1);
+        pendingChannels[index] = noteChannel;
+        pendingIdentifiers[index] = pitch;
+        pendingStarts[index] = time;
+        pendingDurations[index] = -1;
+        pendingNextOpen[index] = -1;
+        final int key = noteChannel * PITCHES + pitch;
+        if (openLast[key] < 0) {
+            openFirst[key] = pendingTail;
+        } else {
+            pendingNextOpen[openLast[key] & (pendingChannels.length - 1)] = pendingTail;
+        }
+        openLast[key] = pendingTail;
+        pendingTail++;
+    }
+
+    private void closeNote(final int noteChannel, final int pitch, final long time) {
+        final int key = noteChannel * PITCHES + pitch;
+        final int note = openFirst[key];
+        if (note < 0) {
+            return;
+        }
+        final int index = note & (pendingChannels.length - 1);
+        pendingDurations[index] = time - pendingStarts[index];
+        openFirst[key] = pendingNextOpen[index];
+        if (openFirst[key] < 0) {
+            openLast[key] = -1;
+        }
+    }
+
+    // double the ring of pending notes, every note keeps its sequence number
+    private void growPending() {
+        final int size = pendingChannels.length * 2;
+        final int[] newChannels = new int[size];
+        final int[] newIdentifiers = new int[size];
+        final long[] newStarts = new long[size];
+        final long[] newDurations = new long[size];
+        final int[] newNextOpen = new int[size];
+        for (int note = pendingHead; note != pendingTail; note++) {
+            final int from = note & (pendingChannels.length - 1);
+            final int to = note & (size - 1);
+            newChannels[to] = pendingChannels[from];
+            newIdentifiers[to] = pendingIdentifiers[from];
+            newStarts[to] = pendingStarts[from];
+            newDurations[to] = pendingDurations[from];
+            newNextOpen[to] = pendingNextOpen[from];
+        }
+        pendingChannels = newChannels;
+        pendingIdentifiers = newIdentifiers;
+        pendingStarts = newStarts;
+        pendingDurations = newDurations;
+        pendingNextOpen = newNextOpen;
+    }
+
+    /**
+     * Moves the cursor to the next note in order of start time, reading only the events needed to know its duration.
+     * The notes that are never closed are skipped.
+     * @return true if there is another note, false if the file is over
+     */
+    public boolean nextNote() {
+        while (true) {
+            if (pendingHead != pendingTail) {
+                final int index = pendingHead & (pendingChannels.length - 1);
+                if (pendingDurations[index] >= 0) {
+                    channel = pendingChannels[index] + 1;
+                    identifier = pendingIdentifiers[index];
+                    startTime = pendingStarts[index];
+                    duration = pendingDurations[index];
+                    pendingHead++;
+                    return true;
+                }
+            }
+            if (!readEvent()) {
+                if (pendingHead == pendingTail) {
+                    return false;
+                }
+                // the file is over, the first note will never be closed
+                final int index = pendingHead & (pendingChannels.length - 1);
+                final int key = pendingChannels[index] * PITCHES + pendingIdentifiers[index];
+                openFirst[key] = pendingNextOpen[index];
+                if (openFirst[key] < 0) {
+                    openLast[key] = -1;
+                }
+                pendingHead++;
+            }
+        }
+    }
+
+    /**
+     * Returns the channel of the current note, between 1 and 16.
+     * @return the channel
+     */
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the MIDI number of the current note.
+     * @return the MIDI number
+     */
+    public int getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Returns the start time of the current note in microseconds.
+     * @return the start time
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the duration of the current note in microseconds.
+     * @return the duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the program of a channel, which is known before the notes are read.
+     * If a channel changes its program, the last change of the last track that changes it is used.
+     * @param programChannel the channel, between 1 and 16
+     * @return the program, or -1 if the channel has no program change
+     */
+    public int getProgram(final int programChannel) {
+        return programs[programChannel - 1];
+    }
+
+    /**
+     * Returns the format of the file, 0 for a single track, 1 for simultaneous tracks, 2 for independent sequences.
+     * @return the format
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the length of the song in microseconds.
+     * @return the length
+     */
+    public long getMicrosecondLength() {
+        return microsecondLength;
+    }
+
+    /**
+     * Returns the tempo map of the file, which converts the ticks of the events to microseconds.
+     * @return the tempo map
+     */
+    public TempoMap getTempoMap() {
+        return tempoMap;
+    }
+
+    /**
+     * Returns the BPM of the last tempo change of the file.
+     * @return the BPM, or 0 if the file has no tempo changes
+     */
+    public double getBPM() {
+        return bpm;
+    }
+}
@@ -0,0 +1,168 @@
+package it.dukemania.midi;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The notes of a track stored in parallel primitive arrays, one for the start times, one for the durations
+ * and one for the identifiers, so that a track doesn't need an object for every note.
+ */
+public final class NoteColumns {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] starts;
+    private long[] durations;
+    private int[] identifiers;
+    private int size;
+
+    /**
+     * Create an empty set of notes.
+     */
+    public NoteColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create an empty set of notes.
+     * @param capacity how many notes can be added before the arrays grow
+     */
+    public NoteColumns(final int capacity) {
+        this.starts = new long[Math.max(1, capacity)];
+        this.durations = new long[Math.max(1, capacity)];
+        this.identifiers = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Create the columns of a list of notes, the notes without a duration have duration 0.
+     * @param notes the notes
+     * @return the columns
+     */
+    public static NoteColumns of(final List<? extends AbstractNote> notes) {
+        final NoteColumns columns = new NoteColumns(notes.size());
+        for (final AbstractNote note : notes) {
+            columns.add(note.getStartTime(), note.getDuration().orElse(0L), note.getIdentifier());
+        }
+        return columns;
+    }
+
+    /**
+     * Add a note after the others.
+     * @param start the start time of the note in microseconds
+     * @param duration the duration of the note in microseconds
+     * @param identifier the MIDI number of the note
+     */
+    public void add(final long start, final long duration, final int identifier) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            durations = Arrays.copyOf(durations, size * 2);
+            identifiers = Arrays.copyOf(identifiers, size * 2);
+        }
+        starts[size] = start;
+        durations[size] = duration;
+        identifiers[size] = identifier;
+        size++;
+    }
+
+    /**
+     * Returns the number of notes.
+     * @return the number of notes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the start time of a note.
+     * @param index the index of the note
+     * @return the start time in microseconds
+     */
+    public long getStartTime(final int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the duration of a note.
+     * @param index the index of the note
+     * @return the duration in microseconds
+     */
+    public long getDuration(final int index) {
+        return durations[index];
+    }
+
+    /**
+     * Returns the identifier of a note.
+     * @param index the index of the note
+     * @return the MIDI number of the note
+     */
+    public int getIdentifier(final int index) {
+        return identifiers[index];
+    }
+
+    /**
+     * Returns a cursor positioned before the first note.
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reads the notes one after the other without creating any object.
+     */
+    public final class Cursor {
+        private int index = -1;
+
+        private Cursor() { }
+
+        /**
+         * Moves to the next note.
+         * @return true if there is another note, false if the notes are over
+         */
+        public boolean next() {
+            if (index < size) {
+                index++;
+            }
+            return index < size;
+        }
+
+        /**
+         * Moves the cursor back before the first note.
+         */
+        public void reset() {
+            index = -1;
+        }
+
+        /**
+         * Returns the index of the current note.
+         * @return the index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the start time of the current note.
+         * @return the start time in microseconds
+         */
+        public long getStartTime() {
+            return starts[index];
+        }
+
+        /**
+         * Returns the duration of the current note.
+         * @return the duration in microseconds
+         */
+        public long getDuration() {
+            return durations[index];
+        }
+
+        /**
+         * Returns the identifier of the current note.
+         * @return the MIDI number of the note
+         */
+        public int getIdentifier() {
+            return identifiers[index];
+        }
+    }
+}
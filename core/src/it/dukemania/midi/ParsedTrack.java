@@ -1,9 +1,13 @@
 package it.dukemania.midi;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public abstract class ParsedTrack {
-    private final List<AbstractNote> notes;
+    private List<AbstractNote> notes;
+    // the columns of the notes, built from the list when they are requested and rebuilt only after a note is deleted
+    private NoteColumns columns;
     private final int channel;
 
     /**
@@ -13,16 +17,61 @@ public abstract class ParsedTrack {
      */
     public ParsedTrack(final List<AbstractNote> notes, final int channel) {
         this.notes = notes;
+        this.columns = null;
         this.channel = channel;
     }
+
+    /**
+     * constructor, the notes are created only if they are requested with getNotes.
+     * @param columns the notes which compose the track
+     * @param channel the MIDI channel
+     */
+    public ParsedTrack(final NoteColumns columns, final int channel) {
+        this.notes = null;
+        this.columns = columns;
+        this.channel = channel;
+    }
+
     /**
      * this method return the list of the notes that compose the track.
+     * The list must be changed only with deleteNote, so that the columns follow it.
      * @return the list of notes that compose the track
      */
-    public final List<AbstractNote> getNotes() {
+    public final synchronized List<AbstractNote> getNotes() {
+        if (this.notes == null) {
+            final AbstractFactory factory = FactoryConfigurator.getFactory(this.channel);
+            final List<AbstractNote> created = new ArrayList<>(this.columns.size());
+            final NoteColumns.Cursor cursor = this.columns.cursor();
+            while (cursor.next()) {
+                created.add(factory.createNote(Optional.of(cursor.getDuration()), cursor.getStartTime(),
+                        cursor.getIdentifier()));
+            }
+            this.notes = created;
+        }
         return this.notes;
     }
 
+    /**
+     * this method return the notes that compose the track as columns, without creating a note for each of them.
+     * The columns are copied from the list of notes only when a note has been deleted or the track was created from
+     * the list, notes without a duration have duration 0.
+     * @return the columns of the notes that compose the track
+     */
+    public final synchronized NoteColumns getColumns() {
+        if (this.columns == null) {
+            this.columns = NoteColumns.of(this.notes);
+        }
+        return this.columns;
+    }
+
+    /**
+     * this method return the number of notes that compose the track.
+     * @return the number of notes
+     */
+    public final synchronized int getNumberOfNotes() {
+        return this.notes == null ? this.columns.size() : this.notes.size();
+    }
+
     /**
      * this method return the channel number (starting from 1).
      * @return the MIDI channel which can be used as identifier for each ParsedTrack in a song
@@ -35,8 +84,10 @@ public abstract class ParsedTrack {
      * this method delete a note from the track.
      * @param note the not to delete
      */
-    public final void deleteNote(final AbstractNote note) {
-        this.notes.remove(note);
+    public final synchronized void deleteNote(final AbstractNote note) {
+        if (this.getNotes().remove(note)) {
+            this.columns = null;
+        }
     }
 
 }
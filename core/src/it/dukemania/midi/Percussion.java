@@ -13,6 +13,8 @@ public enum Percussion {
     , SHORT_WHISTLE, LONG_WHISTLE, SHORT_GUIRO, LONG_GUIRO, CLAVES, HI_WOOD_BLOCK, LOW_WOOD_BLOCK, MUTE_CUICA, OPEN_CUICA
     , MUTE_TRIANGLE, OPEN_TRIANGLE;
 
+    private static final int OFFSET = 35;
+    private static final Percussion[] PERCUSSIONS = values();
     private DrumSamples associated;
 
     static {
@@ -21,6 +23,15 @@ public enum Percussion {
                 .findFirst().orElse(DrumSamples.Empty));
     }
 
+    /**
+     * this method return the Percussion identified by a MIDI note number of the percussion channel.
+     * @param identifier the MIDI number of the note
+     * @return the Percussion
+     */
+    public static Percussion fromIdentifier(final int identifier) {
+        return PERCUSSIONS[identifier - OFFSET];
+    }
+
     /**
      * this method return the associated DrumSample for each Percussion.
      * @return the associated drum
@@ -29,7 +29,7 @@ public final class PercussionFactoryImpl implements AbstractFactory {
      */
     @Override
     public AbstractNote createNote(final Optional<Long> duration, final long startTime, final int identifier) {
-        if (identifier >= MIN && identifier <= MAX) {
+        if (isValidIdentifier(identifier)) {
             return new PercussionNote(duration, startTime, identifier);
         } else {
             throw new InvalidNoteException();
@@ -46,5 +46,23 @@ public final class PercussionFactoryImpl implements AbstractFactory {
         return new PercussionTrack(notes, channel);
     }
 
+    /**
+     * @param instrument this parameter is not used
+     * @return a PercussionTrack
+     */
+    @Override
+    public ParsedTrack createTrack(final Enum<InstrumentType> instrument, final NoteColumns notes,
+            final int channel) {
+        return new PercussionTrack(notes, channel);
+    }
+
+    /**
+     * @return true if the identifier is associated to a Percussion
+     */
+    @Override
+    public boolean isValidIdentifier(final int identifier) {
+        return identifier >= MIN && identifier <= MAX;
+    }
+
 }
 
@@ -4,7 +4,6 @@ import it.dukemania.audioengine.DrumSamples;
 import java.util.Optional;
 
 public class PercussionNote extends AbstractNote {
-    private static final int OFFSET = 35;
     private final Percussion instrument;
 
     /**
@@ -15,7 +14,7 @@ public class PercussionNote extends AbstractNote {
      */
     public PercussionNote(final Optional<Long> duration, final long startTime, final int identifier) {
         super(duration, startTime, identifier);
-        this.instrument = Percussion.values()[identifier - OFFSET];
+        this.instrument = Percussion.fromIdentifier(identifier);
     }
 
     /**
@@ -14,5 +14,14 @@ public class PercussionTrack extends ParsedTrack {
         super(notes, channel);
     }
 
+    /**
+     * this is the constructor.
+     * @param notes the columns of the notes that compose the track
+     * @param channel the channel number associated to the track 
+     */
+    public PercussionTrack(final NoteColumns notes, final int channel) {
+        super(notes, channel);
+    }
+
 
 }
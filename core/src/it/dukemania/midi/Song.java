@@ -8,6 +8,7 @@ public class Song {
     private final double  duration;
     private final List<ParsedTrack> tracks;
     private final double bpm;                  //potrebbe essere un int, controllare eventuali valori di default
+    private final TempoMap tempoMap;
 
 
     /**
@@ -18,11 +19,25 @@ public class Song {
      * @param bpm the song BPM (Beat Per Minute)
      */
     public Song(final String title, final double duration, final List<ParsedTrack> tracks, final double bpm) {
+        this(title, duration, tracks, bpm, TempoMap.ofBPM(bpm));
+    }
+
+    /**
+     * constructor.
+     * @param title the title of the song
+     * @param duration the duration of the song expressed in microseconds
+     * @param tracks the list of the ParsedTrack that compose the song
+     * @param bpm the song BPM (Beat Per Minute)
+     * @param tempoMap all the tempo changes of the song, with the same time of the notes
+     */
+    public Song(final String title, final double duration, final List<ParsedTrack> tracks, final double bpm,
+            final TempoMap tempoMap) {
         super();
         this.title = title;
         this.duration = duration;
         this.bpm = bpm;
         this.tracks = tracks;
+        this.tempoMap = tempoMap;
     }
 
     /**
@@ -41,6 +56,14 @@ public class Song {
         return bpm;
     }
 
+    /**
+     * this method return the tempo map of the song, which follows every tempo change.
+     * @return the tempo map of the song
+     */
+    public final TempoMap getTempoMap() {
+        return tempoMap;
+    }
+
     /**
      * this method return the song duration in microseconds.
      * @return the song duration in microseconds
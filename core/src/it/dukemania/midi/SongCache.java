@@ -0,0 +1,283 @@
+package it.dukemania.midi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+/**
+ * Keeps the songs that have already been parsed, identified by the SHA-256 hash of their file,
+ * so that selecting a song again doesn't parse it again.
+ * The songs are saved in a compact binary form in a folder, and the most recently used ones are also kept in memory.
+ * Every get returns a new Song, which can be modified without changing the cached one.
+ */
+public final class SongCache {
+
+    /**
+     * The extension of the files of the cache.
+     */
+    public static final String EXTENSION = ".song";
+    private static final int MAGIC = 0x444D5343;
+    // it must change whenever the parser produces different songs from the same file
+    private static final int VERSION = 1;
+    private static final int NO_INSTRUMENT = -1;
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MASK = 0x7F;
+    private static final int VARINT_MORE = 0x80;
+    private static final int MAX_VARINT = 10;
+    private static final Pattern HASH = Pattern.compile("[0-9a-fA-F]{1,128}");
+
+    private final Path directory;
+    private final Map<String, byte[]> recent;
+
+    /**
+     * Create a cache.
+     * @param directory the folder where the songs are saved, it is created when the first song is saved
+     * @param capacity how many songs are kept in memory
+     */
+    public SongCache(final Path directory, final int capacity) {
+        this.directory = directory;
+        this.recent = new LinkedHashMap<>(capacity, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a song that has already been parsed, looking first in memory and then in the folder of the cache.
+     * @param hash the SHA-256 hash of the file of the song, in hexadecimal
+     * @return the song, or an empty optional if it has never been parsed
+     */
+    public Optional<Song> get(final String hash) {
+        final byte[] encoded = load(hash);
+        if (encoded != null) {
+            try {
+                return Optional.of(decode(encoded));
+            } catch (IOException e) {
+                // the file is corrupted or belongs to another version, so the song is parsed again
+                forget(hash);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Saves a parsed song, both in memory and in the folder of the cache.
+     * @param hash the SHA-256 hash of the file of the song, in hexadecimal
+     * @param song the song
+     * @throws IOException if the song cannot be written in the folder of the cache
+     */
+    public void put(final String hash, final Song song) throws IOException {
+        final byte[] encoded = encode(song);
+        synchronized (recent) {
+            recent.put(checkHash(hash), encoded);
+        }
+        Files.createDirectories(directory);
+        // the file is renamed only when it is complete, so a song is never read while it is being written
+        final Path temporary = Files.createTempFile(directory, hash, null);
+        try {
+            Files.write(temporary, encoded);
+            Files.move(temporary, fileOf(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns a song from the cache, or parses it and saves it if it is not there.
+     * The title of the song is always the name of the file, even if the same song has been cached with another name.
+     * @param hash the SHA-256 hash of the file, in hexadecimal
+     * @param file the MIDI file
+     * @return the song
+     * @throws InvalidMidiDataException if the file is not a valid MIDI file
+     * @throws IOException if the file cannot be read
+     */
+    public Song getOrParse(final String hash, final File file) throws InvalidMidiDataException, IOException {
+        final Optional<Song> cached = get(hash);
+        if (cached.isPresent()) {
+            final Song song = cached.get();
+            return song.getTitle().equals(file.getName()) ? song
+                    : new Song(file.getName(), song.getDuration(), song.getTracks(), song.getBPM(), song.getTempoMap());
+        }
+        final Song song = MidiParser.getInstance().parse(file);
+        try {
+            put(hash, song);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return song;
+    }
+
+    private byte[] load(final String hash) {
+        synchronized (recent) {
+            final byte[] encoded = recent.get(checkHash(hash));
+            if (encoded != null) {
+                return encoded;
+            }
+        }
+        try {
+            final byte[] encoded = Files.readAllBytes(fileOf(hash));
+            synchronized (recent) {
+                recent.put(hash, encoded);
+            }
+            return encoded;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void forget(final String hash) {
+        synchronized (recent) {
+            recent.remove(hash);
+        }
+        try {
+            Files.deleteIfExists(fileOf(hash));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Path fileOf(final String hash) {
+        return directory.resolve(hash + EXTENSION);
+    }
+
+    private static String checkHash(final String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not a hexadecimal hash: " + hash);
+        }
+        return hash;
+    }
+
+    private static byte[] encode(final Song song) {
+        final byte[] title = song.getTitle().getBytes(StandardCharsets.UTF_8);
+        int capacity = Integer.BYTES * 2 + MAX_VARINT + title.length + Double.BYTES * 2
+                + song.getTempoMap().getEncodedLength() + MAX_VARINT;
+        for (final ParsedTrack track : song.getTracks()) {
+            capacity += MAX_VARINT * (3 + 3 * track.getNumberOfNotes());
+        }
+        final ByteBuffer out = ByteBuffer.allocate(capacity);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        writeVarint(out, title.length);
+        out.put(title);
+        out.putDouble(song.getDuration());
+        out.putDouble(song.getBPM());
+        song.getTempoMap().write(out);
+        writeVarint(out, song.getTracks().size());
+        for (final ParsedTrack track : song.getTracks()) {
+            final Enum<InstrumentType> instrument = track instanceof KeyboardTrack
+                    ? ((KeyboardTrack) track).getInstrument() : null;
+            writeVarint(out, track.getChannel());
+            writeVarint(out, instrument == null ? 0 : instrument.ordinal() - NO_INSTRUMENT);
+            // the start times are saved as the difference from the previous one, which is small and usually positive
+            final NoteColumns notes = track.getColumns();
+            writeVarint(out, notes.size());
+            long previous = 0;
+            for (int i = 0; i < notes.size(); i++) {
+                writeVarint(out, zigZag(notes.getStartTime(i) - previous));
+                writeVarint(out, zigZag(notes.getDuration(i)));
+                writeVarint(out, zigZag(notes.getIdentifier(i)));
+                previous = notes.getStartTime(i);
+            }
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static Song decode(final byte[] encoded) throws IOException {
+        final ByteBuffer in = ByteBuffer.wrap(encoded);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a song of this version of the cache");
+            }
+            final byte[] title = new byte[readSize(in)];
+            in.get(title);
+            final double duration = in.getDouble();
+            final double bpm = in.getDouble();
+            final TempoMap tempoMap = TempoMap.read(in);
+            final int numberOfTracks = readSize(in);
+            final List<ParsedTrack> tracks = new ArrayList<>(numberOfTracks);
+            for (int t = 0; t < numberOfTracks; t++) {
+                // the values are checked before they are cast, a corrupted varint can have any value
+                final long channel = readVarint(in);
+                if (channel < 0 || channel > Integer.MAX_VALUE) {
+                    throw new IOException("Unknown channel " + channel);
+                }
+                final long instrument = readVarint(in) + NO_INSTRUMENT;
+                if (instrument < NO_INSTRUMENT || instrument >= InstrumentType.values().length) {
+                    throw new IOException("Unknown instrument " + instrument);
+                }
+                final int size = readSize(in);
+                final NoteColumns notes = new NoteColumns(size);
+                long start = 0;
+                for (int i = 0; i < size; i++) {
+                    start += unZigZag(readVarint(in));
+                    notes.add(start, unZigZag(readVarint(in)), (int) unZigZag(readVarint(in)));
+                }
+                try {
+                    tracks.add(FactoryConfigurator.getFactory((int) channel).createTrack(
+                            instrument == NO_INSTRUMENT ? null : InstrumentType.values()[(int) instrument], notes,
+                            (int) channel));
+                } catch (RuntimeException e) {
+                    throw new IOException("Invalid track on channel " + channel, e);
+                }
+            }
+            return new Song(new String(title, StandardCharsets.UTF_8), duration, tracks, bpm, tempoMap);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated song", e);
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> (Long.SIZE - 1));
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(final ByteBuffer out, final long value) {
+        long rest = value;
+        while ((rest & ~VARINT_MASK) != 0) {
+            out.put((byte) (rest & VARINT_MASK | VARINT_MORE));
+            rest >>>= VARINT_BITS;
+        }
+        out.put((byte) rest);
+    }
+
+    private static int readSize(final ByteBuffer in) throws IOException {
+        final long size = readVarint(in);
+        if (size < 0 || size > in.remaining()) {
+            throw new IOException("Truncated song");
+        }
+        return (int) size;
+    }
+
+    private static long readVarint(final ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += VARINT_BITS) {
+            final byte b = in.get();
+            value |= (long) (b & VARINT_MASK) << shift;
+            if ((b & VARINT_MORE) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+}
@@ -0,0 +1,206 @@
+package it.dukemania.midi;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The tempo changes of a song, as segments of constant tempo.
+ * Every segment knows the tick and the microsecond at which it starts, so a time can be converted
+ * with a binary search over the segments.
+ */
+public final class TempoMap {
+
+    private static final int DEFAULT_TEMPO = 500_000;
+    private static final double MICROSEC_PER_MIN = 60_000_000d;
+
+    private final double resolution;
+    private final long[] ticks;
+    private final long[] micros;
+    private final int[] tempos;
+
+    /**
+     * Create the tempo map of a song whose time is expressed in pulses per quarter note.
+     * @param resolution how many ticks compose a quarter note
+     * @param changes the tempo changes in order of tick, the first value of each one is its tick
+     * and the second the microseconds per quarter note from that tick on
+     */
+    public TempoMap(final int resolution, final List<long[]> changes) {
+        final long[] changeTicks = new long[changes.size() + 1];
+        final long[] changeMicros = new long[changes.size() + 1];
+        final int[] changeTempos = new int[changes.size() + 1];
+        changeTempos[0] = DEFAULT_TEMPO;
+        int last = 0;
+        for (final long[] change : changes) {
+            final long start = changeMicros[last]
+                    + (long) ((double) (change[0] - changeTicks[last]) * changeTempos[last] / resolution);
+            // a change at the same tick of the previous one replaces it
+            if (change[0] > changeTicks[last]) {
+                last++;
+            }
+            changeTicks[last] = change[0];
+            changeMicros[last] = start;
+            changeTempos[last] = (int) change[1];
+        }
+        this.resolution = resolution;
+        this.ticks = Arrays.copyOf(changeTicks, last + 1);
+        this.micros = Arrays.copyOf(changeMicros, last + 1);
+        this.tempos = Arrays.copyOf(changeTempos, last + 1);
+    }
+
+    private TempoMap(final double resolution, final long[] ticks, final long[] micros, final int[] tempos) {
+        this.resolution = resolution;
+        this.ticks = ticks;
+        this.micros = micros;
+        this.tempos = tempos;
+    }
+
+    /**
+     * Create the tempo map of a song with a constant tempo.
+     * @param bpm the BPM of the song, if it is not positive the default 120 BPM is used
+     * @return the tempo map, with one tick for each quarter note
+     */
+    public static TempoMap ofBPM(final double bpm) {
+        return new TempoMap(1, new long[] {0}, new long[] {0},
+                new int[] {bpm > 0 ? (int) Math.round(MICROSEC_PER_MIN / bpm) : DEFAULT_TEMPO});
+    }
+
+    /**
+     * Create the tempo map of a song whose time is expressed in SMPTE frames, which has no tempo changes.
+     * @param framesPerSecond the frames in a second
+     * @param ticksPerFrame the ticks in a frame
+     * @return the tempo map
+     */
+    public static TempoMap ofSMPTE(final double framesPerSecond, final int ticksPerFrame) {
+        return new TempoMap(framesPerSecond * ticksPerFrame / 1_000_000d * DEFAULT_TEMPO,
+                new long[] {0}, new long[] {0}, new int[] {DEFAULT_TEMPO});
+    }
+
+    /**
+     * Create a copy of the map where the first tick is played after a certain delay.
+     * @param offset the delay in microseconds
+     * @return the shifted tempo map
+     */
+    public TempoMap shift(final long offset) {
+        return new TempoMap(resolution, ticks, Arrays.stream(micros).map(m -> m + offset).toArray(), tempos);
+    }
+
+    private long toMicroseconds(final int segment, final long tick) {
+        return micros[segment] + (long) ((double) (tick - ticks[segment]) * tempos[segment] / resolution);
+    }
+
+    /**
+     * Converts a tick to microseconds, following every tempo change before it.
+     * @param tick the tick
+     * @return the microseconds
+     */
+    public long toMicroseconds(final long tick) {
+        return toMicroseconds(segmentAtTick(tick), tick);
+    }
+
+    /**
+     * Converts a time in microseconds to the tick that is played at that time.
+     * @param time the microseconds
+     * @return the tick
+     */
+    public long toTick(final long time) {
+        final int segment = segmentAtTime(time);
+        return ticks[segment] + (long) ((double) (time - micros[segment]) * resolution / tempos[segment]);
+    }
+
+    /**
+     * Returns the BPM of the song at a certain time.
+     * @param time the microseconds
+     * @return the BPM
+     */
+    public double getBPM(final long time) {
+        return MICROSEC_PER_MIN / tempos[segmentAtTime(time)];
+    }
+
+    /**
+     * Returns the number of segments of constant tempo, there is always at least one segment.
+     * @return the number of segments
+     */
+    public int getSegments() {
+        return ticks.length;
+    }
+
+    /**
+     * Returns the microsecond at which a segment of constant tempo starts.
+     * @param segment the index of the segment
+     * @return the microseconds
+     */
+    public long getSegmentStart(final int segment) {
+        return micros[segment];
+    }
+
+    /**
+     * Returns the BPM of a segment of constant tempo.
+     * @param segment the index of the segment
+     * @return the BPM
+     */
+    public double getSegmentBPM(final int segment) {
+        return MICROSEC_PER_MIN / tempos[segment];
+    }
+
+    /**
+     * Returns how many bytes are written by write.
+     * @return the number of bytes
+     */
+    int getEncodedLength() {
+        return Double.BYTES + Integer.BYTES + ticks.length * (Long.BYTES + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Writes the map in a binary form that can be read back with read.
+     * @param out where the map is written
+     */
+    void write(final ByteBuffer out) {
+        out.putDouble(resolution);
+        out.putInt(ticks.length);
+        for (int i = 0; i < ticks.length; i++) {
+            out.putLong(ticks[i]);
+            out.putLong(micros[i]);
+            out.putInt(tempos[i]);
+        }
+    }
+
+    /**
+     * Reads a map written by write.
+     * @param in where the map is read
+     * @return the tempo map
+     * @throws IOException if the bytes are not a tempo map
+     */
+    static TempoMap read(final ByteBuffer in) throws IOException {
+        try {
+            final double resolution = in.getDouble();
+            final int segments = in.getInt();
+            if (segments < 1 || segments > in.remaining()) {
+                throw new IOException("Wrong number of segments: " + segments);
+            }
+            final long[] ticks = new long[segments];
+            final long[] micros = new long[segments];
+            final int[] tempos = new int[segments];
+            for (int i = 0; i < segments; i++) {
+                ticks[i] = in.getLong();
+                micros[i] = in.getLong();
+                tempos[i] = in.getInt();
+            }
+            return new TempoMap(resolution, ticks, micros, tempos);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated tempo map", e);
+        }
+    }
+
+    private int segmentAtTick(final long tick) {
+        final int index = Arrays.binarySearch(ticks, tick);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    private int segmentAtTime(final long time) {
+        final int index = Arrays.binarySearch(micros, time);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+}
@@ -3,14 +3,19 @@ package it.dukemania.midi;
 import static org.junit.Assert.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.sound.midi.InvalidMidiDataException;
@@ -23,7 +28,14 @@ import javax.sound.midi.Track;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+
 import it.dukemania.audioengine.DrumSamples;
+import it.dukemania.model.serializers.ConfigurationsModel;
+import it.dukemania.model.serializers.SharedMapper;
+import it.dukemania.model.serializers.leaderboard.SongLeaderBoard;
+import it.dukemania.model.serializers.song.SongInfo;
+import it.dukemania.model.serializers.synthesizer.SynthInfo;
 
 class TestMidiParser {
 
@@ -121,4 +133,310 @@ class TestMidiParser {
         assertEquals(song2.getTracks().get(1).getNotes().size(), 3);
     }
 
+    /**
+     * this test makes sure that the streaming parser reads the notes in order of start time.
+     * @throws InvalidMidiDataException
+     * @throws IOException
+     */
+    @Test
+    void testMidiStream() throws InvalidMidiDataException, IOException {
+        final int notes = 50_000;
+        Sequence seq = new Sequence(Sequence.PPQ, 100, 2);
+        Track[] tracks = seq.getTracks();
+        // two tracks with interleaved notes, and two notes of the same pitch open at the same time
+        for (int n = 0; n < notes; n++) {
+            final Track t = tracks[n % 2];
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, n % 2, 40 + n % 40, 7), n * 10L));
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, n % 2, 40 + n % 40, 0), n * 10L + 5 + n % 3));
+        }
+        tracks[0].add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 5, 60, 7), notes * 10L));
+        tracks[0].add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 5, 60, 7), notes * 10L + 1));
+        tracks[0].add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 5, 60, 0), notes * 10L + 20));
+        tracks[0].add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 5, 60, 0), notes * 10L + 30));
+        // a note that is never closed
+        tracks[1].add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 6, 61, 7), notes * 10L));
+        File f = new File("Stream.mid");
+        MidiSystem.write(seq, 1, f);
+
+        final MidiStream stream = MidiStream.open(f);
+        final double microsecPerTick = (double) stream.getMicrosecondLength() / (notes * 10L + 30);
+        assertEquals(MidiSystem.getSequence(f).getMicrosecondLength(), stream.getMicrosecondLength());
+        long last = -1;
+        for (int n = 0; n < notes; n++) {
+            assertTrue(stream.nextNote());
+            assertTrue(stream.getStartTime() >= last);
+            last = stream.getStartTime();
+            assertEquals(n % 2 + 1, stream.getChannel());
+            assertEquals(40 + n % 40, stream.getIdentifier());
+            assertEquals((long) ((n * 10L + 5 + n % 3) * microsecPerTick) - (long) (n * 10L * microsecPerTick),
+                    stream.getDuration());
+        }
+        // the first note off closes the oldest note of the same pitch
+        assertTrue(stream.nextNote());
+        assertEquals(6, stream.getChannel());
+        assertEquals((long) ((notes * 10L + 20) * microsecPerTick) - (long) (notes * 10L * microsecPerTick),
+                stream.getDuration());
+        assertTrue(stream.nextNote());
+        assertEquals((long) ((notes * 10L + 30) * microsecPerTick) - (long) ((notes * 10L + 1) * microsecPerTick),
+                stream.getDuration());
+        assertTrue(!stream.nextNote());
+        f.delete();
+    }
+
+    /**
+     * this test makes sure that the notes follow every tempo change of the song.
+     * @throws InvalidMidiDataException
+     * @throws IOException
+     */
+    @Test
+    void testTempoMap() throws InvalidMidiDataException, IOException {
+        Sequence seq = new Sequence(Sequence.PPQ, 100, 1);
+        Track t = seq.getTracks()[0];
+        // 120 BPM for the first quarter, 60 BPM from then on
+        t.add(new MidiEvent(new MetaMessage(0X51, new byte[] {(byte) 0x07, (byte) 0xA1, (byte) 0x20 }, 3), 0L));
+        t.add(new MidiEvent(new MetaMessage(0X51, new byte[] {(byte) 0x0F, (byte) 0x42, (byte) 0x40 }, 3), 100L));
+        t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 7), 50L));
+        t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), 150L));
+        t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 62, 7), 200L));
+        t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 62, 0), 300L));
+        File f = new File("Tempo.mid");
+        MidiSystem.write(seq, 0, f);
+        Song song = MidiParser.getInstance().parse(f);
+        final long offset = 3_000_000;
+        List<AbstractNote> notes = song.getTracks().get(0).getNotes();
+        assertEquals(offset + 250_000, notes.get(0).getStartTime());
+        assertEquals(250_000 + 500_000, (long) notes.get(0).getDuration().get());
+        assertEquals(offset + 1_500_000, notes.get(1).getStartTime());
+        assertEquals(1_000_000, (long) notes.get(1).getDuration().get());
+        assertEquals(MidiSystem.getSequence(f).getMicrosecondLength() + offset, song.getDuration(), 0.00001);
+        assertEquals(60, song.getBPM(), 0.00001);
+
+        TempoMap map = song.getTempoMap();
+        assertEquals(2, map.getSegments());
+        assertEquals(offset + 500_000, map.getSegmentStart(1));
+        assertEquals(120, map.getBPM(offset + 499_999), 0.00001);
+        assertEquals(60, map.getBPM(offset + 500_000), 0.00001);
+        assertEquals(120, map.getSegmentBPM(0), 0.00001);
+        assertEquals(200, map.toTick(offset + 1_500_000));
+        assertEquals(offset + 1_500_000, map.toMicroseconds(200));
+        assertEquals(offset, map.toMicroseconds(0));
+        assertEquals(120, TempoMap.ofBPM(0).getBPM(0), 0.00001);
+        f.delete();
+    }
+
+    @Test
+    void testNoteColumns() throws InvalidMidiDataException, IOException {
+        Sequence seq = new Sequence(Sequence.PPQ, 100, 1);
+        Track t = seq.getTracks()[0];
+        t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 9, 30, 7), 0L));
+        t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 9, 30, 0), 10L));
+        final int quantity = 200;
+        for (int i = 0; i < quantity; i++) {
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 40 + i % 20, 7), i * 10L));
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 40 + i % 20, 0), i * 10L + 5));
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 9, 36, 7), i * 10L));
+            t.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 9, 36, 0), i * 10L + 1));
+        }
+        File f = new File("Columns.mid");
+        MidiSystem.write(seq, 0, f);
+        Song song = MidiParser.getInstance().parse(f);
+        // the percussion with an identifier out of range is not in the track
+        song.getTracks().forEach(track -> assertEquals(quantity, track.getNumberOfNotes()));
+        ParsedTrack track = song.getTracks().get(0);
+        NoteColumns columns = track.getColumns();
+        NoteColumns.Cursor cursor = columns.cursor();
+        int index = 0;
+        while (cursor.next()) {
+            assertEquals(40 + index % 20, cursor.getIdentifier());
+            assertEquals(columns.getStartTime(index), cursor.getStartTime());
+            assertEquals(25_000, cursor.getDuration());
+            index++;
+        }
+        assertEquals(quantity, index);
+        assertTrue(!cursor.next());
+        cursor.reset();
+        assertTrue(cursor.next());
+        assertEquals(0, cursor.getIndex());
+
+        // the notes are created from the columns, then the columns follow the notes
+        List<AbstractNote> notes = track.getNotes();
+        assertEquals(quantity, notes.size());
+        for (int i = 0; i < quantity; i++) {
+            assertEquals(columns.getStartTime(i), notes.get(i).getStartTime());
+            assertEquals(columns.getDuration(i), (long) notes.get(i).getDuration().get());
+            assertEquals(columns.getIdentifier(i), notes.get(i).getIdentifier());
+        }
+        assertTrue(song.getTracks().get(1).getNotes().stream().allMatch(n -> n instanceof PercussionNote));
+        assertSame(columns, track.getColumns());
+        track.deleteNote(notes.get(0));
+        assertEquals(quantity - 1, track.getColumns().size());
+        assertSame(track.getColumns(), track.getColumns());
+        assertEquals(notes.get(0).getStartTime(), track.getColumns().getStartTime(0));
+        assertEquals(25_000L, (long) Collections.max(((KeyboardTrack) track).getNotesMaxDuration().values()));
+        f.delete();
+    }
+
+    // saves a song with a single track without notes and replaces the end of its file, which must then be discarded
+    private static void assertCorrupted(final SongCache cache, final Path directory, final String hash, final Song song,
+            final int replaced, final byte[] end) throws IOException {
+        cache.put(hash, song);
+        Path cached = directory.resolve(hash + SongCache.EXTENSION);
+        byte[] encoded = Files.readAllBytes(cached);
+        // the file ends with the channel, the instrument and the number of notes of the track
+        assertEquals(song.getTracks().get(0).getChannel(), encoded[encoded.length - 3]);
+        byte[] corrupted = Arrays.copyOf(encoded, encoded.length - replaced + end.length);
+        System.arraycopy(end, 0, corrupted, encoded.length - replaced, end.length);
+        Files.write(cached, corrupted);
+        assertTrue(new SongCache(directory, 1).get(hash).isEmpty());
+        assertTrue(!Files.exists(cached));
+    }
+
+    @Test
+    void testSongCache() throws InvalidMidiDataException, IOException {
+        File f = createFile(4, 1);
+        Song song = MidiParser.getInstance().parse(f);
+        Path directory = Files.createTempDirectory("songs");
+        String hash = "0123456789abcdef";
+        SongCache cache = new SongCache(directory, 1);
+        assertTrue(cache.get(hash).isEmpty());
+        Song parsed = cache.getOrParse(hash, f);
+        assertTrue(Files.exists(directory.resolve(hash + SongCache.EXTENSION)));
+
+        // a new cache reads the song from the folder, the one in memory is a copy which can be modified
+        for (Song cached : List.of(new SongCache(directory, 1).get(hash).get(), cache.getOrParse(hash, f))) {
+            assertEquals(song.getTitle(), cached.getTitle());
+            assertEquals(song.getDuration(), cached.getDuration(), 0.00001);
+            assertEquals(song.getBPM(), cached.getBPM(), 0.00001);
+            assertEquals(song.getTempoMap().toMicroseconds(1000), cached.getTempoMap().toMicroseconds(1000));
+            assertEquals(song.getTracks().size(), cached.getTracks().size());
+            for (int t = 0; t < song.getTracks().size(); t++) {
+                ParsedTrack expected = song.getTracks().get(t);
+                ParsedTrack actual = cached.getTracks().get(t);
+                assertEquals(expected.getClass(), actual.getClass());
+                assertEquals(expected.getChannel(), actual.getChannel());
+                if (expected instanceof KeyboardTrack) {
+                    assertEquals(((KeyboardTrack) expected).getInstrument(), ((KeyboardTrack) actual).getInstrument());
+                }
+                for (int i = 0; i < expected.getNumberOfNotes(); i++) {
+                    assertEquals(expected.getColumns().getStartTime(i), actual.getColumns().getStartTime(i));
+                    assertEquals(expected.getColumns().getDuration(i), actual.getColumns().getDuration(i));
+                    assertEquals(expected.getColumns().getIdentifier(i), actual.getColumns().getIdentifier(i));
+                }
+            }
+            assertTrue(cached != parsed);
+        }
+        ((KeyboardTrack) parsed.getTracks().get(0)).setInstrument(InstrumentType.APPLAUSE);
+        assertEquals(((KeyboardTrack) song.getTracks().get(0)).getInstrument(),
+                ((KeyboardTrack) cache.get(hash).get().getTracks().get(0)).getInstrument());
+
+        // a corrupted file is removed and the song is parsed again
+        Files.write(directory.resolve(hash + SongCache.EXTENSION), new byte[] {1, 2, 3});
+        assertTrue(new SongCache(directory, 1).get(hash).isEmpty());
+        assertTrue(!Files.exists(directory.resolve(hash + SongCache.EXTENSION)));
+
+        // a corrupted channel or instrument is rejected, even if its varint is valid
+        final int channel = 5;
+        Song empty = new Song("empty", 0, List.of(FactoryConfigurator.getFactory(channel)
+                .createTrack(InstrumentType.values()[0], new NoteColumns(0), channel)), song.getBPM(), song.getTempoMap());
+        // an instrument that is cast to an index below the tracks without instrument
+        assertCorrupted(cache, directory, hash, empty, 2,
+                new byte[] {(byte) 0xfe, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 0});
+        // a negative channel
+        assertCorrupted(cache, directory, hash, empty, 3, new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01, 1, 0});
+        Files.delete(directory);
+        f.delete();
+    }
+
+    @Test
+    public void testInstrumentRegistry() {
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        // every instrument of a synthesizer is indexed, and the configuration is not read again
+        registry.getSynthesizers().forEach((instrument, synth) -> {
+            assertTrue(synth.getAssociatedInstruments().contains(instrument));
+            assertTrue(registry.getSynthInfo(instrument) == synth);
+            assertTrue(new Instrument(instrument).getSynthetizer() == synth.getSynth());
+            assertEquals(new Instrument(instrument).getName(), synth.getName());
+        });
+        // the instruments without a synthesizer and the tracks without an instrument use the default one
+        assertEquals(registry.getSynthInfo(null).getName(), "default");
+        Arrays.stream(InstrumentType.values())
+              .filter(i -> !registry.getSynthesizers().containsKey(i))
+              .forEach(i -> assertEquals(new Instrument(i).getName(), "default"));
+    }
+
+    private static String synthesizers(final String violinSynthesizer) {
+        String values = "\"values\":{\"enveloper\":{\"attackMS\":10,\"attackVolume\":1.0,\"releaseMS\":100},"
+                + "\"wavetables\":[\"Sine\"],\"offsets\":[1.0]}";
+        return "[{\"presetName\":\"default\",\"associatedInstruments\":[]," + values + "},"
+                + "{\"presetName\":\"" + violinSynthesizer + "\",\"associatedInstruments\":[\"VIOLIN\"]," + values + "}]";
+    }
+
+    // a version of the file with a different time and length, as if it was saved again
+    private static void edit(final File file, final String content) throws IOException {
+        long lastModified = file.lastModified();
+        Files.writeString(file.toPath(), content);
+        assertTrue(file.setLastModified(lastModified + 2000));
+    }
+
+    /**
+     * this test makes sure that the configuration of the synthesizers is read again when its file changes,
+     * also when it changes while it is being read, and that an incomplete file keeps the previous configuration.
+     * @throws IOException
+     */
+    @Test
+    public void testInstrumentRegistryReload() throws IOException {
+        Path directory = Files.createTempDirectory("synthesizers");
+        File file = directory.resolve("synthesizers_config.json").toFile();
+        Files.writeString(file.toPath(), synthesizers("lead"));
+        AtomicInteger reads = new AtomicInteger();
+        ConfigurationsModel model = new ConfigurationsModel() {
+            @Override
+            public List<SynthInfo> readSynthesizersConfiguration() throws IOException {
+                List<SynthInfo> configuration = SharedMapper.getInstance().readValue(file,
+                        new TypeReference<List<SynthInfo>>() { });
+                // the file is saved again after it has been parsed but before the read has ended
+                if (reads.incrementAndGet() == 1) {
+                    edit(file, synthesizers("strings"));
+                }
+                return configuration;
+            }
+
+            @Override
+            public List<SongInfo> readSongsConfiguration() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void writeSongsConfiguration(final List<SongInfo> songs) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public List<SongLeaderBoard> readLeaderBoards() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void writeLeaderBoards(final List<SongLeaderBoard> leaderBoards) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        InstrumentRegistry registry = new InstrumentRegistry(model, file, 0);
+        assertEquals("lead", registry.getSynthInfo(InstrumentType.VIOLIN).getName());
+        assertEquals("strings", registry.getSynthInfo(InstrumentType.VIOLIN).getName());
+        assertEquals(2, reads.get());
+        // an unchanged file is not read again
+        assertEquals("strings", registry.getSynthInfo(InstrumentType.VIOLIN).getName());
+        assertEquals(2, reads.get());
+        // a file that is being edited may be incomplete
+        edit(file, synthesizers("broken").substring(0, 50));
+        assertEquals("strings", registry.getSynthInfo(InstrumentType.VIOLIN).getName());
+        edit(file, synthesizers("solo"));
+        assertEquals("solo", registry.getSynthInfo(InstrumentType.VIOLIN).getName());
+        assertEquals("default", registry.getSynthInfo(InstrumentType.CELLO).getName());
+        assertEquals(Collections.singleton(InstrumentType.VIOLIN), registry.getSynthesizers().keySet());
+        Files.delete(file.toPath());
+        Files.delete(directory);
+    }
 }
@@ -15,10 +15,13 @@ import java.util.List;
 
 public class ConfigurationsModelImpl implements ConfigurationsModel {
     private final Storage storage;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper mapper = SharedMapper.getInstance();
     private static final String SONGS_CONFIGURATION_PATH = "configs/song_config.json";
     private static final String SYNTHESIZERS_CONFIGURATION_NAME = "synthesizers_config.json";
-    private static final String SYNTHESIZERS_CONFIGURATION_PATH = "configs/" + SYNTHESIZERS_CONFIGURATION_NAME;
+    /**
+     * The path of the synthesizers configuration in the configuration storage.
+     */
+    public static final String SYNTHESIZERS_CONFIGURATION_PATH = "configs/" + SYNTHESIZERS_CONFIGURATION_NAME;
     private static final String SONGS_LEADERBOARDS_PATH = "configs/users_score.json";
 
     public ConfigurationsModelImpl(final Storage storage) {
@@ -30,7 +33,8 @@ public class ConfigurationsModelImpl implements ConfigurationsModel {
      */
     @Override
     public List<SongInfo> readSongsConfiguration() throws IOException {
-        String json = storage.readFileAsString(SONGS_CONFIGURATION_PATH);
+        //the file is parsed as a stream, without reading it in a string first
+        File json = storage.getAsFile(SONGS_CONFIGURATION_PATH);
 
         JavaType listSongType = mapper.constructType(new TypeReference<List<SongInfo>>() {
         });
@@ -43,7 +47,7 @@ public class ConfigurationsModelImpl implements ConfigurationsModel {
      */
     @Override
     public void writeSongsConfiguration(final List<SongInfo> songs) throws IOException {
-        String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(songs);
+        String json = SharedMapper.getPrettyWriter().writeValueAsString(songs);
         storage.createFileIfNotExists(SONGS_CONFIGURATION_PATH);
         storage.writeStringOnFile(SONGS_CONFIGURATION_PATH, json);
     }
@@ -62,7 +66,7 @@ public class ConfigurationsModelImpl implements ConfigurationsModel {
             } catch (Exception ignored) {
             }
         }
-        String json = storage.readFileAsString(SYNTHESIZERS_CONFIGURATION_PATH);
+        File json = storage.getAsFile(SYNTHESIZERS_CONFIGURATION_PATH);
 
         JavaType listSynthInfoType = mapper.constructType(new TypeReference<List<SynthInfo>>() {
         });
@@ -75,7 +79,7 @@ public class ConfigurationsModelImpl implements ConfigurationsModel {
      */
     @Override
     public List<SongLeaderBoard> readLeaderBoards() throws IOException {
-        String json = storage.readFileAsString(SONGS_LEADERBOARDS_PATH);
+        File json = storage.getAsFile(SONGS_LEADERBOARDS_PATH);
 
         JavaType listSongLeaderBoardType = mapper.constructType(new TypeReference<List<SongLeaderBoard>>() {
         });
@@ -88,7 +92,7 @@ public class ConfigurationsModelImpl implements ConfigurationsModel {
      */
     @Override
     public void writeLeaderBoards(final List<SongLeaderBoard> leaderBoards) throws IOException {
-        String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(leaderBoards);
+        String json = SharedMapper.getPrettyWriter().writeValueAsString(leaderBoards);
         storage.createFileIfNotExists(SONGS_LEADERBOARDS_PATH);
         storage.writeStringOnFile(SONGS_LEADERBOARDS_PATH, json);
     }
@@ -0,0 +1,173 @@
+package it.dukemania.model.serializers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The format of the append-only files of the game, which have a record for each line: the CRC32 of the content of
+ * the record in hexadecimal, a tab and the content, which must not contain line ends.
+ * A line whose checksum doesn't match its content is not valid, as the last line when it has no line end because
+ * the game stopped while it was being written, and it is skipped when the file is read.
+ */
+public final class RecordFile {
+
+    /**
+     * The separator between the checksum and the content of a record, it can also separate the fields of the content.
+     */
+    public static final byte SEPARATOR = '\t';
+    private static final byte LINE_END = '\n';
+    private static final int CHECKSUM_RADIX = 16;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives the valid records of a file.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * Receives a record.
+         * @param content the content of the record
+         * @param position the position of the content in the file
+         */
+        void accept(byte[] content, long position);
+    }
+
+    /**
+     * Writes the content of a new file.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+        /**
+         * Writes the records.
+         * @param out the new file
+         * @throws IOException if the records cannot be written
+         */
+        void write(FileChannel out) throws IOException;
+    }
+
+    private RecordFile() {
+    }
+
+    /**
+     * Creates the line of a record.
+     * @param content the content of the record
+     * @return the line, with its line end
+     */
+    public static byte[] toLine(final byte[] content) {
+        final byte[] checksum = checksum(content, 0, content.length).getBytes(StandardCharsets.US_ASCII);
+        final byte[] line = new byte[checksum.length + 1 + content.length + 1];
+        System.arraycopy(checksum, 0, line, 0, checksum.length);
+        line[checksum.length] = SEPARATOR;
+        System.arraycopy(content, 0, line, checksum.length + 1, content.length);
+        line[line.length - 1] = LINE_END;
+        return line;
+    }
+
+    /**
+     * Returns the position in its line of the last bytes of the content of a record.
+     * @param line the line created by toLine
+     * @param length the number of bytes at the end of the content, or the length of the whole content
+     * @return the position of the bytes
+     */
+    public static int contentOffset(final byte[] line, final int length) {
+        return line.length - 1 - length;
+    }
+
+    /**
+     * Reads all the records of a file from its beginning, skipping the lines that are not valid.
+     * @param channel the file
+     * @param consumer receives the valid records in the order they are in the file
+     * @return the number of lines that are not valid
+     * @throws IOException if the file cannot be read
+     */
+    public static int read(final FileChannel channel, final RecordConsumer consumer) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long position = 0;
+        long lineStart = 0;
+        int invalid = 0;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            final byte[] bytes = buffer.array();
+            int start = 0;
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (bytes[i] == LINE_END) {
+                    line.write(bytes, start, i - start);
+                    if (!accept(line.toByteArray(), lineStart, consumer)) {
+                        invalid++;
+                    }
+                    line.reset();
+                    start = i + 1;
+                    lineStart = position + i + 1;
+                }
+            }
+            line.write(bytes, start, buffer.limit() - start);
+            position += buffer.limit();
+            buffer.clear();
+        }
+        // the last line has not been completely written
+        return line.size() > 0 ? invalid + 1 : invalid;
+    }
+
+    /**
+     * Writes a new file and then replaces another one with it, only when it is complete and flushed to the disk,
+     * so that the other file is never left incomplete.
+     * @param file the file to replace
+     * @param writer writes the content of the new file
+     * @throws IOException if the new file cannot be written, the old one is not changed
+     */
+    public static void replace(final Path file, final RecordWriter writer) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        final Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                null);
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                writer.write(out);
+                out.force(false);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes all the bytes of a buffer.
+     * @param out the file
+     * @param buffer the buffer
+     * @throws IOException if the bytes cannot be written
+     */
+    public static void write(final FileChannel out, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static boolean accept(final byte[] line, final long lineStart, final RecordConsumer consumer) {
+        int separator = 0;
+        while (separator < line.length && line[separator] != SEPARATOR) {
+            separator++;
+        }
+        if (separator == line.length || !new String(line, 0, separator, StandardCharsets.US_ASCII)
+                .equals(checksum(line, separator + 1, line.length - separator - 1))) {
+            return false;
+        }
+        consumer.accept(Arrays.copyOfRange(line, separator + 1, line.length), lineStart + separator + 1);
+        return true;
+    }
+
+    private static String checksum(final byte[] bytes, final int offset, final int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return Long.toString(crc.getValue(), CHECKSUM_RADIX);
+    }
+}
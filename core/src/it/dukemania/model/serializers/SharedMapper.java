@@ -0,0 +1,32 @@
+package it.dukemania.model.serializers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The ObjectMapper used to read and write all the configurations of the game.
+ * Creating a mapper is expensive and it caches the serializers of every type it meets, so the same one is shared
+ * by everything, it can be used by many threads at the same time.
+ */
+public final class SharedMapper {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+
+    private SharedMapper() {
+    }
+
+    /**
+     * @return the mapper shared by all the configurations
+     */
+    public static ObjectMapper getInstance() {
+        return MAPPER;
+    }
+
+    /**
+     * @return a writer of the shared mapper that indents the JSON
+     */
+    public static ObjectWriter getPrettyWriter() {
+        return PRETTY_WRITER;
+    }
+}
@@ -0,0 +1,104 @@
+package it.dukemania.model.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A deserializer that reads an object field by field from the tokens of the parser, without building a tree.
+ * It has no state, so the mapper creates it once and then reuses it for every object of its type.
+ * @param <T> the type of the objects
+ */
+public abstract class StreamingDeserializer<T> extends StdDeserializer<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    protected StreamingDeserializer(final Class<?> vc) {
+        super(vc);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCachable() {
+        return true;
+    }
+
+    /**
+     * Moves a parser that is at the start of an object to its first field.
+     * @param p the parser, at the start of the object or already at its first field
+     * @param ctxt the context of the deserialization
+     * @return the name of the first field, the parser is moved to its value, or null if the object is empty
+     * @throws IOException if the parser is not at the start of an object
+     */
+    protected final String firstField(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.isExpectedStartObjectToken()) {
+            return nextField(p);
+        }
+        if (p.hasToken(JsonToken.FIELD_NAME)) {
+            final String name = p.getCurrentName();
+            p.nextToken();
+            return name;
+        }
+        return (String) ctxt.handleUnexpectedToken(handledType(), p);
+    }
+
+    /**
+     * Moves a parser to the next field of the current object.
+     * @param p the parser, at the value of a field that has been read
+     * @return the name of the next field, the parser is moved to its value, or null at the end of the object
+     * @throws IOException if the JSON is malformed
+     */
+    protected final String nextField(final JsonParser p) throws IOException {
+        final String name = p.nextFieldName();
+        if (name != null) {
+            p.nextToken();
+        }
+        return name;
+    }
+
+    /**
+     * Checks that a field has been found in the object.
+     * @param <V> the type of the value of the field
+     * @param value the value of the field, null if it has not been found
+     * @param name the name of the field
+     * @param ctxt the context of the deserialization
+     * @return the value
+     * @throws IOException if the field has not been found
+     */
+    protected final <V> V required(final V value, final String name, final DeserializationContext ctxt)
+            throws IOException {
+        if (value == null) {
+            return ctxt.reportInputMismatch(this, "Missing field \"%s\"", name);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the elements of an array field.
+     * @param <V> the type of the elements
+     * @param p the parser, at the value of the field
+     * @param name the name of the field
+     * @param type the type of the elements
+     * @param ctxt the context of the deserialization
+     * @return the elements, the parser is moved to the end of the array
+     * @throws IOException if the value of the field is not an array or an element cannot be read
+     */
+    protected final <V> List<V> readArray(final JsonParser p, final String name, final Class<V> type,
+            final DeserializationContext ctxt) throws IOException {
+        if (!p.isExpectedStartArrayToken()) {
+            return ctxt.reportInputMismatch(this, "Field \"%s\" must be an array, found %s", name, p.currentToken());
+        }
+        final List<V> elements = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            elements.add(ctxt.readValue(p, type));
+        }
+        return elements;
+    }
+}
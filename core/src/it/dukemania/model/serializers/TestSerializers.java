@@ -0,0 +1,244 @@
+package it.dukemania.model.serializers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import it.dukemania.midi.InstrumentType;
+import it.dukemania.model.serializers.leaderboard.LeaderboardStore;
+import it.dukemania.model.serializers.leaderboard.SongLeaderBoard;
+import it.dukemania.model.serializers.song.SongConfigStore;
+import it.dukemania.model.serializers.song.SongInfo;
+import it.dukemania.model.serializers.synthesizer.SynthInfo;
+import it.dukemania.util.Pair;
+
+class TestSerializers {
+
+    private static final String SONG = "0123456789abcdef";
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * this test makes sure that the scores are saved and read again, and that the damaged lines are discarded.
+     * @throws IOException
+     */
+    @Test
+    void testLeaderboardStore() throws IOException {
+        Path directory = Files.createTempDirectory("scores");
+        Path log = directory.resolve("configs").resolve("scores.log");
+        LeaderboardStore store = LeaderboardStore.open(log);
+        assertTrue(store.isEmpty());
+        store.submit(SONG, "first", 10);
+        store.submit(SONG, "second", 30);
+        store.submit(SONG, "first", 20);
+        store.submit(SONG, "first", 5);
+        // the names may contain the separators of the log
+        String name = "tab\tnew\nline \u00e8";
+        store.submit(SONG, name, 20);
+        store.submit("other", "first", 100);
+        List<Pair<String, Integer>> expected = List.of(new Pair<>("second", 30), new Pair<>("first", 20),
+                new Pair<>(name, 20));
+        assertEquals(expected, store.getTopScores(SONG, 10));
+        assertEquals(expected.subList(0, 2), store.getTopScores(SONG, 2));
+        assertTrue(store.getTopScores("missing", 10).isEmpty());
+        assertEquals(5, Files.readAllLines(log).size());
+        store.close();
+        assertEquals(expected, LeaderboardStore.open(log).getTopScores(SONG, 10));
+
+        // a line whose checksum is wrong and a line that was cut by a crash are dropped, the log is repaired
+        List<String> lines = Files.readAllLines(log);
+        lines.set(2, lines.get(2).replaceFirst("\t20\t", "\t99\t"));
+        Files.write(log, lines);
+        Files.write(log, lines.get(1).substring(0, 10).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        LeaderboardStore repaired = LeaderboardStore.open(log);
+        assertEquals(List.of(new Pair<>("second", 30), new Pair<>(name, 20), new Pair<>("first", 10)),
+                repaired.getTopScores(SONG, 10));
+        assertEquals(4, Files.readAllLines(log).size());
+        repaired.submit(SONG, "first", 20);
+        repaired.close();
+        assertEquals(expected, LeaderboardStore.open(log).getTopScores(SONG, 10));
+        delete(directory);
+    }
+
+    /**
+     * this test makes sure that the log is compacted and that only the best scores of every song are kept sorted.
+     * @throws IOException
+     */
+    @Test
+    void testLeaderboardCompaction() throws IOException {
+        Path directory = Files.createTempDirectory("scores");
+        Path log = directory.resolve("scores.log");
+        LeaderboardStore store = LeaderboardStore.open(log);
+        // the scores saved by the older versions in the JSON file
+        final int players = LeaderboardStore.TOP_SCORES + 20;
+        Map<String, Integer> scores = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            scores.put("player" + i, i);
+        }
+        String json = SharedMapper.getPrettyWriter().writeValueAsString(List.of(new SongLeaderBoard(SONG, scores),
+                new SongLeaderBoard("other", Map.of("first", 7))));
+        List<SongLeaderBoard> legacy = SharedMapper.getInstance().readValue(json,
+                new TypeReference<List<SongLeaderBoard>>() { });
+        store.importLeaderBoards(legacy);
+        assertEquals(players + 1, Files.readAllLines(log).size());
+        List<Pair<String, Integer>> top = store.getTopScores(SONG, players);
+        assertEquals(LeaderboardStore.TOP_SCORES, top.size());
+        assertEquals(new Pair<>("player" + (players - 1), players - 1), top.get(0));
+        assertEquals(new Pair<>("player20", 20), top.get(LeaderboardStore.TOP_SCORES - 1));
+        assertEquals(List.of(new Pair<>("first", 7)), store.getTopScores("other", 10));
+
+        // a player out of the best scores enters them when the score is improved, the lowest one leaves them
+        store.submit(SONG, "player0", players - 1);
+        top = store.getTopScores(SONG, players);
+        assertEquals(new Pair<>("player0", players - 1), top.get(0));
+        assertEquals(new Pair<>("player21", 21), top.get(LeaderboardStore.TOP_SCORES - 1));
+
+        // every imported line is counted, so the log is compacted as soon as most of its lines are obsolete
+        int improvements = 1;
+        while (improvements <= players + 1) {
+            store.submit(SONG, "player1", players + improvements++);
+        }
+        assertEquals(players + 1, Files.readAllLines(log).size());
+        store.close();
+        LeaderboardStore reopened = LeaderboardStore.open(log);
+        assertEquals(new Pair<>("player1", players * 2 + 1), reopened.getTopScores(SONG, 1).get(0));
+        assertEquals(LeaderboardStore.TOP_SCORES, reopened.getTopScores(SONG, players).size());
+        assertEquals(List.of(new Pair<>("first", 7)), reopened.getTopScores("other", 10));
+        reopened.compact();
+        assertEquals(players + 1, Files.readAllLines(log).size());
+        reopened.close();
+        delete(directory);
+    }
+
+    private static SongInfo song(final String hash, final String title) {
+        return new SongInfo(title, hash, 1.5, List.of(), 120);
+    }
+
+    private static String title(final SongConfigStore store, final String hash) throws IOException {
+        Optional<SongInfo> song = store.get(hash);
+        assertTrue(song.isPresent());
+        assertEquals(hash, song.get().getSongHash());
+        return song.get().getTitle();
+    }
+
+    /**
+     * this test makes sure that the configurations are read again after they are updated and the file is reopened,
+     * and that the damaged lines are discarded.
+     * @throws IOException
+     */
+    @Test
+    void testSongConfigStore() throws IOException {
+        Path directory = Files.createTempDirectory("configs");
+        Path file = directory.resolve("configs").resolve("song_config.jsonl");
+        SongConfigStore store = SongConfigStore.open(file, SharedMapper.getInstance());
+        assertTrue(store.isEmpty());
+        assertTrue(store.get(SONG).isEmpty());
+        store.putAll(List.of(song(SONG, "first"), song("other", "tab\tnew\nline \u00e8")));
+        store.put(song(SONG, "second"));
+        assertEquals("second", title(store, SONG));
+        assertEquals(3, Files.readAllLines(file).size());
+        store.close();
+        store = SongConfigStore.open(file, SharedMapper.getInstance());
+        assertEquals("second", title(store, SONG));
+        assertEquals("tab\tnew\nline \u00e8", title(store, "other"));
+        // the offsets of the lines appended after reopening the file are right too
+        store.put(song("third", "third"));
+        store.put(song("other", "other"));
+        assertEquals("third", title(store, "third"));
+        assertEquals("other", title(store, "other"));
+        store.close();
+
+        // a line whose checksum is wrong and a line that was cut by a crash are dropped, the file is repaired
+        List<String> lines = Files.readAllLines(file);
+        lines.set(2, lines.get(2).replace("second", "secunD"));
+        Files.write(file, lines);
+        Files.write(file, lines.get(0).substring(0, 20).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        store = SongConfigStore.open(file, SharedMapper.getInstance());
+        assertEquals("first", title(store, SONG));
+        assertEquals("third", title(store, "third"));
+        assertEquals("other", title(store, "other"));
+        assertEquals(3, Files.readAllLines(file).size());
+        store.put(song(SONG, "fourth"));
+        store.close();
+        store = SongConfigStore.open(file, SharedMapper.getInstance());
+        assertEquals("fourth", title(store, SONG));
+        store.close();
+        delete(directory);
+    }
+
+    /**
+     * this test makes sure that the file of the configurations is compacted keeping only the last ones.
+     * @throws IOException
+     */
+    @Test
+    void testSongConfigCompaction() throws IOException {
+        Path directory = Files.createTempDirectory("configs");
+        Path file = directory.resolve("song_config.jsonl");
+        SongConfigStore store = SongConfigStore.open(file, SharedMapper.getInstance());
+        final int songs = 10;
+        store.putAll(IntStream.range(0, songs).mapToObj(i -> song("song" + i, "title" + i)).collect(Collectors.toList()));
+        int updates = 0;
+        while (Files.readAllLines(file).size() >= songs + updates) {
+            store.put(song("song0", "update" + updates++));
+        }
+        assertEquals(songs, Files.readAllLines(file).size());
+        assertEquals("update" + (updates - 1), title(store, "song0"));
+        assertEquals("title" + (songs - 1), title(store, "song" + (songs - 1)));
+        store.put(song("song1", "updated"));
+        store.compact();
+        assertEquals(songs, Files.readAllLines(file).size());
+        store.close();
+        store = SongConfigStore.open(file, SharedMapper.getInstance());
+        assertEquals("updated", title(store, "song1"));
+        assertEquals("update" + (updates - 1), title(store, "song0"));
+        assertEquals("title2", title(store, "song2"));
+        store.close();
+        delete(directory);
+    }
+
+    /**
+     * this test makes sure that the array fields of the configurations are rejected when they are not arrays.
+     * @throws IOException
+     */
+    @Test
+    void testArrayFields() throws IOException {
+        String song = "{\"songName\":\"song\",\"fileHash\":\"" + SONG + "\",\"duration\":1.5,\"BPM\":120,\"tracks\":%s}";
+        assertTrue(SharedMapper.getInstance().readValue(String.format(song, "[]"), SongInfo.class).getTracks().isEmpty());
+        for (String tracks : List.of("null", "{}", "3", "\"tracks\"")) {
+            assertThrows(MismatchedInputException.class,
+                () -> SharedMapper.getInstance().readValue(String.format(song, tracks), SongInfo.class));
+        }
+        String synthesizer = "{\"presetName\":\"default\",\"associatedInstruments\":%s,\"values\":{\"enveloper\":"
+                + "{\"attackMS\":10,\"attackVolume\":1.0,\"releaseMS\":100},\"wavetables\":[\"Sine\"],\"offsets\":[1.0]}}";
+        assertEquals(List.of(InstrumentType.VIOLIN), SharedMapper.getInstance().readValue(
+                String.format(synthesizer, "[\"VIOLIN\"]"), SynthInfo.class).getAssociatedInstruments());
+        for (String instruments : List.of("null", "{}", "\"VIOLIN\"")) {
+            assertThrows(MismatchedInputException.class,
+                () -> SharedMapper.getInstance().readValue(String.format(synthesizer, instruments), SynthInfo.class));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package it.dukemania.model.serializers.leaderboard;
+
+import it.dukemania.model.serializers.RecordFile;
+import it.dukemania.util.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the best score of every player for every song in an append-only RecordFile, one record for each score.
+ * A new best score only appends its line to the log, which is flushed to the disk before returning,
+ * and the scores of all the songs are indexed in memory, so reading the leaderboard of a song never reads the file:
+ * the best TOP_SCORES scores of every song are kept sorted, so they are not sorted again when they are read.
+ * A line that has not been completely written, for example because the game crashed, or whose checksum is wrong
+ * is discarded when the log is opened. The log is rewritten with only the best scores when most of its lines are obsolete.
+ */
+public final class LeaderboardStore {
+
+    /**
+     * The number of best scores kept sorted for every song, the most that can be read with getTopScores.
+     */
+    public static final int TOP_SCORES = 100;
+    private static final String SEPARATOR = String.valueOf((char) RecordFile.SEPARATOR);
+    private static final int FIELDS = 3;
+    private static final int MIN_RECORDS_TO_COMPACT = 64;
+    // from the highest score, players with the same score in alphabetical order
+    private static final Comparator<Pair<String, Integer>> RANKING = Comparator.<Pair<String, Integer>, Integer>comparing(
+            Pair::getY, Comparator.reverseOrder()).thenComparing(Pair::getX);
+
+    private final Path logFile;
+    private final Map<String, Map<String, Integer>> scores = new HashMap<>();
+    private final Map<String, NavigableSet<Pair<String, Integer>>> topScores = new HashMap<>();
+    private FileChannel log;
+    private int records;
+
+    private LeaderboardStore(final Path logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * Opens the log of the scores, reading all of them in memory. The log is created if it doesn't exist.
+     * @param logFile the file of the log
+     * @return the store
+     * @throws IOException if the log exists but cannot be read or repaired
+     */
+    public static LeaderboardStore open(final Path logFile) throws IOException {
+        final LeaderboardStore store = new LeaderboardStore(logFile);
+        final boolean damaged = store.load();
+        if (damaged || store.isWorthCompacting()) {
+            store.compact();
+        } else {
+            store.openLog();
+        }
+        return store;
+    }
+
+    /**
+     * @return true if no score has been saved
+     */
+    public synchronized boolean isEmpty() {
+        return scores.isEmpty();
+    }
+
+    /**
+     * Saves the score of a player, if it is better than the best one the player has already made on the same song.
+     * @param songHash the hash of the song
+     * @param playerName the name of the player
+     * @param score the score
+     * @throws IOException if the score cannot be written, it is still kept in memory
+     */
+    public synchronized void submit(final String songHash, final String playerName, final int score) throws IOException {
+        if (!setScore(songHash, playerName, score)) {
+            return;
+        }
+        write(ByteBuffer.wrap(toLine(songHash, playerName, score)), 1);
+        log.force(false);
+        if (isWorthCompacting()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // the score has been saved, the log is compacted after one of the next scores
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Saves all the scores of some leaderboards with a single write, keeping the best score of every player.
+     * @param leaderBoards the leaderboards
+     * @throws IOException if the scores cannot be written, they are still kept in memory
+     */
+    public synchronized void importLeaderBoards(final List<SongLeaderBoard> leaderBoards) throws IOException {
+        final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int count = 0;
+        for (final SongLeaderBoard board : leaderBoards) {
+            for (final Map.Entry<String, Integer> score : board.getUsersScore().entrySet()) {
+                if (setScore(board.getSongHash(), score.getKey(), score.getValue())) {
+                    lines.writeBytes(toLine(board.getSongHash(), score.getKey(), score.getValue()));
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            write(ByteBuffer.wrap(lines.toByteArray()), count);
+            log.force(false);
+        }
+    }
+
+    /**
+     * Returns the best scores made on a song, from the highest.
+     * @param songHash the hash of the song
+     * @param limit the maximum number of scores, no more than TOP_SCORES are returned
+     * @return the name of each player with their best score
+     */
+    public synchronized List<Pair<String, Integer>> getTopScores(final String songHash, final int limit) {
+        final NavigableSet<Pair<String, Integer>> top = topScores.get(songHash);
+        return top == null ? List.of() : top.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Rewrites the log with only the best score of every player. The new log replaces the old one only when it is
+     * complete, so the scores are never lost.
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        closeLog();
+        final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        scores.forEach((song, players) -> players.forEach((player, score) -> lines.writeBytes(toLine(song, player, score))));
+        try {
+            RecordFile.replace(logFile, out -> RecordFile.write(out, ByteBuffer.wrap(lines.toByteArray())));
+        } finally {
+            openLog();
+        }
+        records = scores.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Closes the log, the store cannot save other scores until it is compacted.
+     * @throws IOException if the log cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        closeLog();
+    }
+
+    // returns true if some lines of the log are damaged
+    private boolean load() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            return RecordFile.read(channel, (content, position) -> {
+                final String[] fields = new String(content, StandardCharsets.UTF_8).split(SEPARATOR, FIELDS);
+                if (fields.length != FIELDS) {
+                    throw new IllegalArgumentException("A score needs " + FIELDS + " fields");
+                }
+                setScore(fields[1], URLDecoder.decode(fields[2], StandardCharsets.UTF_8), Integer.parseInt(fields[0]));
+                records++;
+            }) > 0;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IllegalArgumentException e) {
+            // the checksum was right, so the line has been written by another version of the game
+            throw new IOException("Unknown score format in " + logFile, e);
+        }
+    }
+
+    private boolean isWorthCompacting() {
+        final int live = scores.values().stream().mapToInt(Map::size).sum();
+        return records >= MIN_RECORDS_TO_COMPACT && records > live * 2;
+    }
+
+    private boolean setScore(final String songHash, final String playerName, final int score) {
+        final Map<String, Integer> players = scores.computeIfAbsent(songHash, s -> new HashMap<>());
+        final Integer best = players.get(playerName);
+        if (best != null && best >= score) {
+            return false;
+        }
+        players.put(playerName, score);
+        // the scores of a player only grow, so a score that leaves the top ones can only come back when it is improved
+        final NavigableSet<Pair<String, Integer>> top = topScores.computeIfAbsent(songHash, s -> new TreeSet<>(RANKING));
+        if (best != null) {
+            top.remove(new Pair<>(playerName, best));
+        }
+        top.add(new Pair<>(playerName, score));
+        if (top.size() > TOP_SCORES) {
+            top.pollLast();
+        }
+        return true;
+    }
+
+    private void write(final ByteBuffer buffer, final int lines) throws IOException {
+        if (log == null) {
+            throw new IOException("The leaderboard log is closed");
+        }
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        records += lines;
+    }
+
+    private void openLog() throws IOException {
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private static byte[] toLine(final String songHash, final String playerName, final int score) {
+        return RecordFile.toLine((score + SEPARATOR + songHash + SEPARATOR + encode(playerName))
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the name may contain the separator or a line end, so it is saved URL encoded
+    private static String encode(final String playerName) {
+        return URLEncoder.encode(playerName, StandardCharsets.UTF_8);
+    }
+}
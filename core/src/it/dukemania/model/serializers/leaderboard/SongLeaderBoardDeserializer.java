@@ -2,18 +2,14 @@ package it.dukemania.model.serializers.leaderboard;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.ObjectCodec;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import it.dukemania.model.serializers.StreamingDeserializer;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
-public class SongLeaderBoardDeserializer extends StdDeserializer<SongLeaderBoard> {
+public class SongLeaderBoardDeserializer extends StreamingDeserializer<SongLeaderBoard> {
 
     /**
      * 
@@ -21,7 +17,7 @@ public class SongLeaderBoardDeserializer extends StdDeserializer<SongLeaderBoard
     private static final long serialVersionUID = 3313707952470700797L;
 
     public SongLeaderBoardDeserializer() {
-        this(null);
+        this(SongLeaderBoard.class);
     }
 
     public SongLeaderBoardDeserializer(final Class<SongLeaderBoard> t) {
@@ -31,19 +27,21 @@ public class SongLeaderBoardDeserializer extends StdDeserializer<SongLeaderBoard
     @Override
     public final SongLeaderBoard deserialize(final JsonParser p, final DeserializationContext ctxt)
             throws IOException, JsonProcessingException {
-
-        ObjectCodec codec = p.getCodec();
-        JsonNode node = codec.readTree(p);
-
-        ObjectMapper mapper = new ObjectMapper();
-
-        JsonNode scoresNode = node.get("scores");
-
-        JavaType mapLeaderBoardType = mapper.constructType(new TypeReference<Map<String, Integer>>() {
-        });
-
-        Map<String, Integer> usersScore = mapper.readValue(mapper.treeAsTokens(scoresNode), mapLeaderBoardType);
-
-        return new SongLeaderBoard(node.get("songHash").asText(), usersScore);
+        String songHash = null;
+        Map<String, Integer> usersScore = null;
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            if ("songHash".equals(field)) {
+                songHash = p.getText();
+            } else if ("scores".equals(field)) {
+                usersScore = new HashMap<>();
+                for (String player = firstField(p, ctxt); player != null; player = nextField(p)) {
+                    usersScore.put(player, p.getValueAsInt());
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new SongLeaderBoard(required(songHash, "songHash", ctxt),
+                required(usersScore, "scores", ctxt));
     }
 }
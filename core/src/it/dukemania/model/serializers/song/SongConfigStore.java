@@ -0,0 +1,213 @@
+package it.dukemania.model.serializers.song;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.dukemania.model.serializers.RecordFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the configurations of the songs in a RecordFile with a record for each of them, the hash of the song followed
+ * by its configuration in JSON. When the file is opened only the hashes are read, to know where every configuration
+ * starts, and a configuration is parsed only when it is requested. The damaged lines are dropped when the file is
+ * opened.
+ * Updating a configuration appends its new line to the file, the file is rewritten without the old lines when
+ * they are more than the current ones. A rewritten file replaces the old one only when it is complete.
+ */
+public final class SongConfigStore {
+
+    private static final int MIN_RECORDS_TO_COMPACT = 32;
+
+    private final Path file;
+    private final ObjectMapper mapper;
+    private final Map<String, Record> index = new HashMap<>();
+    private FileChannel channel;
+    private int records;
+
+    // where the JSON of a configuration is in the file
+    private static final class Record {
+        private final long offset;
+        private final int length;
+
+        Record(final long offset, final int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private SongConfigStore(final Path file, final ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Opens the file of the configurations, reading only the position of each of them. The file is created if it
+     * doesn't exist.
+     * @param file the file of the configurations
+     * @param mapper used to read and write the configurations
+     * @return the store
+     * @throws IOException if the file cannot be read
+     */
+    public static SongConfigStore open(final Path file, final ObjectMapper mapper) throws IOException {
+        final SongConfigStore store = new SongConfigStore(file, mapper);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        store.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            store.buildIndex();
+        } catch (IOException e) {
+            store.channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * @return true if there are no configurations
+     */
+    public synchronized boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * Reads the configuration of a song.
+     * @param songHash the hash of the song
+     * @return a new copy of the configuration, or an empty optional if the song has never been configured
+     * @throws IOException if the configuration cannot be read
+     */
+    public Optional<SongInfo> get(final String songHash) throws IOException {
+        final byte[] json;
+        synchronized (this) {
+            final Record record = index.get(songHash);
+            if (record == null) {
+                return Optional.empty();
+            }
+            json = readJson(songHash, record);
+        }
+        return Optional.of(mapper.readValue(json, SongInfo.class));
+    }
+
+    /**
+     * Saves the configuration of a song, replacing the previous one. The configuration is flushed to the disk
+     * before returning.
+     * @param song the configuration
+     * @throws IOException if the configuration cannot be written
+     */
+    public synchronized void put(final SongInfo song) throws IOException {
+        append(List.of(song));
+        if (records >= MIN_RECORDS_TO_COMPACT && records > index.size() * 2) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // the configuration has been saved, the file is compacted after one of the next updates
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Saves the configurations of some songs with a single write, replacing the previous ones.
+     * @param songs the configurations
+     * @throws IOException if the configurations cannot be written
+     */
+    public synchronized void putAll(final List<SongInfo> songs) throws IOException {
+        append(songs);
+    }
+
+    /**
+     * Rewrites the file with only the current configurations.
+     * @throws IOException if the file cannot be written, the old one is still used
+     */
+    public synchronized void compact() throws IOException {
+        final Map<String, Record> compacted = new HashMap<>();
+        RecordFile.replace(file, out -> {
+            for (final Map.Entry<String, Record> entry : index.entrySet()) {
+                final byte[] line = toLine(entry.getKey(), readJson(entry.getKey(), entry.getValue()));
+                compacted.put(entry.getKey(), new Record(out.position() + RecordFile.contentOffset(line, entry.getValue().length),
+                        entry.getValue().length));
+                RecordFile.write(out, ByteBuffer.wrap(line));
+            }
+        });
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        index.putAll(compacted);
+        records = index.size();
+    }
+
+    /**
+     * Closes the file of the configurations.
+     * @throws IOException if the file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(final List<SongInfo> songs) throws IOException {
+        final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        final Map<String, Record> added = new HashMap<>();
+        final long end = channel.size();
+        for (final SongInfo song : songs) {
+            final byte[] json = mapper.writeValueAsBytes(song);
+            final byte[] line = toLine(song.getSongHash(), json);
+            added.put(song.getSongHash(), new Record(end + lines.size() + RecordFile.contentOffset(line, json.length),
+                    json.length));
+            lines.writeBytes(line);
+        }
+        channel.position(end);
+        RecordFile.write(channel, ByteBuffer.wrap(lines.toByteArray()));
+        channel.force(false);
+        index.putAll(added);
+        records += songs.size();
+    }
+
+    private void buildIndex() throws IOException {
+        final int[] malformed = {0};
+        final int damaged = RecordFile.read(channel, (content, position) -> {
+            int separator = 0;
+            while (separator < content.length && content[separator] != RecordFile.SEPARATOR) {
+                separator++;
+            }
+            if (separator == content.length) {
+                malformed[0]++;
+                return;
+            }
+            index.put(new String(content, 0, separator, StandardCharsets.UTF_8),
+                    new Record(position + separator + 1, content.length - separator - 1));
+            records++;
+        });
+        // the damaged lines are dropped, and a line without its end must not be joined to the next one
+        if (damaged + malformed[0] > 0) {
+            compact();
+        }
+    }
+
+    private byte[] readJson(final String songHash, final Record record) throws IOException {
+        final ByteBuffer json = ByteBuffer.allocate(record.length);
+        while (json.hasRemaining()) {
+            if (channel.read(json, record.offset + json.position()) < 0) {
+                throw new IOException("The configuration of " + songHash + " has been cut");
+            }
+        }
+        return json.array();
+    }
+
+    private static byte[] toLine(final String songHash, final byte[] json) {
+        final byte[] hash = songHash.getBytes(StandardCharsets.UTF_8);
+        final byte[] content = new byte[hash.length + 1 + json.length];
+        System.arraycopy(hash, 0, content, 0, hash.length);
+        content[hash.length] = RecordFile.SEPARATOR;
+        System.arraycopy(json, 0, content, hash.length + 1, json.length);
+        return RecordFile.toLine(content);
+    }
+}
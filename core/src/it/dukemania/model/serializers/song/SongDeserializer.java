@@ -2,18 +2,13 @@ package it.dukemania.model.serializers.song;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.ObjectCodec;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import it.dukemania.model.serializers.StreamingDeserializer;
 
 import java.io.IOException;
 import java.util.List;
 
-public class SongDeserializer extends StdDeserializer<SongInfo> {
+public class SongDeserializer extends StreamingDeserializer<SongInfo> {
 
     /**
      * 
@@ -21,7 +16,7 @@ public class SongDeserializer extends StdDeserializer<SongInfo> {
     private static final long serialVersionUID = -5051112879681763904L;
 
     public SongDeserializer() {
-        this(null);
+        this(SongInfo.class);
     }
 
     public SongDeserializer(final Class<SongInfo> t) {
@@ -31,19 +26,37 @@ public class SongDeserializer extends StdDeserializer<SongInfo> {
     @Override
     public final SongInfo deserialize(final JsonParser p, final DeserializationContext ctxt)
             throws IOException, JsonProcessingException {
-        ObjectCodec codec = p.getCodec();
-        JsonNode node = codec.readTree(p);
-
-        ObjectMapper mapper = new ObjectMapper();
-
-        JsonNode trackNode = node.get("tracks");
-
-        JavaType listTrackType = mapper.constructType(new TypeReference<List<TrackInfo>>() {
-        });
-
-        List<TrackInfo> tracks = mapper.readValue(mapper.treeAsTokens(trackNode), listTrackType);
-
-        return new SongInfo(node.get("songName").asText(), node.get("fileHash").asText(), 
-                node.get("duration").asDouble(), tracks, node.get("BPM").asDouble());
+        String title = null;
+        String songHash = null;
+        Double duration = null;
+        Double bpm = null;
+        List<TrackInfo> tracks = null;
+        //the fields are read as they come, without building a tree of the song
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            switch (field) {
+                case "songName":
+                    title = p.getText();
+                    break;
+                case "fileHash":
+                    songHash = p.getText();
+                    break;
+                case "duration":
+                    duration = p.getValueAsDouble();
+                    break;
+                case "BPM":
+                    bpm = p.getValueAsDouble();
+                    break;
+                case "tracks":
+                    tracks = readArray(p, "tracks", TrackInfo.class, ctxt);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return new SongInfo(required(title, "songName", ctxt),
+                required(songHash, "fileHash", ctxt),
+                required(duration, "duration", ctxt),
+                required(tracks, "tracks", ctxt),
+                required(bpm, "BPM", ctxt));
     }
 }
@@ -1,17 +1,15 @@
 package it.dukemania.model.serializers.song;
 
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import it.dukemania.controller.logic.DifficultyLevel;
 import it.dukemania.midi.InstrumentType;
+import it.dukemania.model.serializers.StreamingDeserializer;
 
 import java.io.IOException;
 
-public class TrackDeserializer extends StdDeserializer<TrackInfo> {
+public class TrackDeserializer extends StreamingDeserializer<TrackInfo> {
 
     /**
      * 
@@ -19,7 +17,7 @@ public class TrackDeserializer extends StdDeserializer<TrackInfo> {
     private static final long serialVersionUID = 5100891130978673514L;
 
     public TrackDeserializer() {
-        this(null);
+        this(TrackInfo.class);
     }
 
     public TrackDeserializer(final Class<?> vc) {
@@ -28,16 +26,32 @@ public class TrackDeserializer extends StdDeserializer<TrackInfo> {
 
     @Override
     public final TrackInfo deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
-        ObjectCodec codec = p.getCodec();
-        JsonNode node = codec.readTree(p);
-
-        InstrumentType instrument = new ObjectMapper()
-                                        .treeAsTokens(node.get("instrument"))
-                                        .readValueAs(InstrumentType.class);
-
-        return new TrackInfo(node.get("channel").asInt(),
-                                node.get("trackName").asText(),
+        Integer channel = null;
+        String trackName = null;
+        InstrumentType instrument = null;
+        DifficultyLevel difficulty = null;
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            switch (field) {
+                case "channel":
+                    channel = p.getValueAsInt();
+                    break;
+                case "trackName":
+                    trackName = p.getText();
+                    break;
+                case "instrument":
+                    //the percussion tracks have no instrument
+                    instrument = p.hasToken(JsonToken.VALUE_NULL) ? null : ctxt.readValue(p, InstrumentType.class);
+                    break;
+                case "difficultyLevel":
+                    difficulty = DifficultyLevel.valueOf(p.getText());
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return new TrackInfo(required(channel, "channel", ctxt),
+                                required(trackName, "trackName", ctxt),
                                 instrument,
-                                DifficultyLevel.valueOf(node.get("difficultyLevel").asText()));
+                                required(difficulty, "difficultyLevel", ctxt));
     }
 }
@@ -2,15 +2,13 @@ package it.dukemania.model.serializers.synthesizer;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import it.dukemania.audioengine.Enveloper;
+import it.dukemania.model.serializers.StreamingDeserializer;
 
 import java.io.IOException;
 
-public class EnveloperDeserializer extends StdDeserializer<Enveloper> {
+public class EnveloperDeserializer extends StreamingDeserializer<Enveloper> {
 
     /**
      * 
@@ -18,7 +16,7 @@ public class EnveloperDeserializer extends StdDeserializer<Enveloper> {
     private static final long serialVersionUID = 466673112602165533L;
 
     public EnveloperDeserializer() {
-        this(null);
+        this(Enveloper.class);
     }
 
     public EnveloperDeserializer(final Class<?> vc) {
@@ -28,9 +26,26 @@ public class EnveloperDeserializer extends StdDeserializer<Enveloper> {
     @Override
     public final Enveloper deserialize(final JsonParser p, final DeserializationContext ctxt)
             throws IOException, JsonProcessingException {
-        ObjectCodec codec = p.getCodec();
-        JsonNode node = codec.readTree(p);
-
-        return new Enveloper(node.get("attackMS").asLong(), node.get("attackVolume").asLong(), node.get("releaseMS").asLong());
+        Long attack = null;
+        Long attackVolume = null;
+        Long release = null;
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            switch (field) {
+                case "attackMS":
+                    attack = p.getValueAsLong();
+                    break;
+                case "attackVolume":
+                    attackVolume = p.getValueAsLong();
+                    break;
+                case "releaseMS":
+                    release = p.getValueAsLong();
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return new Enveloper(required(attack, "attackMS", ctxt),
+                required(attackVolume, "attackVolume", ctxt),
+                required(release, "releaseMS", ctxt));
     }
 }
@@ -2,20 +2,18 @@ package it.dukemania.model.serializers.synthesizer;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import it.dukemania.audioengine.Enveloper;
 import it.dukemania.audioengine.LFOFactory;
 import it.dukemania.audioengine.SynthBuilderImpl;
 import it.dukemania.audioengine.WaveTable;
+import it.dukemania.model.serializers.StreamingDeserializer;
 
 import java.io.IOException;
 import java.util.function.Function;
 
-public class SynthBuilderDeserializer extends StdDeserializer<SynthBuilderImpl> {
+public class SynthBuilderDeserializer extends StreamingDeserializer<SynthBuilderImpl> {
 
     /**
      * 
@@ -23,7 +21,7 @@ public class SynthBuilderDeserializer extends StdDeserializer<SynthBuilderImpl>
     private static final long serialVersionUID = -1025096348936099734L;
 
     public SynthBuilderDeserializer() {
-        this(null);
+        this(SynthBuilderImpl.class);
     }
 
     public SynthBuilderDeserializer(final Class<?> vc) {
@@ -35,36 +33,66 @@ public class SynthBuilderDeserializer extends StdDeserializer<SynthBuilderImpl>
             throws IOException, JsonProcessingException {
         SynthBuilderImpl synth = new SynthBuilderImpl();
 
-        ObjectCodec codec = p.getCodec();
-        JsonNode node = codec.readTree(p);
-        ObjectMapper mapper = new ObjectMapper();
-
-        Enveloper env = mapper
-                            .treeAsTokens(node.get("enveloper"))
-                            .readValueAs(Enveloper.class);
-
-        WaveTable[] wavetables = mapper.treeAsTokens(node.get("wavetables")).readValueAs(WaveTable[].class);
-        double[] offsets = mapper.treeAsTokens(node.get("offsets")).readValueAs(double[].class);
-
-        JsonNode noteLfoNode = node.get("noteLFO");
-        JsonNode volumeLfoNode = node.get("volumeLFO");
-        synth.setEnveloper(env);
-        synth.setOffsets(offsets);
-        synth.setWavetables(wavetables);
-        synth.setNoteLFO(getLfoFunction(noteLfoNode, mapper));
-        synth.setVolumeLFO(getLfoFunction(volumeLfoNode, mapper));
+        Enveloper env = null;
+        WaveTable[] wavetables = null;
+        double[] offsets = null;
+        Function<Long, Float> noteLfo = null;
+        Function<Long, Float> volumeLfo = null;
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            switch (field) {
+                case "enveloper":
+                    env = ctxt.readValue(p, Enveloper.class);
+                    break;
+                case "wavetables":
+                    wavetables = ctxt.readValue(p, WaveTable[].class);
+                    break;
+                case "offsets":
+                    offsets = ctxt.readValue(p, double[].class);
+                    break;
+                case "noteLFO":
+                    noteLfo = getLfoFunction(p, ctxt);
+                    break;
+                case "volumeLFO":
+                    volumeLfo = getLfoFunction(p, ctxt);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        synth.setEnveloper(required(env, "enveloper", ctxt));
+        synth.setOffsets(required(offsets, "offsets", ctxt));
+        synth.setWavetables(required(wavetables, "wavetables", ctxt));
+        synth.setNoteLFO(noteLfo);
+        synth.setVolumeLFO(volumeLfo);
 
         return synth;
     }
 
-    private Function<Long, Float> getLfoFunction(final JsonNode lfoNode, final ObjectMapper mapper) throws IOException {
-        if (lfoNode != null) {
-            LFOFactory.Types lfoType = mapper.treeAsTokens(lfoNode.get("type")).readValueAs(LFOFactory.Types.class);
-            float[] lfoArgs = mapper.treeAsTokens(lfoNode.get("arguments")).readValueAs(float[].class);
-            int duration = lfoNode.get("duration").asInt();
-            return LFOFactory.general(lfoType, lfoArgs, duration);
+    private Function<Long, Float> getLfoFunction(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+        LFOFactory.Types lfoType = null;
+        float[] lfoArgs = null;
+        Integer duration = null;
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            switch (field) {
+                case "type":
+                    lfoType = ctxt.readValue(p, LFOFactory.Types.class);
+                    break;
+                case "arguments":
+                    lfoArgs = ctxt.readValue(p, float[].class);
+                    break;
+                case "duration":
+                    duration = p.getValueAsInt();
+                    break;
+                default:
+                    p.skipChildren();
+            }
         }
-        return null;
+        return LFOFactory.general(required(lfoType, "type", ctxt),
+                required(lfoArgs, "arguments", ctxt),
+                required(duration, "duration", ctxt));
     }
 
 }
@@ -2,20 +2,15 @@ package it.dukemania.model.serializers.synthesizer;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.ObjectCodec;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import it.dukemania.audioengine.SynthBuilderImpl;
 import it.dukemania.midi.InstrumentType;
+import it.dukemania.model.serializers.StreamingDeserializer;
 
 import java.io.IOException;
 import java.util.List;
 
-public class SynthesizerInfoDeserializer extends StdDeserializer<SynthInfo> {
+public class SynthesizerInfoDeserializer extends StreamingDeserializer<SynthInfo> {
 
     /**
      * 
@@ -23,7 +18,7 @@ public class SynthesizerInfoDeserializer extends StdDeserializer<SynthInfo> {
     private static final long serialVersionUID = 2612924517909551295L;
 
     public SynthesizerInfoDeserializer() {
-        this(null);
+        this(SynthInfo.class);
     }
 
     public SynthesizerInfoDeserializer(final Class<?> vc) {
@@ -33,20 +28,26 @@ public class SynthesizerInfoDeserializer extends StdDeserializer<SynthInfo> {
     @Override
     public final SynthInfo deserialize(final JsonParser p, final DeserializationContext ctxt)
             throws IOException, JsonProcessingException {
-        ObjectCodec codec = p.getCodec();
-        JsonNode node = codec.readTree(p);
-        ObjectMapper mapper = new ObjectMapper();
-
-        SynthBuilderImpl synth = mapper
-                                .treeAsTokens(node.get("values"))
-                                .readValueAs(SynthBuilderImpl.class);
-
-        JavaType listTrackType = mapper.constructType(new TypeReference<List<InstrumentType>>() {
-        });
-
-        List<InstrumentType> associatedInstruments = mapper.readValue(mapper
-                                                                 .treeAsTokens(node.get("associatedInstruments")), listTrackType);
-
-        return new SynthInfo(node.get("presetName").asText(), synth, associatedInstruments);
+        String presetName = null;
+        SynthBuilderImpl synth = null;
+        List<InstrumentType> associatedInstruments = null;
+        for (String field = firstField(p, ctxt); field != null; field = nextField(p)) {
+            switch (field) {
+                case "presetName":
+                    presetName = p.getText();
+                    break;
+                case "values":
+                    synth = ctxt.readValue(p, SynthBuilderImpl.class);
+                    break;
+                case "associatedInstruments":
+                    associatedInstruments = readArray(p, "associatedInstruments", InstrumentType.class, ctxt);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return new SynthInfo(required(presetName, "presetName", ctxt),
+                required(synth, "values", ctxt),
+                required(associatedInstruments, "associatedInstruments", ctxt));
     }
 }
@@ -0,0 +1,153 @@
+package it.dukemania.util.storage;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Copies some files of a storage to a folder, only if they are missing or if they have changed.
+ * The size and the hash of every copy are kept in a manifest, and a file is copied again when the hash of the
+ * original or of the copy differs from the one in the manifest. The hashes of the files on the file system are taken
+ * from the index of the FileHasher, which calculates them again only when their size or modification time change,
+ * the files in a jar are hashed from their stream at every synchronization.
+ */
+public final class AssetSync {
+
+    private static final String SEPARATOR = " ";
+
+    private final Storage source;
+    private final Path destination;
+    private final Path manifestFile;
+    private final FileHasher hasher;
+
+    /**
+     * Create the synchronization of a storage with a folder.
+     * @param source the storage that contains the original files
+     * @param destination the folder where the files are copied, with the same relative path that they have in the storage
+     * @param manifestFile the file where the size and the hash of the copies are saved
+     * @param hasher used to calculate the hash of the originals and of the copies
+     */
+    public AssetSync(final Storage source, final Path destination, final Path manifestFile, final FileHasher hasher) {
+        this.source = source;
+        this.destination = destination;
+        this.manifestFile = manifestFile;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Synchronizes the files on a background thread.
+     * @param files the paths of the files in the storage
+     * @param progress called after each file with the number of files that have been checked and the total
+     * @return the future that completes with the number of files that have been copied
+     */
+    public CompletableFuture<Integer> start(final List<String> files, final BiConsumer<Integer, Integer> progress) {
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                result.complete(sync(files, progress));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, "DukeMania asset sync");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Synchronizes the files on the calling thread.
+     * @param files the paths of the files in the storage
+     * @param progress called after each file with the number of files that have been checked and the total
+     * @return the number of files that have been copied
+     * @throws IOException if a file cannot be copied
+     */
+    public int sync(final List<String> files, final BiConsumer<Integer, Integer> progress) throws IOException {
+        final Properties manifest = new Properties();
+        if (Files.exists(manifestFile)) {
+            try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+                manifest.load(reader);
+            } catch (IOException | IllegalArgumentException e) {
+                // every file is checked again
+                manifest.clear();
+            }
+        }
+        int copied = 0;
+        for (int i = 0; i < files.size(); i++) {
+            final String file = files.get(i);
+            final Path target = destination.resolve(file);
+            if (!isUpToDate(file, target, manifest.getProperty(file))) {
+                copy(source.getAsFileHandle(file), target);
+                manifest.setProperty(file, Files.size(target) + SEPARATOR + hasher.getHash(target));
+                copied++;
+            }
+            progress.accept(i + 1, files.size());
+        }
+        if (copied > 0) {
+            Files.createDirectories(manifestFile.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8)) {
+                manifest.store(writer, null);
+            }
+        }
+        return copied;
+    }
+
+    private boolean isUpToDate(final String file, final Path target, final String entry) throws IOException {
+        if (entry == null || !Files.isRegularFile(target)) {
+            return false;
+        }
+        final String[] fields = entry.split(SEPARATOR);
+        try {
+            // the copy is checked by the index of the hasher, which reads it only if its size or modification time changed
+            return fields.length == 2 && Files.size(target) == Long.parseLong(fields[0])
+                    && hashOf(source.getAsFileHandle(file)).equals(fields[1])
+                    && hasher.getHash(target).equals(fields[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private String hashOf(final FileHandle original) throws IOException {
+        final File file = original.file();
+        if (file.isFile()) {
+            return hasher.getHash(file.toPath());
+        }
+        // a file in a jar has no modification time and may not know its length, so it is read every time
+        try (InputStream in = original.read()) {
+            return FileHasher.digest(in);
+        }
+    }
+
+    private static void copy(final FileHandle from, final Path to) throws IOException {
+        Files.createDirectories(to.toAbsolutePath().getParent());
+        final Path temporary = Files.createTempFile(to.toAbsolutePath().getParent(), to.getFileName().toString(), null);
+        try {
+            final File file = from.file();
+            if (file.isFile()) {
+                // a copy between two paths is done by the file system, without passing through the heap
+                Files.copy(file.toPath(), temporary, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                try (InputStream in = from.read()) {
+                    Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(temporary, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (RuntimeException e) {
+            // libGDX reports the files that cannot be read with unchecked exceptions
+            throw new IOException("Cannot copy " + from.path(), e);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package it.dukemania.util.storage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calculates the SHA-256 hash of files without loading them in memory, small files are read through a fixed
+ * direct buffer and big ones are memory mapped.
+ * The hashes are remembered together with the size and the last modification time of their file,
+ * so a file that has not changed is never read again. The index can be saved in a file, to be used by the next sessions.
+ */
+public final class FileHasher {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 1 << 16;
+    // the size from which files are memory mapped
+    static final long MAP_THRESHOLD = 1 << 20;
+    private static final int MAX_MAPPING = Integer.MAX_VALUE;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int HALF_BYTE = 4;
+    private static final int LOW_HALF = 0x0F;
+    private static final String SEPARATOR = "\t";
+    private static final int FIELDS = 4;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+    private final Optional<Path> indexFile;
+
+    // the hash of a file when it had a certain size and modification time
+    private static final class IndexEntry {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        IndexEntry(final long size, final long lastModified, final String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Create a hasher whose index is kept only in memory.
+     */
+    public FileHasher() {
+        this.indexFile = Optional.empty();
+    }
+
+    /**
+     * Create a hasher whose index is read from a file, every new hash is appended to the same file.
+     * @param indexFile the file of the index, it is created when the first hash is calculated
+     */
+    public FileHasher(final Path indexFile) {
+        this.indexFile = Optional.of(indexFile);
+        try {
+            final List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+            for (final String line : lines) {
+                // size, modification time, hash and path, the path is the last because it may contain the separator
+                final String[] fields = line.split(SEPARATOR, FIELDS);
+                if (fields.length == FIELDS) {
+                    index.put(fields[3], new IndexEntry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+                }
+            }
+            // every change of a file adds a line, so the file is rewritten when most of them are obsolete
+            if (lines.size() > index.size() * 2) {
+                final StringBuilder content = new StringBuilder();
+                index.forEach((path, entry) -> content.append(toLine(path, entry)));
+                Files.write(indexFile, content.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // a missing or corrupted index is rebuilt from the files
+            index.clear();
+        }
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file, calculating it only if the file has changed since the last time.
+     * @param file the file
+     * @return the hash in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    public String getHash(final Path file) throws IOException {
+        final Path absolute = file.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final String key = absolute.toString();
+        final IndexEntry known = index.get(key);
+        if (known != null && known.size == attributes.size() && known.lastModified == lastModified) {
+            return known.hash;
+        }
+        final IndexEntry entry = new IndexEntry(attributes.size(), lastModified, digest(absolute));
+        index.put(key, entry);
+        if (indexFile.isPresent()) {
+            append(key, entry);
+        }
+        return entry.hash;
+    }
+
+    private synchronized void append(final String path, final IndexEntry entry) {
+        try {
+            Files.createDirectories(indexFile.get().toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(indexFile.get(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(toLine(path, entry));
+            }
+        } catch (IOException e) {
+            // the hash is still remembered in memory
+            e.printStackTrace();
+        }
+    }
+
+    private static String toLine(final String path, final IndexEntry entry) {
+        return entry.size + SEPARATOR + entry.lastModified + SEPARATOR + entry.hash + SEPARATOR + path
+                + System.lineSeparator();
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a file.
+     * @param file the file
+     * @return the hash in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    public static String digest(final Path file) throws IOException {
+        final MessageDigest digest = DIGEST.get();
+        digest.reset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAX_MAPPING) {
+                    final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAX_MAPPING, size - position));
+                    digest.update(mapped);
+                }
+            } else {
+                final ByteBuffer buffer = BUFFER.get();
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a stream, reading it until its end, for the files that are not on the file system.
+     * @param in the stream, which is not closed
+     * @return the hash in hexadecimal
+     * @throws IOException if the stream cannot be read
+     */
+    public static String digest(final InputStream in) throws IOException {
+        final MessageDigest digest = DIGEST.get();
+        digest.reset();
+        final ReadableByteChannel channel = Channels.newChannel(in);
+        final ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Converts bytes to a string of hexadecimal digits, two for each byte.
+     * @param bytes the bytes
+     * @return the hexadecimal string
+     */
+    public static String toHex(final byte[] bytes) {
+        final char[] digits = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            digits[i * 2] = HEX_DIGITS[(bytes[i] >> HALF_BYTE) & LOW_HALF];
+            digits[i * 2 + 1] = HEX_DIGITS[bytes[i] & LOW_HALF];
+        }
+        return new String(digits);
+    }
+}
@@ -4,10 +4,10 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -114,11 +114,9 @@ public class StorageFactoryImpl implements StorageFactory {
             String tmpDestination = (destination.contains("/") && !File.separator.equals("/")) ? destination.replace("/", "\\")
                                                                                                 : destination;
             createFileIfNotExists(tmpDestination);
-            File file = new File(tmpDestination);
-            InputStream in = fileMapping.apply(source).read();
-            FileOutputStream outStream = new FileOutputStream(file, false);
-            outStream.write(in.readAllBytes());
-            outStream.close();
+            try (InputStream in = fileMapping.apply(source).read()) {
+                Files.copy(in, new File(tmpDestination).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         }
     }
 }
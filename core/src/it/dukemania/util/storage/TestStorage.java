@@ -0,0 +1,304 @@
+package it.dukemania.util.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.badlogic.gdx.files.FileHandle;
+
+class TestStorage {
+
+    // a storage whose files are mapped by a function, only the file handles are used by the synchronization
+    private static final class MappedStorage implements Storage {
+        private final Function<String, FileHandle> mapping;
+
+        MappedStorage(final Function<String, FileHandle> mapping) {
+            this.mapping = mapping;
+        }
+
+        @Override
+        public FileHandle getAsFileHandle(final String path) {
+            return mapping.apply(path);
+        }
+
+        @Override
+        public File getAsFile(final String path) {
+            return mapping.apply(path).file();
+        }
+
+        @Override
+        public void writeStringOnFile(final String filePath, final String content) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String readFileAsString(final String filePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] readFileAsByte(final String filePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean createDirectory(final String dirName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean createDirectoryRecursively(final String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean createFileIfNotExists(final String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getBaseDirectoryName() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void copyTo(final String source, final String destination) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static String sha256(final Path file) throws IOException, NoSuchAlgorithmException {
+        return FileHasher.toHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+    }
+
+    private static Path createFile(final Path directory, final String name, final int size) throws IOException {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(directory.resolve(name), content);
+    }
+
+    /**
+     * this test makes sure that the hashes are calculated only when the size or the modification time of a file change.
+     * @throws IOException
+     * @throws NoSuchAlgorithmException
+     */
+    @Test
+    void testFileHasher() throws IOException, NoSuchAlgorithmException {
+        Path directory = Files.createTempDirectory("hashes");
+        Path file = Files.write(directory.resolve("song.mid"), "first".getBytes(StandardCharsets.UTF_8));
+        FileTime time = FileTime.fromMillis(1_000_000);
+        Files.setLastModifiedTime(file, time);
+        FileHasher hasher = new FileHasher();
+        String first = hasher.getHash(file);
+        assertEquals(sha256(file), first);
+
+        // the same size and modification time: the hash in the index is used and the file is not read
+        Files.write(file, "other".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, time);
+        assertEquals(first, hasher.getHash(file));
+        // a different modification time, then a different size
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        assertEquals(sha256(file), hasher.getHash(file));
+        Files.write(file, "longer".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        assertEquals(sha256(file), hasher.getHash(file));
+
+        // files from the threshold up are mapped, the others are read in the buffer, the hashes are the same
+        for (long size : new long[] {0, 1, FileHasher.MAP_THRESHOLD - 1, FileHasher.MAP_THRESHOLD,
+            FileHasher.MAP_THRESHOLD * 3 + 7}) {
+            Path sized = createFile(directory, size + ".bin", (int) size);
+            assertEquals(sha256(sized), FileHasher.digest(sized));
+            Files.delete(sized);
+        }
+        Files.delete(file);
+        Files.delete(directory);
+    }
+
+    /**
+     * this test makes sure that the index is saved, read again and compacted when most of its lines are obsolete.
+     * @throws IOException
+     * @throws NoSuchAlgorithmException
+     */
+    @Test
+    void testFileHasherIndex() throws IOException, NoSuchAlgorithmException {
+        Path directory = Files.createTempDirectory("hashes");
+        Path index = directory.resolve("index").resolve("hashes.tsv");
+        Path file = createFile(directory, "song.mid", 100);
+        Path other = createFile(directory, "other.mid", 200);
+        FileHasher hasher = new FileHasher(index);
+        hasher.getHash(other);
+        final int changes = 5;
+        for (int i = 1; i <= changes; i++) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(i * 1_000_000L));
+            hasher.getHash(file);
+        }
+        assertEquals(changes + 1, Files.readAllLines(index).size());
+
+        // a new hasher keeps only the last hash of every file, and uses it without reading the file
+        String hash = sha256(file);
+        Files.write(file, new byte[100]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(changes * 1_000_000L));
+        FileHasher reloaded = new FileHasher(index);
+        assertEquals(2, Files.readAllLines(index).size());
+        assertEquals(hash, reloaded.getHash(file));
+        assertEquals(sha256(other), reloaded.getHash(other));
+        assertEquals(2, Files.readAllLines(index).size());
+
+        // a corrupted index is ignored and the hashes are calculated again
+        Files.write(index, "not\ta\tnumber\tline".getBytes(StandardCharsets.UTF_8));
+        assertEquals(sha256(file), new FileHasher(index).getHash(file));
+        for (Path path : List.of(file, other, index, index.getParent(), directory)) {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * this test makes sure that a hasher can be shared by many threads.
+     * @throws IOException
+     * @throws NoSuchAlgorithmException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    @Test
+    void testConcurrentFileHasher() throws IOException, NoSuchAlgorithmException, InterruptedException,
+            ExecutionException {
+        Path directory = Files.createTempDirectory("hashes");
+        Path index = directory.resolve("hashes.tsv");
+        final int count = 8;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // half of the files are mapped
+            files.add(createFile(directory, i + ".mid", (int) (i % 2 == 0 ? FileHasher.MAP_THRESHOLD + i : 1000 + i)));
+        }
+        FileHasher hasher = new FileHasher(index);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> hashes = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            for (Path file : files) {
+                hashes.add(executor.submit(() -> hasher.getHash(file)));
+            }
+        }
+        for (int i = 0; i < hashes.size(); i++) {
+            assertEquals(sha256(files.get(i % count)), hashes.get(i).get());
+        }
+        executor.shutdown();
+
+        // every line of the index is complete, even if the same file was hashed by more threads at once
+        List<String> lines = Files.readAllLines(index);
+        assertTrue(lines.size() >= count);
+        assertTrue(lines.stream().allMatch(line -> line.split("\t").length == 4));
+        FileHasher reloaded = new FileHasher(index);
+        for (Path file : files) {
+            assertEquals(sha256(file), reloaded.getHash(file));
+            Files.delete(file);
+        }
+        assertEquals(lines.size(), Files.readAllLines(index).size());
+        Files.delete(index);
+        Files.delete(directory);
+    }
+
+    /**
+     * this test makes sure that only the missing or changed copies of the files are copied again.
+     * @throws IOException
+     */
+    @Test
+    void testAssetSync() throws IOException {
+        Path directory = Files.createTempDirectory("assets");
+        Path assets = Files.createDirectories(directory.resolve("assets").resolve("midi"));
+        Path copies = directory.resolve("copies");
+        Path manifest = directory.resolve("cache").resolve("manifest.properties");
+        createFile(assets, "first.mid", 100);
+        createFile(assets, "second.mid", 200);
+        List<String> files = List.of("midi/first.mid", "midi/second.mid");
+        AssetSync sync = new AssetSync(new MappedStorage(path -> new FileHandle(directory.resolve("assets").resolve(path)
+                .toFile())), copies, manifest, new FileHasher());
+        List<Integer> progress = new ArrayList<>();
+        assertEquals(2, sync.sync(files, (checked, total) -> progress.add(checked * 10 + total)));
+        assertEquals(List.of(12, 22), progress);
+        for (String file : files) {
+            assertTrue(Arrays.equals(Files.readAllBytes(directory.resolve("assets").resolve(file)),
+                    Files.readAllBytes(copies.resolve(file))));
+        }
+        assertTrue(Files.exists(manifest));
+
+        // the copies that are up to date are skipped
+        assertEquals(0, sync.sync(files, (checked, total) -> { }));
+        // a changed original, a missing copy and a changed copy are copied again
+        createFile(assets, "first.mid", 150);
+        assertEquals(1, sync.sync(files, (checked, total) -> { }));
+        assertEquals(150, Files.size(copies.resolve(files.get(0))));
+        // an original that changes without changing its size is copied again too
+        byte[] sameSize = new byte[150];
+        Arrays.fill(sameSize, (byte) 7);
+        Files.write(assets.resolve("first.mid"), sameSize);
+        assertEquals(1, sync.sync(files, (checked, total) -> { }));
+        assertTrue(Arrays.equals(sameSize, Files.readAllBytes(copies.resolve(files.get(0)))));
+        Files.delete(copies.resolve(files.get(1)));
+        assertEquals(1, sync.sync(files, (checked, total) -> { }));
+        Files.write(copies.resolve(files.get(1)), new byte[] {1});
+        assertEquals(1, sync.sync(files, (checked, total) -> { }));
+        assertEquals(200, Files.size(copies.resolve(files.get(1))));
+        assertEquals(0, sync.sync(files, (checked, total) -> { }));
+
+        // a corrupted manifest is ignored and every file is copied again
+        Files.write(manifest, "midi/first.mid=\\u00zz".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(2, sync.sync(files, (checked, total) -> { }));
+        Files.write(manifest, "midi/first.mid=size hash\nmidi/second.mid=200".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(2, sync.sync(files, (checked, total) -> { }));
+        assertEquals(0, sync.sync(files, (checked, total) -> { }));
+
+        // the files in a jar are not on the file system and their length is unknown, they are copied from their stream
+        byte[] content = "packed".getBytes(StandardCharsets.UTF_8);
+        AssetSync packed = new AssetSync(new MappedStorage(path -> new FileHandle(new File(path)) {
+            @Override
+            public File file() {
+                return new File(directory.toFile(), "missing");
+            }
+
+            @Override
+            public InputStream read() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public long length() {
+                return 0;
+            }
+        }), copies, manifest, new FileHasher());
+        List<String> packedFiles = List.of("jar/packed.mid");
+        assertEquals(1, packed.sync(packedFiles, (checked, total) -> { }));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(copies.resolve(packedFiles.get(0)))));
+        assertEquals(0, packed.sync(packedFiles, (checked, total) -> { }));
+        // a file in the jar of a new version, with the same length, is copied again
+        System.arraycopy("PACKED".getBytes(StandardCharsets.UTF_8), 0, content, 0, content.length);
+        assertEquals(1, packed.sync(packedFiles, (checked, total) -> { }));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(copies.resolve(packedFiles.get(0)))));
+        assertEquals(0, packed.sync(packedFiles, (checked, total) -> { }));
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
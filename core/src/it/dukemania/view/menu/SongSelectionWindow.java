@@ -4,6 +4,7 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.NinePatch;
+import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.scenes.scene2d.ui.ButtonGroup;
@@ -16,6 +17,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
 import com.badlogic.gdx.scenes.scene2d.ui.TextField;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 import com.badlogic.gdx.scenes.scene2d.utils.NinePatchDrawable;
 import com.badlogic.gdx.utils.Align;
@@ -31,9 +33,13 @@ import javax.sound.midi.InvalidMidiDataException;
 
 import java.io.IOException;
 import java.nio.file.NotDirectoryException;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public class SongSelectionWindow extends AbstractView {
@@ -44,6 +50,7 @@ public class SongSelectionWindow extends AbstractView {
     private static final int TABLE_PADDING = 30;
     private static final float TABLE_BACKGROUND_OPACITY = 0.3f;
     private static final float TABLE_TRACKS_HEIGHT = 200f;
+    private static final int LIBRARY_LIST_COUNT = 10;
 
     public SongSelectionWindow(final String backgroundPath, final Skin skin) throws NoSuchAlgorithmException {
         super(backgroundPath, skin);
@@ -68,6 +75,8 @@ public class SongSelectionWindow extends AbstractView {
 
         TextButton btnSongSelect = new TextButton("Select song", skin);
         Label lblFileName = new Label("", skin);
+        Label lblLibrary = new Label("Library", skin);
+        SelectBox<String> slctLibrary = new SelectBox<>(skin);
         Label lblConfig = new Label("Configure Song", skin);
         Label lblTrackName = new Label("Track Name", skin);
         Label lblInstruments = new Label("Instrument", skin);
@@ -98,51 +107,72 @@ public class SongSelectionWindow extends AbstractView {
         fd.setFilter("\\\\*.mid");
         ButtonGroup<CheckBox> playableTracks = new ButtonGroup<>();
 
+        BiConsumer<String, String> songLoader = (fileName, filePath) -> {
+            playableTracks.clear();
+            playableTracks.setMinCheckCount(1);
+            playableTracks.setMaxCheckCount(1);
+            boolean isACorrectMidiFile = true;
+            try {
+                controller.setSongPath(filePath);
+                btnPlayTrack.setTouchable(Touchable.enabled);
+                btnSaveSongConfigs.setTouchable(Touchable.enabled);
+            } catch (InvalidMidiDataException e) {
+                new ErrorDialog("The selected file is not a valid MIDI", skin).show(mainStage);
+                e.printStackTrace();
+                isACorrectMidiFile = false;
+            } catch (IOException e) {
+                new ErrorDialog("Could not read the selected file", skin).show(mainStage);
+                e.printStackTrace();
+                isACorrectMidiFile = false;
+            }
+            if (isACorrectMidiFile) {
+                String[] availableInstruments = controller.getAllInstruments();
+
+                SongInfo selectedSong = controller.getSongInfo();
+                lblFileName.setText(fileName);
+                lblSongName.setText("Song name: " + selectedSong.getTitle());
+                lblBPM.setText("BPM: " + selectedSong.getBPM());
+                lblSongName.setAlignment(Align.center);
+                lblBPM.setAlignment(Align.center);
+
+                tblTracks.clearChildren();
+
+                selectedSong.getTracks().forEach(s -> {
+                    SelectBox<String> slctInstruments = new SelectBox<>(skin);
+                    slctInstruments.setItems(availableInstruments);
+                    slctInstruments.setSelected(s.getInstrument().toString());
+                    slctInstruments.setMaxListCount(3);
+                    CheckBox ck = new CheckBox(String.valueOf(s.getChannel()), skin);
+                    playableTracks.add(ck);
+                    tblTracks.add(ck).uniformX().fillX().padLeft(TABLE_PADDING);
+                    TextField txtTrackName = new TextField(s.getTrackName(), skin);
+                    tblTracks.add(txtTrackName).uniformX().fillX().padRight(TABLE_PADDING);
+                    tblTracks.add(new Label(s.getDifficultyLevel().getEffectiveName(), skin)).fillX().uniformX();
+                    tblTracks.add(slctInstruments).fillX().uniformX().right().padRight(TABLE_PADDING);
+                    tblTracks.row();
+                });
+            }
+        };
+
         fd.setResultListener((res, fileName, filePath) -> {
             if (res.equals(DialogResult.OK)) {
-                playableTracks.clear();
-                playableTracks.setMinCheckCount(1);
-                playableTracks.setMaxCheckCount(1);
-                boolean isACorrectMidiFile = true;
-                try {
-                    controller.setSongPath(filePath);
-                    btnPlayTrack.setTouchable(Touchable.enabled);
-                    btnSaveSongConfigs.setTouchable(Touchable.enabled);
-                } catch (InvalidMidiDataException e) {
-                    new ErrorDialog("The selected file is not a valid MIDI", skin).show(mainStage);
-                    e.printStackTrace();
-                    isACorrectMidiFile = false;
-                } catch (IOException e) {
-                    new ErrorDialog("Could not read the selected file", skin).show(mainStage);
-                    e.printStackTrace();
-                    isACorrectMidiFile = false;
-                }
-                if (isACorrectMidiFile) {
-                    String[] availableInstruments = controller.getAllInstruments();
-
-                    SongInfo selectedSong = controller.getSongInfo();
-                    lblFileName.setText(fileName);
-                    lblSongName.setText("Song name: " + selectedSong.getTitle());
-                    lblBPM.setText("BPM: " + selectedSong.getBPM());
-                    lblSongName.setAlignment(Align.center);
-                    lblBPM.setAlignment(Align.center);
-
-                    tblTracks.clearChildren();
-
-                    selectedSong.getTracks().forEach(s -> {
-                        SelectBox<String> slctInstruments = new SelectBox<>(skin);
-                        slctInstruments.setItems(availableInstruments);
-                        slctInstruments.setSelected(s.getInstrument().toString());
-                        slctInstruments.setMaxListCount(3);
-                        CheckBox ck = new CheckBox(String.valueOf(s.getChannel()), skin);
-                        playableTracks.add(ck);
-                        tblTracks.add(ck).uniformX().fillX().padLeft(TABLE_PADDING);
-                        TextField txtTrackName = new TextField(s.getTrackName(), skin);
-                        tblTracks.add(txtTrackName).uniformX().fillX().padRight(TABLE_PADDING);
-                        tblTracks.add(new Label(s.getDifficultyLevel().getEffectiveName(), skin)).fillX().uniformX();
-                        tblTracks.add(slctInstruments).fillX().uniformX().right().padRight(TABLE_PADDING);
-                        tblTracks.row();
-                    });
+                songLoader.accept(fileName, filePath);
+            }
+        });
+
+        //The songs already indexed are listed without reading their files, the first item selects nothing
+        Map<String, SongInfo> librarySongs = controller.getLibrarySongs();
+        List<String> libraryPaths = new ArrayList<>(librarySongs.keySet());
+        List<String> libraryItems = new ArrayList<>(List.of("Choose a song"));
+        libraryPaths.forEach(p -> libraryItems.add(Paths.get(p).getFileName().toString()));
+        slctLibrary.setItems(libraryItems.toArray(String[]::new));
+        slctLibrary.setMaxListCount(LIBRARY_LIST_COUNT);
+        slctLibrary.addListener(new ChangeListener() {
+            @Override
+            public void changed(final ChangeEvent event, final Actor actor) {
+                int index = slctLibrary.getSelectedIndex();
+                if (index > 0) {
+                    songLoader.accept(libraryItems.get(index), libraryPaths.get(index - 1));
                 }
             }
         });
@@ -201,6 +231,9 @@ public class SongSelectionWindow extends AbstractView {
         tblConfigSong.add(btnSongSelect);
         tblConfigSong.add(lblFileName).colspan(4).left();
         tblConfigSong.row();
+        tblConfigSong.add(lblLibrary);
+        tblConfigSong.add(slctLibrary).colspan(4).fillX().left();
+        tblConfigSong.row();
         tblConfigSong.add(lblBPM).expand().fillX().colspan(4);
         tblConfigSong.row();
         tblConfigSong.add(lblConfig).colspan(4).expand().center().padBottom(TABLE_PADDING);